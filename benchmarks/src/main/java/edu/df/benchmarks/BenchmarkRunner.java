@@ -0,0 +1,30 @@
+package edu.df.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so allocation rates are reported next to the times.
+ * Takes the same arguments as the JMH command line, for example a regular expression of the benchmarks to run
+ * and -p shape=SMALL
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException {
+        Options options;
+        try {
+            options = new OptionsBuilder()
+                    .parent(new CommandLineOptions(args))
+                    .addProfiler(GCProfiler.class)
+                    .build();
+        } catch (CommandLineOptionException e) {
+            System.err.println("Wrong arguments: " + e.getMessage());
+            return;
+        }
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,35 @@
+package edu.df.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * A synthetic repository of each preset, created in a temporary folder once per trial. The benchmarks run on
+ * the three sizes by default, other presets are chosen with -p shape=MANY_BRANCHES
+ */
+@State(Scope.Benchmark)
+public class RepositoryState {
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public SyntheticRepository.Preset shape;
+
+    public File dir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        File tempDir = Files.createTempDirectory("gitstatistics-bench").toFile();
+        dir = SyntheticRepository.create(new File(tempDir, shape.name().toLowerCase()), shape.toShape());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticRepository.delete(dir.getParentFile());
+    }
+}
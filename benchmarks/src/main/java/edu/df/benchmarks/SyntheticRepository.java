@@ -0,0 +1,721 @@
+package edu.df.benchmarks;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TagBuilder;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+/**
+ * Creates git repositories with a synthetic history, for benchmarks and scale tests.
+ * <p>
+ * The shape of the history, commits, branches, merges, tags, authors, files and commit dates, is described by
+ * a Shape. Everything random is drawn from one generator seeded by the shape, so a shape always gives the same
+ * repository with the same commit ids. Objects are written straight to the object database, then packed, and the
+ * files of master are written to the working tree and the index.
+ * <p>
+ * Presets cover three sizes of ordinary repositories and the shapes that are known to be slow: thousands of
+ * long-lived branches, a huge flat directory and giant generated files. Run main() to create a repository
+ * for a scale test.
+ */
+public class SyntheticRepository {
+    public enum Preset {
+        SMALL(new Shape().commits(200).branches(4).tags(5).authors(5).files(50)),
+        MEDIUM(new Shape().commits(2000).branches(16).merges(50).tags(20).authors(25).files(200)),
+        LARGE(new Shape().commits(10000).branches(40).merges(300).tags(50).authors(100).files(500)
+                .dates(DateDistribution.WORKDAYS)),
+        MANY_BRANCHES(new Shape().commits(20000).branches(3000).branchCommits(0.6).merges(500).tags(20)
+                .authors(200).authorSkew(2).files(300)),
+        FLAT_DIRECTORY(new Shape().commits(300).authors(10).files(10000).filesPerDirectory(Integer.MAX_VALUE)
+                .lines(5, 50)),
+        GIANT_FILES(new Shape().commits(300).branches(4).authors(10).files(100).generatedFiles(5, 200000));
+
+        private final Shape shape;
+
+        Preset(Shape shape) {
+            this.shape = shape;
+        }
+
+        /**
+         * @return a copy of the shape of the preset, which can be changed
+         */
+        public Shape toShape() {
+            return shape.copy();
+        }
+    }
+
+    /**
+     * How commit dates are spread over time
+     */
+    public enum DateDistribution {
+        /**
+         * Commits at random intervals, at any time of the day
+         */
+        UNIFORM,
+        /**
+         * Commits during office hours, Monday to Friday
+         */
+        WORKDAYS,
+        /**
+         * Bursts of commits separated by long quiet periods, like releases
+         */
+        BURSTS
+    }
+
+    /**
+     * The shape of a synthetic repository, setters return the shape so they can be chained
+     */
+    public static class Shape {
+        private long seed = 42;
+        private int commits = 1000;
+        private int branches = 1;
+        private double branchCommits = 0.3;
+        private int merges = 0;
+        private int tags = 0;
+        private int authors = 10;
+        private double authorSkew = 1;
+        private int files = 100;
+        private int filesPerDirectory = 100;
+        private int minLines = 10;
+        private int maxLines = 210;
+        private int generatedFiles = 0;
+        private int generatedFileLines = 0;
+        private int changesPerCommit = 3;
+        private DateDistribution dates = DateDistribution.UNIFORM;
+        private long startTime = 1420070400000L;
+        private long commitInterval = 6 * 60 * 60 * 1000L;
+
+        /**
+         * @param seed of the random generator
+         */
+        public Shape seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public Shape commits(int commits) {
+            this.commits = commits;
+            return this;
+        }
+
+        /**
+         * @param branches including master
+         */
+        public Shape branches(int branches) {
+            this.branches = branches;
+            return this;
+        }
+
+        /**
+         * @param branchCommits share of the commits made on branches other than master, between 0 and 1
+         */
+        public Shape branchCommits(double branchCommits) {
+            this.branchCommits = branchCommits;
+            return this;
+        }
+
+        /**
+         * @param merges number of merges of a branch into master, spread over the history
+         */
+        public Shape merges(int merges) {
+            this.merges = merges;
+            return this;
+        }
+
+        /**
+         * @param tags tags on master, spread over the history, every other one is annotated
+         */
+        public Shape tags(int tags) {
+            this.tags = tags;
+            return this;
+        }
+
+        public Shape authors(int authors) {
+            this.authors = authors;
+            return this;
+        }
+
+        /**
+         * @param authorSkew 1 gives every author the same share of the commits, higher values give most of them
+         *                   to the first authors
+         */
+        public Shape authorSkew(double authorSkew) {
+            this.authorSkew = authorSkew;
+            return this;
+        }
+
+        /**
+         * @param files number of ordinary files added over the history. A tenth of them are in the first commit
+         *              and the rest are added evenly, by commits on any branch
+         */
+        public Shape files(int files) {
+            this.files = files;
+            return this;
+        }
+
+        /**
+         * @param filesPerDirectory Integer.MAX_VALUE puts all files in one directory
+         */
+        public Shape filesPerDirectory(int filesPerDirectory) {
+            this.filesPerDirectory = filesPerDirectory;
+            return this;
+        }
+
+        /**
+         * @param minLines of a new file
+         * @param maxLines of a new file
+         */
+        public Shape lines(int minLines, int maxLines) {
+            this.minLines = minLines;
+            this.maxLines = maxLines;
+            return this;
+        }
+
+        /**
+         * @param generatedFiles number of giant files, all in the first commit, which are rewritten in large
+         *                       blocks when they change
+         * @param lines          of each generated file
+         */
+        public Shape generatedFiles(int generatedFiles, int lines) {
+            this.generatedFiles = generatedFiles;
+            this.generatedFileLines = lines;
+            return this;
+        }
+
+        /**
+         * @param changesPerCommit maximum number of files changed by a commit
+         */
+        public Shape changesPerCommit(int changesPerCommit) {
+            this.changesPerCommit = changesPerCommit;
+            return this;
+        }
+
+        public Shape dates(DateDistribution dates) {
+            this.dates = dates;
+            return this;
+        }
+
+        /**
+         * @param startTime date of the first commit in milliseconds
+         */
+        public Shape startTime(long startTime) {
+            this.startTime = startTime;
+            return this;
+        }
+
+        /**
+         * @param commitInterval mean time between two commits in milliseconds
+         */
+        public Shape commitInterval(long commitInterval) {
+            this.commitInterval = commitInterval;
+            return this;
+        }
+
+        /**
+         * Sets an option by name, such as "commits" or "dates", from its text form
+         *
+         * @param name
+         * @param value
+         * @return
+         */
+        public Shape set(String name, String value) {
+            switch (name) {
+                case "seed":
+                    return seed(Long.parseLong(value));
+                case "commits":
+                    return commits(Integer.parseInt(value));
+                case "branches":
+                    return branches(Integer.parseInt(value));
+                case "branchCommits":
+                    return branchCommits(Double.parseDouble(value));
+                case "merges":
+                    return merges(Integer.parseInt(value));
+                case "tags":
+                    return tags(Integer.parseInt(value));
+                case "authors":
+                    return authors(Integer.parseInt(value));
+                case "authorSkew":
+                    return authorSkew(Double.parseDouble(value));
+                case "files":
+                    return files(Integer.parseInt(value));
+                case "filesPerDirectory":
+                    return filesPerDirectory(Integer.parseInt(value));
+                case "minLines":
+                    return lines(Integer.parseInt(value), maxLines);
+                case "maxLines":
+                    return lines(minLines, Integer.parseInt(value));
+                case "generatedFiles":
+                    return generatedFiles(Integer.parseInt(value), generatedFileLines);
+                case "generatedFileLines":
+                    return generatedFiles(generatedFiles, Integer.parseInt(value));
+                case "changesPerCommit":
+                    return changesPerCommit(Integer.parseInt(value));
+                case "dates":
+                    return dates(DateDistribution.valueOf(value));
+                case "startTime":
+                    return startTime(Long.parseLong(value));
+                case "commitInterval":
+                    return commitInterval(Long.parseLong(value));
+                default:
+                    throw new IllegalArgumentException("Unknown option " + name);
+            }
+        }
+
+        Shape copy() {
+            Shape copy = new Shape();
+            copy.seed = seed;
+            copy.commits = commits;
+            copy.branches = branches;
+            copy.branchCommits = branchCommits;
+            copy.merges = merges;
+            copy.tags = tags;
+            copy.authors = authors;
+            copy.authorSkew = authorSkew;
+            copy.files = files;
+            copy.filesPerDirectory = filesPerDirectory;
+            copy.minLines = minLines;
+            copy.maxLines = maxLines;
+            copy.generatedFiles = generatedFiles;
+            copy.generatedFileLines = generatedFileLines;
+            copy.changesPerCommit = changesPerCommit;
+            copy.dates = dates;
+            copy.startTime = startTime;
+            copy.commitInterval = commitInterval;
+            return copy;
+        }
+    }
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final String[] EXTENSIONS = {"java", "js", "css", "md", "xml", "txt"};
+    /**
+     * Lines of a generated file rewritten by a change
+     */
+    private static final int GENERATED_BLOCK_LINES = 1000;
+
+    private final Shape shape;
+    private final Random random;
+    private final Calendar calendar;
+    private final Repository repository;
+    private final ObjectInserter inserter;
+    private final ObjectReader reader;
+    private final ArrayList<Branch> branches;
+    private final ArrayList<ObjectId> masterCommits;
+    private final HashSet<String> generatedPaths;
+    private long time;
+    private int fileCount;
+    private int mergeCount;
+
+    private SyntheticRepository(Shape shape, Repository repository) {
+        this.shape = shape;
+        this.random = new Random(shape.seed);
+        this.calendar = Calendar.getInstance(UTC);
+        this.repository = repository;
+        this.inserter = repository.newObjectInserter();
+        this.reader = repository.newObjectReader();
+        this.branches = new ArrayList<>();
+        this.masterCommits = new ArrayList<>();
+        this.generatedPaths = new HashSet<>();
+        this.time = shape.startTime;
+        this.fileCount = 0;
+        this.mergeCount = 0;
+    }
+
+    /**
+     * Creates a repository with a working tree
+     *
+     * @param dir   folder of the working tree, must not exist or be empty
+     * @param shape
+     * @return dir
+     * @throws IOException
+     */
+    public static File create(File dir, Shape shape) throws IOException {
+        Repository repository = FileRepositoryBuilder.create(new File(dir, Constants.DOT_GIT));
+        try {
+            repository.create();
+            SyntheticRepository synthetic = new SyntheticRepository(shape, repository);
+            try {
+                synthetic.generate();
+                synthetic.checkout(dir.toPath());
+            } finally {
+                synthetic.inserter.release();
+                synthetic.reader.release();
+            }
+            // packed like the repositories the application is used on
+            Git.wrap(repository).gc().call();
+        } catch (GitAPIException e) {
+            throw new IOException("Could not pack the repository", e);
+        } finally {
+            repository.close();
+        }
+        return dir;
+    }
+
+    /**
+     * Deletes a folder and everything under it
+     *
+     * @param dir
+     * @throws IOException
+     */
+    public static void delete(File dir) throws IOException {
+        if (dir == null || !dir.exists())
+            return;
+        Files.walkFileTree(dir.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path d, IOException e) throws IOException {
+                Files.delete(d);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Creates a repository for a scale test
+     *
+     * @param args folder, preset and options of the shape as name=value, such as commits=50000
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Wrong number of arguments.\nPlease insert the repository folder, a preset out of "
+                    + Arrays.toString(Preset.values()) + " and options such as commits=50000.");
+            return;
+        }
+        try {
+            Shape shape = Preset.valueOf(args[1]).toShape();
+            for (int i = 2; i < args.length; i++) {
+                int equals = args[i].indexOf('=');
+                if (equals < 0)
+                    throw new IllegalArgumentException("Option " + args[i] + " is not name=value");
+                shape.set(args[i].substring(0, equals), args[i].substring(equals + 1));
+            }
+            long start = System.currentTimeMillis();
+            create(new File(args[0]), shape);
+            System.out.println("Created " + args[0] + " in " + (System.currentTimeMillis() - start) + " ms");
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+        } catch (IOException e) {
+            System.err.println("An error occurred while creating the repository.");
+            e.printStackTrace();
+        }
+    }
+
+    private void generate() throws IOException {
+        Branch master = new Branch("master", null);
+        branches.add(master);
+
+        int initialFiles = Math.max(1, shape.files / 10);
+        int filesPerCommit = Math.max(1, (shape.files - initialFiles + shape.commits - 1) / shape.commits);
+        for (int i = 0; i < shape.commits; i++) {
+            Branch branch = master;
+            if (shape.branches > 1 && i > 0 && random.nextDouble() < shape.branchCommits)
+                branch = branch(1 + random.nextInt(shape.branches - 1));
+
+            if (i == 0) {
+                for (int g = 0; g < shape.generatedFiles; g++)
+                    addGeneratedFile(branch);
+            }
+            int missing = targetFiles(i) - fileCount;
+            for (int f = 0; f < (i == 0 ? missing : Math.min(missing, filesPerCommit)); f++)
+                addFile(branch);
+            int changes = 1 + random.nextInt(Math.max(1, shape.changesPerCommit));
+            for (int c = 0; c < changes && i > 0; c++)
+                changeFile(branch);
+
+            Branch merged = null;
+            if (branch == master && mergeCount < (long) shape.merges * (i + 1) / shape.commits)
+                merged = merge(master);
+            commit(branch, merged, i);
+            if (branch == master)
+                masterCommits.add(branch.tip);
+        }
+
+        // branches that never had a commit start at the tip of master
+        branch(shape.branches - 1);
+        for (Branch branch : branches)
+            updateRef(Constants.R_HEADS + branch.name, branch.tip);
+        tag();
+        inserter.flush();
+    }
+
+    /**
+     * Returns a branch, it is forked from the current tip of master the first time
+     */
+    private Branch branch(int index) {
+        while (branches.size() <= index)
+            branches.add(new Branch("branch-" + branches.size(), branches.get(0)));
+        return branches.get(index);
+    }
+
+    /**
+     * Brings the files a random branch changed since it was forked or last merged into master
+     *
+     * @return the merged branch, or null if no branch has changes
+     */
+    private Branch merge(Branch master) {
+        ArrayList<Branch> candidates = new ArrayList<>();
+        for (Branch branch : branches) {
+            if (branch != master && !branch.changed.isEmpty())
+                candidates.add(branch);
+        }
+        if (candidates.isEmpty())
+            return null;
+
+        Branch branch = candidates.get(random.nextInt(candidates.size()));
+        for (String path : branch.changed)
+            master.put(path, branch.files.get(path));
+        branch.changed.clear();
+        mergeCount++;
+        return branch;
+    }
+
+    /**
+     * Number of ordinary files added up to the given commit
+     */
+    private int targetFiles(int commit) {
+        int initial = Math.max(1, shape.files / 10);
+        return initial + (int) ((shape.files - initial) * (long) commit / shape.commits);
+    }
+
+    private void addFile(Branch branch) throws IOException {
+        int directory = shape.filesPerDirectory == Integer.MAX_VALUE ? 0 : fileCount / shape.filesPerDirectory;
+        String path = "src/module" + directory + "/file" + fileCount + "." + EXTENSIONS[fileCount % EXTENSIONS.length];
+        fileCount++;
+        int lines = shape.minLines + random.nextInt(Math.max(1, shape.maxLines - shape.minLines));
+        StringBuilder content = new StringBuilder();
+        for (int l = 0; l < lines; l++)
+            content.append(line()).append('\n');
+        branch.put(path, insertBlob(content.toString()));
+    }
+
+    private void addGeneratedFile(Branch branch) throws IOException {
+        String path = "generated/data" + generatedPaths.size() + ".json";
+        generatedPaths.add(path);
+        StringBuilder content = new StringBuilder();
+        for (int l = 0; l < shape.generatedFileLines; l++)
+            content.append(line()).append('\n');
+        branch.put(path, insertBlob(content.toString()));
+    }
+
+    /**
+     * Replaces, inserts or deletes a few lines of a random file, or rewrites a block of a generated file
+     */
+    private void changeFile(Branch branch) throws IOException {
+        String path = branch.paths.get(random.nextInt(branch.paths.size()));
+        String content = new String(reader.open(branch.files.get(path)).getCachedBytes(Integer.MAX_VALUE), StandardCharsets.UTF_8);
+        ArrayList<String> lines = new ArrayList<>(Arrays.asList(content.split("\n", -1)));
+        lines.remove(lines.size() - 1);
+
+        if (generatedPaths.contains(path)) {
+            int start = random.nextInt(Math.max(1, lines.size() - GENERATED_BLOCK_LINES));
+            for (int l = start; l < Math.min(lines.size(), start + GENERATED_BLOCK_LINES); l++)
+                lines.set(l, line());
+        } else {
+            int edits = 1 + random.nextInt(5);
+            for (int e = 0; e < edits; e++) {
+                int at = random.nextInt(lines.size() + 1);
+                int operation = random.nextInt(3);
+                if (operation == 0 || lines.size() < 2)
+                    lines.add(at, line());
+                else if (at < lines.size() && operation == 1)
+                    lines.set(at, line());
+                else if (at < lines.size())
+                    lines.remove(at);
+            }
+        }
+
+        StringBuilder changed = new StringBuilder(content.length() + 64);
+        for (String line : lines)
+            changed.append(line).append('\n');
+        branch.put(path, insertBlob(changed.toString()));
+    }
+
+    /**
+     * Commits the files of a branch
+     *
+     * @param branch
+     * @param merged second parent, may be null
+     * @param index  of the commit in the history
+     */
+    private void commit(Branch branch, Branch merged, int index) throws IOException {
+        nextTime();
+        int author = (int) (shape.authors * Math.pow(random.nextDouble(), shape.authorSkew));
+        PersonIdent ident = new PersonIdent("Author " + author, "author" + author + "@example.com", new Date(time), UTC);
+
+        CommitBuilder commit = new CommitBuilder();
+        commit.setTreeId(insertTree(branch.files));
+        if (branch.tip != null && merged != null)
+            commit.setParentIds(branch.tip, merged.tip);
+        else if (branch.tip != null)
+            commit.setParentId(branch.tip);
+        commit.setAuthor(ident);
+        commit.setCommitter(ident);
+        String subject = merged != null ? "Merge " + merged.name + " into " + branch.name : "Change " + index + " on " + branch.name;
+        commit.setMessage(subject + "\n\n" + line() + "\n");
+        branch.tip = inserter.insert(commit);
+    }
+
+    /**
+     * Moves time to the date of the next commit
+     */
+    private void nextTime() {
+        long interval = (long) (random.nextDouble() * 2 * shape.commitInterval);
+        switch (shape.dates) {
+            case UNIFORM:
+                time += interval;
+                break;
+            case WORKDAYS:
+                calendar.setTimeInMillis(time + interval);
+                while (calendar.get(Calendar.DAY_OF_WEEK) == Calendar.SATURDAY
+                        || calendar.get(Calendar.DAY_OF_WEEK) == Calendar.SUNDAY
+                        || calendar.get(Calendar.HOUR_OF_DAY) < 9 || calendar.get(Calendar.HOUR_OF_DAY) >= 18) {
+                    if (calendar.get(Calendar.HOUR_OF_DAY) >= 9)
+                        calendar.add(Calendar.DAY_OF_MONTH, 1);
+                    calendar.set(Calendar.HOUR_OF_DAY, 9 + random.nextInt(9));
+                    calendar.set(Calendar.MINUTE, random.nextInt(60));
+                }
+                time = calendar.getTimeInMillis();
+                break;
+            case BURSTS:
+                // one commit in twenty ends a burst, the quiet periods take most of the time
+                time += random.nextInt(20) == 0 ? 10 * interval : interval / 20;
+                break;
+        }
+    }
+
+    /**
+     * Tags master at even intervals, every other tag is annotated
+     */
+    private void tag() throws IOException {
+        for (int t = 0; t < shape.tags && !masterCommits.isEmpty(); t++) {
+            ObjectId commit = masterCommits.get((int) ((t + 1L) * (masterCommits.size() - 1) / shape.tags));
+            String name = "v" + (t + 1) + ".0";
+            ObjectId target = commit;
+            if (t % 2 == 0) {
+                TagBuilder tag = new TagBuilder();
+                tag.setObjectId(commit, Constants.OBJ_COMMIT);
+                tag.setTag(name);
+                tag.setTagger(new PersonIdent("Author 0", "author0@example.com", new Date(shape.startTime), UTC));
+                tag.setMessage("Release " + name + "\n");
+                target = inserter.insert(tag);
+            }
+            updateRef(Constants.R_TAGS + name, target);
+        }
+    }
+
+    /**
+     * Writes the files of master to the working tree and the index
+     */
+    private void checkout(Path dir) throws IOException {
+        inserter.flush();
+        DirCache index = repository.lockDirCache();
+        DirCacheBuilder builder = index.builder();
+        for (Map.Entry<String, ObjectId> file : branches.get(0).files.entrySet()) {
+            Path path = dir.resolve(file.getKey());
+            byte[] content = reader.open(file.getValue()).getCachedBytes(Integer.MAX_VALUE);
+            Files.createDirectories(path.getParent());
+            Files.write(path, content);
+
+            DirCacheEntry entry = new DirCacheEntry(file.getKey());
+            entry.setFileMode(FileMode.REGULAR_FILE);
+            entry.setObjectId(file.getValue());
+            entry.setLength(content.length);
+            entry.setLastModified(Files.getLastModifiedTime(path).toMillis());
+            builder.add(entry);
+        }
+        builder.commit();
+    }
+
+    private ObjectId insertBlob(String content) throws IOException {
+        return inserter.insert(Constants.OBJ_BLOB, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private ObjectId insertTree(TreeMap<String, ObjectId> files) throws IOException {
+        DirCache index = DirCache.newInCore();
+        DirCacheBuilder builder = index.builder();
+        for (Map.Entry<String, ObjectId> file : files.entrySet()) {
+            DirCacheEntry entry = new DirCacheEntry(file.getKey());
+            entry.setFileMode(FileMode.REGULAR_FILE);
+            entry.setObjectId(file.getValue());
+            builder.add(entry);
+        }
+        builder.finish();
+        return index.writeTree(inserter);
+    }
+
+    private void updateRef(String name, ObjectId id) throws IOException {
+        RefUpdate update = repository.updateRef(name);
+        update.setNewObjectId(id);
+        update.forceUpdate();
+    }
+
+    private String line() {
+        int words = random.nextInt(12);
+        StringBuilder line = new StringBuilder();
+        for (int w = 0; w < words; w++) {
+            if (w > 0)
+                line.append(' ');
+            String word = Long.toString(random.nextLong() & Long.MAX_VALUE, 36);
+            line.append(word, 0, Math.min(word.length(), 1 + random.nextInt(8)));
+        }
+        return line.toString();
+    }
+
+    /**
+     * Files and tip of a branch, and the files it changed since it was forked or last merged
+     */
+    private static class Branch {
+        final String name;
+        final TreeMap<String, ObjectId> files;
+        final ArrayList<String> paths;
+        final HashSet<String> changed;
+        ObjectId tip;
+
+        Branch(String name, Branch forkedFrom) {
+            this.name = name;
+            this.files = forkedFrom == null ? new TreeMap<String, ObjectId>() : new TreeMap<>(forkedFrom.files);
+            this.paths = forkedFrom == null ? new ArrayList<String>() : new ArrayList<>(forkedFrom.paths);
+            this.changed = new HashSet<>();
+            this.tip = forkedFrom == null ? null : forkedFrom.tip;
+        }
+
+        void put(String path, ObjectId blob) {
+            if (files.put(path, blob) == null)
+                paths.add(path);
+            changed.add(path);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package edu.df.files;
+
+import edu.df.benchmarks.RepositoryState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks of the file analysis, countFileLines of the original Repository, on the working tree of a synthetic
+ * repository
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LineCounterBenchmark {
+
+    /**
+     * The files of the working tree, and their content for the benchmark without file system access
+     */
+    @State(Scope.Benchmark)
+    public static class WorkingTree {
+        Path root;
+        List<Path> files;
+        List<byte[]> contents;
+
+        @Setup(Level.Trial)
+        public void setUp(RepositoryState state) throws IOException {
+            root = state.dir.toPath();
+            Path gitDir = root.resolve(".git");
+            try (Stream<Path> paths = Files.walk(root)) {
+                files = paths.filter(path -> !path.startsWith(gitDir) && Files.isRegularFile(path))
+                        .collect(Collectors.toList());
+            }
+            contents = new ArrayList<>(files.size());
+            for (Path file : files)
+                contents.add(Files.readAllBytes(file));
+        }
+    }
+
+    @Benchmark
+    public long countFileLines(WorkingTree tree) throws IOException {
+        long lines = 0;
+        for (Path file : tree.files)
+            lines += LineCounter.countLines(file);
+        return lines;
+    }
+
+    @Benchmark
+    public long countLinesInMemory(WorkingTree tree) {
+        long lines = 0;
+        for (byte[] content : tree.contents)
+            lines += LineCounter.countLines(content);
+        return lines;
+    }
+
+    @Benchmark
+    public HashMap<String, FileInfo> scanWorkingTree(WorkingTree tree) throws IOException {
+        return new WorkingTreeScanner(Runtime.getRuntime().availableProcessors()).scan(tree.root);
+    }
+}
@@ -0,0 +1,157 @@
+package edu.df.git;
+
+import edu.df.benchmarks.RepositoryState;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the stages of Repository.analyze(), each one run alone on the history of a synthetic repository.
+ * <p>
+ * The stages have been moved out of Repository since they were first written, the benchmarks keep the names
+ * of the original methods: updateCommitsStatistics and calculateDateWithoutTime are CommitTimeSeries,
+ * commitInBranch is BranchMembership, getTag is TagIndex, calculateLineChanges is DiffEngine and
+ * calculatePercentages is CommitActivityMatrix together with Committer.calculatePercentages.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AnalysisBenchmark {
+
+    /**
+     * The commits, branches and committers of the repository, read once per trial
+     */
+    @State(Scope.Benchmark)
+    public static class History {
+        org.eclipse.jgit.lib.Repository repository;
+        List<Ref> branchRefs;
+        List<RevCommit> sortedByDateCommits;
+        long[] commitTimes;
+        List<Committer> committers;
+        CommitStore commits;
+        long totalLinesAdded, totalLinesDeleted, totalFilesChanged;
+
+        @Setup(Level.Trial)
+        public void setUp(RepositoryState state) throws IOException, GitAPIException {
+            Git git = Git.open(state.dir);
+            repository = git.getRepository();
+            branchRefs = git.branchList().call();
+
+            ArrayList<RevCommit> all = new ArrayList<>();
+            RevWalk walk = new RevWalk(repository);
+            try {
+                for (Ref branch : branchRefs)
+                    walk.markStart(walk.parseCommit(branch.getObjectId()));
+                for (RevCommit commit : walk)
+                    all.add(commit);
+            } finally {
+                walk.release();
+            }
+
+            HashMap<String, Committer> byEmail = new HashMap<>();
+            commits = new CommitStore(null);
+            commitTimes = new long[all.size()];
+            for (int i = 0; i < all.size(); i++) {
+                RevCommit commit = all.get(i);
+                String email = commit.getAuthorIdent().getEmailAddress();
+                Committer committer = byEmail.get(email);
+                if (committer == null) {
+                    committer = new Committer(commit.getAuthorIdent().getName(), email);
+                    byEmail.put(email, committer);
+                }
+                committer.setNumberOfCommits(committer.getNumberOfCommits() + 1);
+                commits.add(commit, committer, commit.getCommitTime(), (int) (commit.getAuthorIdent().getWhen().getTime() / 1000L), null);
+                commitTimes[i] = commit.getCommitTime() * 1000L;
+            }
+            committers = new ArrayList<>(byEmail.values());
+
+            sortedByDateCommits = new ArrayList<>(all);
+            sortedByDateCommits.sort(Comparator.comparingInt(RevCommit::getCommitTime));
+            DiffStat[] diffStats = new DiffEngine(repository, 1, null).diff(sortedByDateCommits);
+            for (int i = 1; i < diffStats.length; i++) {
+                totalLinesAdded += diffStats[i].getLinesAdded();
+                totalLinesDeleted += diffStats[i].getLinesDeleted();
+                totalFilesChanged += diffStats[i].getFilesChanged();
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            repository.close();
+        }
+    }
+
+    @Benchmark
+    public CommitTimeSeries updateCommitsStatistics(History history) {
+        CommitTimeSeries series = new CommitTimeSeries();
+        for (long time : history.commitTimes)
+            series.add(time);
+        // weeks and months are rolled up on first use
+        series.getCommitsInWeek(series.getFirstWeek());
+        return series;
+    }
+
+    @Benchmark
+    public long calculateDateWithoutTime(History history) {
+        long days = 0;
+        for (long time : history.commitTimes)
+            days += CommitTimeSeries.epochDay(time);
+        return days;
+    }
+
+    @Benchmark
+    public BranchMembership commitInBranch(History history) throws IOException {
+        BranchMembership membership = new BranchMembership(history.repository, history.branchRefs);
+        membership.compute();
+        return membership;
+    }
+
+    @Benchmark
+    public int getTag(History history) throws IOException {
+        TagIndex tagIndex = new TagIndex(history.repository);
+        tagIndex.compute();
+        int tagged = 0;
+        for (ObjectId commit : history.sortedByDateCommits) {
+            if (tagIndex.getTag(commit) != null)
+                tagged++;
+        }
+        return tagged;
+    }
+
+    @Benchmark
+    public DiffStat[] calculateLineChanges(History history) throws IOException {
+        return new DiffEngine(history.repository, Runtime.getRuntime().availableProcessors(), null).diff(history.sortedByDateCommits);
+    }
+
+    @Benchmark
+    public CommitActivityMatrix calculatePercentages(History history) {
+        CommitActivityMatrix matrix = CommitActivityMatrix.build(history.committers, history.commits);
+        for (Committer committer : history.committers)
+            committer.calculatePercentages(history.commits.size(), history.totalLinesAdded, history.totalLinesDeleted, history.totalFilesChanged);
+        return matrix;
+    }
+}
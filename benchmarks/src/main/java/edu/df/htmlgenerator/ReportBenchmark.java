@@ -0,0 +1,75 @@
+package edu.df.htmlgenerator;
+
+import edu.df.benchmarks.RepositoryState;
+import edu.df.benchmarks.SyntheticRepository;
+import edu.df.git.Repository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end benchmarks, analyzing a synthetic repository and writing its report.
+ * <p>
+ * Run with the GC profiler, as BenchmarkRunner does, to see the allocation rate next to the throughput.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReportBenchmark {
+
+    /**
+     * The repository analyzed once per trial, and the folder its report is written to
+     */
+    @State(Scope.Benchmark)
+    public static class AnalyzedRepository {
+        Repository repository;
+        File outputDir;
+
+        @Setup(Level.Trial)
+        public void setUp(RepositoryState state) throws IOException {
+            repository = new Repository(state.dir.getPath());
+            repository.setDiffCacheFile(null);
+            repository.analyze();
+            outputDir = Files.createTempDirectory("gitstatistics-report").toFile();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            repository.close();
+            SyntheticRepository.delete(outputDir);
+        }
+    }
+
+    @Benchmark
+    public Repository analyze(RepositoryState state) throws IOException {
+        Repository repository = new Repository(state.dir.getPath());
+        try {
+            repository.setDiffCacheFile(null);
+            repository.analyze();
+        } finally {
+            repository.close();
+        }
+        return repository;
+    }
+
+    @Benchmark
+    public void generateHtmlReport(AnalyzedRepository analyzed) throws IOException {
+        new ReportGenerator(analyzed.repository, analyzed.outputDir.getPath()).generateHtmlReport();
+    }
+}
@@ -0,0 +1,219 @@
+package edu.df.batch;
+
+import edu.df.git.Repository;
+import edu.df.htmlgenerator.ReportGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Analyzes the repositories of a manifest in one JVM and writes a report for each one, next to a summary page
+ * and a metrics file covering all of them.
+ * <p>
+ * A few repositories are analyzed at once, each on a thread of its own. Their line changes and report sections run
+ * on a worker pool shared by all of them, so the number of busy threads stays bounded however many repositories
+ * there are. Before a repository starts, its memory budget is taken from the memory of the batch, a quarter of
+ * the maximum heap being kept for the JVM itself. Repositories without a budget in the manifest get an equal share,
+ * a large budget makes others wait until enough memory is free, and a budget above the memory of the batch runs
+ * the repository alone. A repository that fails with an exception is recorded as failed and the batch goes on.
+ * An Error such as OutOfMemoryError aborts the batch, as the other repositories share the heap and the worker pool
+ * and their state after it is unknown. Listeners are told when each repository starts and finishes.
+ */
+public class BatchAnalysis {
+    private static final long MB = 1 << 20;
+
+    private final List<ManifestEntry> entries;
+    private final File outputDir;
+    private final CopyOnWriteArrayList<BatchListener> listeners;
+    private int repositoryThreads;
+    private int workerThreads;
+    private long memory;
+
+    /**
+     * BatchAnalysis constructor
+     *
+     * @param entries   repositories to analyze
+     * @param outputDir receives a folder per repository, the shared assets, index.html and metrics.json
+     */
+    public BatchAnalysis(List<ManifestEntry> entries, File outputDir) {
+        this.entries = entries;
+        this.outputDir = outputDir;
+        this.listeners = new CopyOnWriteArrayList<>();
+        int processors = Runtime.getRuntime().availableProcessors();
+        this.repositoryThreads = Math.max(1, processors / 2);
+        this.workerThreads = processors;
+        this.memory = Runtime.getRuntime().maxMemory() / 4 * 3;
+    }
+
+    public void addListener(BatchListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(BatchListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Sets how many repositories are analyzed at once, by default half the number of processors
+     *
+     * @param repositoryThreads
+     */
+    public void setRepositoryThreads(int repositoryThreads) {
+        this.repositoryThreads = Math.max(1, repositoryThreads);
+    }
+
+    /**
+     * Sets the size of the worker pool shared by all repositories, by default the number of processors
+     *
+     * @param workerThreads
+     */
+    public void setWorkerThreads(int workerThreads) {
+        this.workerThreads = Math.max(1, workerThreads);
+    }
+
+    /**
+     * Sets the memory the budgets of the repositories running at once must fit in,
+     * by default three quarters of the maximum heap
+     *
+     * @param memory in bytes
+     */
+    public void setMemory(long memory) {
+        this.memory = memory;
+    }
+
+    /**
+     * Analyzes all repositories and writes their reports, the summary page and the metrics file
+     *
+     * @return a result per repository, in the order of the manifest
+     * @throws IOException if the summary could not be written
+     * @throws Error       thrown by the analysis of a repository, the batch stops at the first one
+     */
+    public List<RepositoryResult> run() throws IOException {
+        long start = System.currentTimeMillis();
+        //noinspection ResultOfMethodCallIgnored
+        outputDir.mkdirs();
+        File assetDir = new File(outputDir, "assets");
+        ReportGenerator.installAssets(assetDir);
+
+        int memoryPermits = (int) Math.max(1, Math.min(Integer.MAX_VALUE, memory / MB));
+        long defaultBudget = memoryPermits / repositoryThreads * MB;
+        Semaphore memoryPermitsLeft = new Semaphore(memoryPermits, true);
+
+        ExecutorService workers = Executors.newFixedThreadPool(workerThreads);
+        ExecutorService repositories = Executors.newFixedThreadPool(repositoryThreads);
+        // results are taken as they complete, so an Error stops the batch without waiting for the repositories before it
+        ExecutorCompletionService<RepositoryResult> completion = new ExecutorCompletionService<>(repositories);
+        HashMap<Future<RepositoryResult>, Integer> manifestIndexes = new HashMap<>();
+        RepositoryResult[] results = new RepositoryResult[entries.size()];
+        try {
+            for (ManifestEntry entry : entries) {
+                long budget = entry.getMemoryBudget() >= 0 ? entry.getMemoryBudget() : defaultBudget;
+                int permits = (int) Math.max(1, Math.min(memoryPermits, (budget + MB - 1) / MB));
+                manifestIndexes.put(completion.submit(() -> analyze(entry, assetDir, workers, memoryPermitsLeft, permits, budget)),
+                        manifestIndexes.size());
+            }
+            for (int i = 0; i < results.length; i++) {
+                Future<RepositoryResult> future = completion.take();
+                results[manifestIndexes.get(future)] = future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while analyzing the repositories");
+        } catch (ExecutionException e) {
+            // analyze() records every exception in its result, what is left are Errors
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new IOException(e.getCause());
+        } finally {
+            repositories.shutdownNow();
+            workers.shutdownNow();
+        }
+
+        List<RepositoryResult> resultList = Arrays.asList(results);
+        SummaryWriter summary = new SummaryWriter(resultList, start);
+        summary.writeHtml(new File(outputDir, "index.html"), "assets");
+        summary.writeJson(new File(outputDir, "metrics.json"));
+        return resultList;
+    }
+
+    /**
+     * Analyzes a repository and writes its report once its memory budget is free
+     *
+     * @param entry
+     * @param assetDir
+     * @param workers           shared worker pool
+     * @param memoryPermitsLeft megabytes of memory not taken by running repositories
+     * @param permits           megabytes to take
+     * @param budget            memory budget of the repository in bytes
+     * @return
+     * @throws InterruptedException
+     */
+    private RepositoryResult analyze(ManifestEntry entry, File assetDir, ExecutorService workers,
+                                     Semaphore memoryPermitsLeft, int permits, long budget) throws InterruptedException {
+        memoryPermitsLeft.acquire(permits);
+        long start = System.nanoTime();
+        Repository repository = null;
+        try {
+            fireStarted(entry);
+            repository = new Repository(entry.getPath());
+            File repositoryOutputDir = new File(outputDir, entry.getName());
+            //noinspection ResultOfMethodCallIgnored
+            repositoryOutputDir.mkdirs();
+            repository.setSnapshotFile(new File(repositoryOutputDir, "gitstatistics.snapshot"));
+            repository.setExecutor(workers);
+            repository.analyze();
+
+            ReportGenerator reportGenerator = new ReportGenerator(repository, repositoryOutputDir.getPath());
+            reportGenerator.setAssetDirectory(assetDir);
+            reportGenerator.setExecutor(workers);
+            reportGenerator.generateHtmlReport();
+
+            RepositoryResult result = RepositoryResult.reported(entry, repository, budget, System.nanoTime() - start);
+            fireFinished(result);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("The analysis of " + entry.getPath() + " failed.");
+            e.printStackTrace();
+            RepositoryResult result = RepositoryResult.failed(entry, repository, e, budget, System.nanoTime() - start);
+            fireFinished(result);
+            return result;
+        } finally {
+            if (repository != null)
+                repository.close();
+            memoryPermitsLeft.release(permits);
+        }
+    }
+
+    private void fireStarted(ManifestEntry entry) {
+        for (BatchListener listener : listeners) {
+            try {
+                listener.repositoryStarted(entry);
+            } catch (RuntimeException e) {
+                System.err.println("A batch listener failed.");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void fireFinished(RepositoryResult result) {
+        for (BatchListener listener : listeners) {
+            try {
+                listener.repositoryFinished(result);
+            } catch (RuntimeException e) {
+                System.err.println("A batch listener failed.");
+                e.printStackTrace();
+            }
+        }
+    }
+}
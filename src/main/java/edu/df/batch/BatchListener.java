@@ -0,0 +1,22 @@
+package edu.df.batch;
+
+/**
+ * Receives the repositories of a BatchAnalysis as they start and finish.
+ * <p>
+ * Listeners are called from the threads analyzing the repositories, so they must be quick and thread safe.
+ */
+public interface BatchListener {
+    /**
+     * Called when the memory budget of a repository was taken and its analysis starts
+     *
+     * @param entry
+     */
+    void repositoryStarted(ManifestEntry entry);
+
+    /**
+     * Called once the report of a repository is written, or its analysis failed
+     *
+     * @param result
+     */
+    void repositoryFinished(RepositoryResult result);
+}
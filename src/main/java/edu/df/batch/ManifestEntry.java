@@ -0,0 +1,129 @@
+package edu.df.batch;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A repository of a batch manifest.
+ * <p>
+ * A manifest has one repository path per line, optionally followed by the memory budget of the repository,
+ * such as "/srv/git/kernel 4g". Budgets take a k, m or g suffix. Empty lines and lines starting with # are skipped.
+ * The output folder of a repository is named after it, never after the files and folders shared by the batch.
+ */
+public class ManifestEntry {
+    private static final Pattern LINE = Pattern.compile("(.*?)\\s+(\\d+)([kKmMgG])");
+    /**
+     * Names of the shared asset folder, the summary page and the metrics file in the output folder of the batch
+     */
+    private static final String[] RESERVED_NAMES = {"assets", "index.html", "metrics.json"};
+
+    private final String path;
+    private final String name;
+    private final long memoryBudget;
+
+    /**
+     * ManifestEntry constructor
+     *
+     * @param path         of the repository
+     * @param name         of the output folder of the repository, unique within the batch
+     * @param memoryBudget in bytes, or -1 for the default budget of the batch
+     */
+    public ManifestEntry(String path, String name, long memoryBudget) {
+        this.path = path;
+        this.name = name;
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Reads a manifest, repositories with the same folder name get a numbered output folder
+     *
+     * @param manifest
+     * @return entries in the order of the manifest
+     * @throws IOException
+     * @throws IllegalArgumentException if a memory budget does not fit in a long
+     */
+    public static List<ManifestEntry> read(File manifest) throws IOException {
+        List<ManifestEntry> entries = new ArrayList<>();
+        HashSet<String> names = new HashSet<>(Arrays.asList(RESERVED_NAMES));
+        try (BufferedReader in = Files.newBufferedReader(manifest.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            for (int lineNumber = 1; (line = in.readLine()) != null; lineNumber++) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+
+                String path = line;
+                long memoryBudget = -1;
+                Matcher matcher = LINE.matcher(line);
+                if (matcher.matches()) {
+                    path = matcher.group(1);
+                    memoryBudget = parseSize(matcher.group(2), matcher.group(3));
+                    if (memoryBudget < 0)
+                        throw new IllegalArgumentException("Memory budget too large at line " + lineNumber + " of the manifest: " + line);
+                }
+                path = path.replaceAll("\\\\", "/");
+
+                String baseName = new File(path).getName();
+                if (baseName.isEmpty() || baseName.equals(".git"))
+                    baseName = new File(path).getAbsoluteFile().getParentFile().getName();
+                String name = baseName;
+                for (int i = 2; !names.add(name.toLowerCase(Locale.ROOT)); i++)
+                    name = baseName + "-" + i;
+                entries.add(new ManifestEntry(path, name, memoryBudget));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Parses a memory size
+     *
+     * @param number digits
+     * @param unit   k, m or g
+     * @return bytes, or -1 if they do not fit in a long
+     */
+    private static long parseSize(String number, String unit) {
+        int shift;
+        switch (unit.toLowerCase(Locale.ROOT)) {
+            case "g":
+                shift = 30;
+                break;
+            case "m":
+                shift = 20;
+                break;
+            default:
+                shift = 10;
+        }
+        try {
+            long size = Long.parseLong(number);
+            return size > Long.MAX_VALUE >> shift ? -1 : size << shift;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return memory budget in bytes, or -1 for the default budget of the batch
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+}
@@ -0,0 +1,137 @@
+package edu.df.batch;
+
+import edu.df.git.Repository;
+import edu.df.metrics.AnalysisMetrics;
+
+/**
+ * Outcome of one repository of a batch. Only the totals and the metrics are kept, not the repository,
+ * so the memory of a repository is freed as soon as its report is written.
+ */
+public class RepositoryResult {
+    public enum Status {
+        /**
+         * Analyzed and reported
+         */
+        SUCCEEDED,
+        /**
+         * Reported, but a phase of the analysis failed and the statistics may be partial
+         */
+        INCOMPLETE,
+        /**
+         * No report was written
+         */
+        FAILED
+    }
+
+    private final ManifestEntry entry;
+    private final Status status;
+    private final String error;
+    private final long memoryBudget;
+    private final long wallTimeNanos;
+    private final AnalysisMetrics metrics;
+    private final long numberOfCommits, numberOfCommitters, numberOfBranches, numberOfTags, numberOfFiles, numberOfLines;
+
+    private RepositoryResult(ManifestEntry entry, Status status, String error, long memoryBudget, long wallTimeNanos,
+                             Repository repository) {
+        this.entry = entry;
+        this.status = status;
+        this.error = error;
+        this.memoryBudget = memoryBudget;
+        this.wallTimeNanos = wallTimeNanos;
+        this.metrics = repository != null ? repository.getMetrics() : null;
+        // the totals of a failed repository may be partial, only its metrics are kept
+        boolean analyzed = repository != null && status != Status.FAILED;
+        this.numberOfCommits = analyzed ? repository.getNumberOfAllCommits() : 0;
+        this.numberOfCommitters = analyzed ? repository.getNumberOfCommitters() : 0;
+        this.numberOfBranches = analyzed ? repository.getNumberOfBranches() : 0;
+        this.numberOfTags = analyzed ? repository.getNumberOfTags() : 0;
+        this.numberOfFiles = analyzed ? repository.getNumberOfFiles() : 0;
+        this.numberOfLines = analyzed ? repository.getNumberOfLines() : 0;
+    }
+
+    /**
+     * Result of a repository whose report was written
+     *
+     * @param entry
+     * @param repository
+     * @param memoryBudget  in bytes
+     * @param wallTimeNanos of the analysis and the report
+     * @return
+     */
+    static RepositoryResult reported(ManifestEntry entry, Repository repository, long memoryBudget, long wallTimeNanos) {
+        return new RepositoryResult(entry, repository.isComplete() ? Status.SUCCEEDED : Status.INCOMPLETE, null,
+                memoryBudget, wallTimeNanos, repository);
+    }
+
+    /**
+     * Result of a repository that failed
+     *
+     * @param entry
+     * @param repository    may be null if it could not be opened
+     * @param error
+     * @param memoryBudget  in bytes
+     * @param wallTimeNanos until the failure
+     * @return
+     */
+    static RepositoryResult failed(ManifestEntry entry, Repository repository, Throwable error, long memoryBudget, long wallTimeNanos) {
+        String message = error.getMessage() == null ? error.getClass().getName() : error.getClass().getName() + ": " + error.getMessage();
+        return new RepositoryResult(entry, Status.FAILED, message, memoryBudget, wallTimeNanos, repository);
+    }
+
+    public ManifestEntry getEntry() {
+        return entry;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the error of a failed repository, or null
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return memory budget the repository ran with, in bytes
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    public long getWallTimeNanos() {
+        return wallTimeNanos;
+    }
+
+    /**
+     * @return metrics of the analysis, or null if the analysis did not start
+     */
+    public AnalysisMetrics getMetrics() {
+        return metrics;
+    }
+
+    public long getNumberOfCommits() {
+        return numberOfCommits;
+    }
+
+    public long getNumberOfCommitters() {
+        return numberOfCommitters;
+    }
+
+    public long getNumberOfBranches() {
+        return numberOfBranches;
+    }
+
+    public long getNumberOfTags() {
+        return numberOfTags;
+    }
+
+    public long getNumberOfFiles() {
+        return numberOfFiles;
+    }
+
+    public long getNumberOfLines() {
+        return numberOfLines;
+    }
+}
@@ -0,0 +1,157 @@
+package edu.df.batch;
+
+import edu.df.metrics.Json;
+import j2html.tags.ContainerTag;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.DecimalFormat;
+import java.util.List;
+import java.util.Locale;
+
+import static j2html.TagCreator.*;
+
+/**
+ * Writes the summary page and the metrics file of a batch, covering every repository of the manifest.
+ */
+class SummaryWriter {
+    private static final String ROW_STYLE = "background-color:rgba(255, 255, 255, 0.75); padding-left:20px; padding-right:20px;padding-top:20px; padding-bottom:20px;" +
+            "max-width:1080px;" +
+            "margin: 0 auto !important;" +
+            "float: none !important;";
+
+    private final List<RepositoryResult> results;
+    private final long startTime;
+
+    /**
+     * SummaryWriter constructor
+     *
+     * @param results   of the repositories, in the order of the manifest
+     * @param startTime of the batch in milliseconds since the epoch
+     */
+    SummaryWriter(List<RepositoryResult> results, long startTime) {
+        this.results = results;
+        this.startTime = startTime;
+    }
+
+    /**
+     * Writes a page with a row per repository, linking to its report
+     *
+     * @param file
+     * @param assetUrl relative url of the shared asset folder
+     * @throws IOException
+     */
+    void writeHtml(File file, String assetUrl) throws IOException {
+        DecimalFormat df = new DecimalFormat("#.##");
+        ContainerTag rows = tbody();
+        rows.with(tr().with(td().with(h4("Repository")), td().with(h4("Status")), td().with(h4("Commits")),
+                td().with(h4("Committers")), td().with(h4("Branches")), td().with(h4("Files")),
+                td().with(h4("Lines")), td().with(h4("Seconds"))));
+        for (RepositoryResult result : results) {
+            String name = result.getEntry().getName();
+            boolean reported = result.getStatus() != RepositoryResult.Status.FAILED;
+            rows.with(tr().with(
+                    reported ? td().with(a(name).withHref("./" + encodePathSegment(name) + "/html/index.html")) : td().withText(name),
+                    td().withText(result.getStatus() == RepositoryResult.Status.FAILED ? "failed: " + result.getError() :
+                            result.getStatus().name().toLowerCase(Locale.ROOT)),
+                    td().withText(String.valueOf(result.getNumberOfCommits())),
+                    td().withText(String.valueOf(result.getNumberOfCommitters())),
+                    td().withText(String.valueOf(result.getNumberOfBranches())),
+                    td().withText(String.valueOf(result.getNumberOfFiles())),
+                    td().withText(String.valueOf(result.getNumberOfLines())),
+                    td().withText(df.format(result.getWallTimeNanos() / 1e9))));
+        }
+
+        String html = document().render() + html().withStyle("background-image:url(\"" + assetUrl + "/img/background.jpg\");").attr("lang", "eng").with(
+                head().with(meta().withCharset("UTF-8"),
+                        meta().withName("viewport").withContent("width=device-width, initial-scale=1"),
+                        link().withRel("shortcut icon").withHref(assetUrl + "/img/favicon.ico").withType("image/x-icon"),
+                        title("GIT Statistics"),
+                        link().withRel("stylesheet").withHref(assetUrl + "/css/milligram.min.css"),
+                        link().withRel("stylesheet").withHref(assetUrl + "/css/fonts.css"),
+                        link().withRel("stylesheet").withHref(assetUrl + "/css/normalize.css")),
+                body().withClass("container").with(
+                        div().withClass("row").withStyle(ROW_STYLE).withClass("column column-100").
+                                with(h1("Repositories").withStyle("text-align:center;")),
+                        div().withClass("column column-100").withStyle(ROW_STYLE + "font-size:1.5em;").
+                                with(table().with(rows)))).render();
+        try (Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            out.write(html);
+        }
+    }
+
+    /**
+     * Percent-encodes a folder name for a relative link, URLEncoder encodes for forms and turns spaces into +
+     *
+     * @param name
+     * @return
+     */
+    private static String encodePathSegment(String name) {
+        try {
+            return URLEncoder.encode(name, "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Writes the outcome and the analysis metrics of every repository as JSON, with times in nanoseconds
+     * and sizes in bytes
+     *
+     * @param file
+     * @throws IOException
+     */
+    void writeJson(File file) throws IOException {
+        int succeeded = 0, incomplete = 0, failed = 0;
+        for (RepositoryResult result : results) {
+            switch (result.getStatus()) {
+                case SUCCEEDED:
+                    succeeded++;
+                    break;
+                case INCOMPLETE:
+                    incomplete++;
+                    break;
+                default:
+                    failed++;
+            }
+        }
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"startTime\": ").append(startTime).append(",\n");
+        json.append("  \"wallTimeNanos\": ").append((System.currentTimeMillis() - startTime) * 1000000L).append(",\n");
+        json.append("  \"succeeded\": ").append(succeeded).append(",\n");
+        json.append("  \"incomplete\": ").append(incomplete).append(",\n");
+        json.append("  \"failed\": ").append(failed).append(",\n");
+        json.append("  \"repositories\": [");
+        for (int i = 0; i < results.size(); i++) {
+            RepositoryResult result = results.get(i);
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    {\n");
+            json.append("      \"name\": ").append(Json.quote(result.getEntry().getName())).append(",\n");
+            json.append("      \"path\": ").append(Json.quote(result.getEntry().getPath())).append(",\n");
+            json.append("      \"status\": ").append(Json.quote(result.getStatus().name().toLowerCase(Locale.ROOT))).append(",\n");
+            json.append("      \"error\": ").append(Json.quote(result.getError())).append(",\n");
+            json.append("      \"memoryBudgetBytes\": ").append(result.getMemoryBudget()).append(",\n");
+            json.append("      \"wallTimeNanos\": ").append(result.getWallTimeNanos()).append(",\n");
+            json.append("      \"commits\": ").append(result.getNumberOfCommits()).append(",\n");
+            json.append("      \"committers\": ").append(result.getNumberOfCommitters()).append(",\n");
+            json.append("      \"branches\": ").append(result.getNumberOfBranches()).append(",\n");
+            json.append("      \"tags\": ").append(result.getNumberOfTags()).append(",\n");
+            json.append("      \"files\": ").append(result.getNumberOfFiles()).append(",\n");
+            json.append("      \"lines\": ").append(result.getNumberOfLines()).append(",\n");
+            json.append("      \"analysis\": ").append(result.getMetrics() == null ? "null" : result.getMetrics().toJson("      ")).append('\n');
+            json.append("    }");
+        }
+        json.append(results.isEmpty() ? "]\n" : "\n  ]\n");
+        json.append("}\n");
+        try (Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            out.write(json.toString());
+        }
+    }
+}
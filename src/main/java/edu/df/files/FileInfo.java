@@ -4,6 +4,8 @@ public class FileInfo {
     private final String extension;
     private int numberOfFiles;
     private int numberOfLines;
+    private int numberOfSkippedFiles;
+    private long numberOfSkippedBytes;
 
     public FileInfo(String extension) {
         this.extension = extension;
@@ -11,6 +13,21 @@ public class FileInfo {
         this.numberOfLines = 0;
     }
 
+    /**
+     * Returns the extension a file is classified under, files with no extension are classified as "other"
+     *
+     * @param fileName
+     * @return
+     */
+    public static String extensionOf(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot < 0 ? "other" : fileName.substring(dot);
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
     public int getNumberOfFiles() {
         return numberOfFiles;
     }
@@ -27,6 +44,32 @@ public class FileInfo {
         this.numberOfLines = numberOfLines;
     }
 
+    /**
+     * Returns number of binary files, they are counted in number of files but their lines are not
+     *
+     * @return
+     */
+    public int getNumberOfSkippedFiles() {
+        return numberOfSkippedFiles;
+    }
+
+    public void setNumberOfSkippedFiles(int numberOfSkippedFiles) {
+        this.numberOfSkippedFiles = numberOfSkippedFiles;
+    }
+
+    /**
+     * Returns total size of the binary files
+     *
+     * @return
+     */
+    public long getNumberOfSkippedBytes() {
+        return numberOfSkippedBytes;
+    }
+
+    public void setNumberOfSkippedBytes(long numberOfSkippedBytes) {
+        this.numberOfSkippedBytes = numberOfSkippedBytes;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -48,6 +91,8 @@ public class FileInfo {
                 + "\"extension\":\"" + extension + "\""
                 + ",\"numberOfFiles\":\"" + numberOfFiles + "\""
                 + ",\"numberOfLines\":\"" + numberOfLines + "\""
+                + ",\"numberOfSkippedFiles\":\"" + numberOfSkippedFiles + "\""
+                + ",\"numberOfSkippedBytes\":\"" + numberOfSkippedBytes + "\""
                 + "}}";
     }
 }
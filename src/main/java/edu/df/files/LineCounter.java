@@ -0,0 +1,188 @@
+package edu.df.files;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Counts the lines of a file.
+ * <p>
+ * A line is ended by '\n', and a file that does not end with '\n' has one more line.
+ * Like git, a file with a NUL byte in its first 8000 bytes is binary and its lines are not counted.
+ * Large files are memory mapped, small files are read into a direct buffer owned by the calling thread.
+ * Newlines are counted eight bytes at a time.
+ */
+public class LineCounter {
+    /**
+     * Returned instead of the number of lines of a binary file
+     */
+    public static final long BINARY = -1;
+
+    static final long MAP_THRESHOLD = 1 << 20;
+    static final int BINARY_CHECK_SIZE = 8000;
+    private static final long MAX_MAP_SIZE = 1 << 30;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long NEWLINES = '\n' * ONES;
+
+    private static final ThreadLocal<ByteBuffer> BUFFERS = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+    };
+
+    private LineCounter() {
+    }
+
+    /**
+     * Counts number of lines in a file
+     *
+     * @param file
+     * @return number of lines, or BINARY
+     * @throws IOException
+     */
+    public static long countLines(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0)
+                return 0;
+            if (size >= MAP_THRESHOLD)
+                return countMapped(channel, size);
+            return countBuffered(channel);
+        }
+    }
+
+    /**
+     * Counts number of lines in a byte array
+     *
+     * @param bytes
+     * @return number of lines, or BINARY
+     */
+    public static long countLines(byte[] bytes) {
+        if (bytes.length == 0)
+            return 0;
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (isBinary(buffer))
+            return BINARY;
+        long count = countNewlines(buffer);
+        return bytes[bytes.length - 1] == '\n' ? count : count + 1;
+    }
+
+    /**
+     * Counts number of lines in a stream, the stream is read to its end but not closed
+     *
+     * @param in
+     * @return number of lines, or BINARY
+     * @throws IOException
+     */
+    public static long countLines(InputStream in) throws IOException {
+        byte[] bytes = new byte[BUFFER_SIZE];
+        long count = 0;
+        int read;
+        boolean checked = false;
+        byte lastByte = '\n';
+        while ((read = fill(in, bytes)) > 0) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, read);
+            if (!checked && isBinary(buffer))
+                return BINARY;
+            checked = true;
+            count += countNewlines(buffer);
+            lastByte = bytes[read - 1];
+        }
+        return lastByte == '\n' ? count : count + 1;
+    }
+
+    private static long countMapped(FileChannel channel, long size) throws IOException {
+        long count = 0;
+        byte lastByte = 0;
+        for (long position = 0; position < size; position += MAX_MAP_SIZE) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_MAP_SIZE, size - position));
+            if (position == 0 && isBinary(buffer))
+                return BINARY;
+            count += countNewlines(buffer);
+            lastByte = buffer.get(buffer.limit() - 1);
+        }
+        return lastByte == '\n' ? count : count + 1;
+    }
+
+    private static long countBuffered(FileChannel channel) throws IOException {
+        ByteBuffer buffer = BUFFERS.get();
+        long count = 0;
+        boolean checked = false;
+        byte lastByte = '\n';
+        buffer.clear();
+        while (true) {
+            boolean end = channel.read(buffer) < 0;
+            // the binary check needs the first bytes of the file in one piece
+            if (!end && !checked && buffer.position() < BINARY_CHECK_SIZE)
+                continue;
+            buffer.flip();
+            if (buffer.hasRemaining()) {
+                if (!checked && isBinary(buffer))
+                    return BINARY;
+                checked = true;
+                lastByte = buffer.get(buffer.limit() - 1);
+                count += countNewlines(buffer);
+            }
+            buffer.clear();
+            if (end)
+                break;
+        }
+        return lastByte == '\n' ? count : count + 1;
+    }
+
+    /**
+     * Reads from a stream until the array is full or the stream ends
+     *
+     * @return number of bytes read, 0 at the end of the stream
+     */
+    private static int fill(InputStream in, byte[] bytes) throws IOException {
+        int length = 0;
+        int read;
+        while (length < bytes.length && (read = in.read(bytes, length, bytes.length - length)) != -1)
+            length += read;
+        return length;
+    }
+
+    /**
+     * Looks for a NUL byte in the first bytes of a buffer, starting at its position
+     *
+     * @param buffer
+     * @return
+     */
+    static boolean isBinary(ByteBuffer buffer) {
+        int end = buffer.position() + Math.min(BINARY_CHECK_SIZE, buffer.remaining());
+        for (int i = buffer.position(); i < end; i++) {
+            if (buffer.get(i) == 0)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Counts the '\n' bytes between position and limit of a buffer, the position is moved to the limit
+     *
+     * @param buffer
+     * @return
+     */
+    static long countNewlines(ByteBuffer buffer) {
+        long count = 0;
+        while (buffer.remaining() >= 8) {
+            // bytes equal to '\n' become zero, then only zero bytes keep their high bit clear
+            long word = buffer.getLong() ^ NEWLINES;
+            long nonZero = ((word & LOW_BITS) + LOW_BITS) | word;
+            count += Long.bitCount(~(nonZero | LOW_BITS));
+        }
+        while (buffer.hasRemaining()) {
+            if (buffer.get() == '\n')
+                count++;
+        }
+        return count;
+    }
+}
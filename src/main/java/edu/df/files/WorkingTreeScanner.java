@@ -0,0 +1,294 @@
+package edu.df.files;
+
+import edu.df.metrics.PhaseMetrics;
+import edu.df.metrics.ThreadUsage;
+import org.eclipse.jgit.ignore.IgnoreNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects file statistics of a working tree, grouped by file extension.
+ * <p>
+ * Every directory is a fork-join task: it lists its entries, forks a task per subdirectory, counts the lines
+ * of its own files and merges the totals of its subdirectories. Files with no extension are classified as "other"
+ * and directories named .git are skipped.
+ * <p>
+ * Files and directories ignored by git are left out: each directory's .gitignore is read as the directory is
+ * listed and applies to everything under it, on top of the exclude files given to the constructor. Binary files
+ * are counted as files, but their lines are not, they are reported as skipped files and bytes.
+ */
+public class WorkingTreeScanner {
+    private static final int FILES = 0, LINES = 1, SKIPPED_FILES = 2, SKIPPED_BYTES = 3, BYTES_READ = 4;
+    /**
+     * Seconds to wait for the worker threads to end, so they can add their usage to the metrics
+     */
+    private static final long WORKER_TERMINATION_TIMEOUT = 60;
+
+    private final int threads;
+    private final List<Path> excludeFiles;
+    private PhaseMetrics metrics;
+
+    /**
+     * WorkingTreeScanner constructor
+     *
+     * @param threads number of worker threads
+     */
+    public WorkingTreeScanner(int threads) {
+        this(threads, Collections.<Path>emptyList());
+    }
+
+    /**
+     * WorkingTreeScanner constructor
+     *
+     * @param threads      number of worker threads
+     * @param excludeFiles files with ignore rules for the whole tree, such as .git/info/exclude,
+     *                     in increasing order of precedence. Missing files are skipped
+     */
+    public WorkingTreeScanner(int threads, List<Path> excludeFiles) {
+        this.threads = Math.max(1, threads);
+        this.excludeFiles = excludeFiles;
+    }
+
+    /**
+     * Sets the metrics the scanned files, the bytes read and the usage of the worker threads are added to
+     *
+     * @param metrics may be null
+     */
+    public void setMetrics(PhaseMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Scans a directory and everything under it
+     *
+     * @param root
+     * @return file statistics keyed by extension
+     * @throws IOException
+     */
+    public HashMap<String, FileInfo> scan(Path root) throws IOException {
+        IgnoreRules rootRules = null;
+        for (Path excludeFile : excludeFiles) {
+            IgnoreNode node = readIgnoreFile(excludeFile);
+            if (node != null)
+                rootRules = new IgnoreRules(node, "", rootRules);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads, MeasuredWorker::new, null, false);
+        HashMap<String, long[]> totals;
+        try {
+            totals = pool.invoke(new DirectoryTask(root, "", rootRules));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+            if (metrics != null)
+                awaitTermination(pool);
+        }
+
+        HashMap<String, FileInfo> filesInfo = new HashMap<>();
+        for (Map.Entry<String, long[]> total : totals.entrySet()) {
+            if (metrics != null) {
+                metrics.addFilesScanned(total.getValue()[FILES]);
+                metrics.addBytesRead(total.getValue()[BYTES_READ]);
+            }
+            FileInfo fileInfo = new FileInfo(total.getKey());
+            fileInfo.setNumberOfFiles((int) total.getValue()[FILES]);
+            fileInfo.setNumberOfLines((int) total.getValue()[LINES]);
+            fileInfo.setNumberOfSkippedFiles((int) total.getValue()[SKIPPED_FILES]);
+            fileInfo.setNumberOfSkippedBytes(total.getValue()[SKIPPED_BYTES]);
+            filesInfo.put(total.getKey(), fileInfo);
+        }
+        return filesInfo;
+    }
+
+    private static void awaitTermination(ForkJoinPool pool) throws InterruptedIOException {
+        try {
+            pool.awaitTermination(WORKER_TERMINATION_TIMEOUT, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while scanning the working tree");
+        }
+    }
+
+    /**
+     * Reads an ignore file
+     *
+     * @param file
+     * @return the rules, or null if the file does not exist or has no rules
+     * @throws IOException
+     */
+    private static IgnoreNode readIgnoreFile(Path file) throws IOException {
+        if (!Files.isRegularFile(file))
+            return null;
+        IgnoreNode node = new IgnoreNode();
+        try (InputStream in = Files.newInputStream(file)) {
+            node.parse(in);
+        }
+        return node.getRules().isEmpty() ? null : node;
+    }
+
+    /**
+     * Adds to per extension totals of number of files, number of lines, skipped files, skipped bytes and bytes read
+     */
+    private static void add(HashMap<String, long[]> totals, String extension, long... values) {
+        long[] total = totals.get(extension);
+        if (total == null)
+            totals.put(extension, values.clone());
+        else {
+            for (int i = 0; i < total.length; i++)
+                total[i] += values[i];
+        }
+    }
+
+    /**
+     * Ignore rules of a directory, linked to the rules of the directories above it
+     */
+    private static class IgnoreRules {
+        private final IgnoreNode node;
+        private final String directory;
+        private final IgnoreRules parent;
+
+        /**
+         * IgnoreRules constructor
+         *
+         * @param node
+         * @param directory path the rules are relative to, "" for the root
+         * @param parent    rules of lower precedence, may be null
+         */
+        IgnoreRules(IgnoreNode node, String directory, IgnoreRules parent) {
+            this.node = node;
+            this.directory = directory;
+            this.parent = parent;
+        }
+
+        /**
+         * Checks a path against these rules, then against the parent rules until one of them decides
+         *
+         * @param path        relative to the root
+         * @param isDirectory
+         * @return
+         */
+        boolean isIgnored(String path, boolean isDirectory) {
+            for (IgnoreRules rules = this; rules != null; rules = rules.parent) {
+                // like JGit, paths below the root keep their leading '/' so that anchored rules match
+                String entryPath = rules.directory.isEmpty() ? path : path.substring(rules.directory.length());
+                switch (rules.node.isIgnored(entryPath, isDirectory)) {
+                    case IGNORED:
+                        return true;
+                    case NOT_IGNORED:
+                        return false;
+                    default:
+                        break;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Worker thread of the pool, which adds its CPU time and allocations to the metrics when it ends
+     */
+    private class MeasuredWorker extends ForkJoinWorkerThread {
+        private ThreadUsage usage;
+
+        MeasuredWorker(ForkJoinPool pool) {
+            super(pool);
+        }
+
+        @Override
+        protected void onStart() {
+            super.onStart();
+            usage = ThreadUsage.ofCurrentThread();
+        }
+
+        @Override
+        protected void onTermination(Throwable exception) {
+            if (metrics != null && usage != null)
+                metrics.addThreadUsage(usage);
+            super.onTermination(exception);
+        }
+    }
+
+    private static class DirectoryTask extends RecursiveTask<HashMap<String, long[]>> {
+        private final Path directory;
+        private final String path;
+        private final IgnoreRules parentRules;
+
+        /**
+         * DirectoryTask constructor
+         *
+         * @param directory
+         * @param path        of the directory relative to the root, "" for the root
+         * @param parentRules ignore rules of the directories above, may be null
+         */
+        DirectoryTask(Path directory, String path, IgnoreRules parentRules) {
+            this.directory = directory;
+            this.path = path;
+            this.parentRules = parentRules;
+        }
+
+        @Override
+        protected HashMap<String, long[]> compute() {
+            HashMap<String, long[]> totals = new HashMap<>();
+            List<DirectoryTask> subdirectories = new ArrayList<>();
+            try {
+                IgnoreRules rules = parentRules;
+                IgnoreNode node = readIgnoreFile(directory.resolve(".gitignore"));
+                if (node != null)
+                    rules = new IgnoreRules(node, path, parentRules);
+
+                try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                    for (Path entry : entries) {
+                        BasicFileAttributes attributes;
+                        try {
+                            attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+                        } catch (NoSuchFileException e) {
+                            // broken symbolic link
+                            continue;
+                        }
+                        String name = entry.getFileName().toString();
+                        String entryPath = path.isEmpty() ? name : path + "/" + name;
+                        if (attributes.isDirectory()) {
+                            if (!name.equals(".git") && (rules == null || !rules.isIgnored(entryPath, true))) {
+                                DirectoryTask task = new DirectoryTask(entry, entryPath, rules);
+                                task.fork();
+                                subdirectories.add(task);
+                            }
+                        } else if (attributes.isRegularFile() && (rules == null || !rules.isIgnored(entryPath, false))) {
+                            long lines = LineCounter.countLines(entry);
+                            if (lines == LineCounter.BINARY)
+                                add(totals, FileInfo.extensionOf(name), 1, 0, 1, attributes.size(), 0);
+                            else
+                                add(totals, FileInfo.extensionOf(name), 1, lines, 0, 0, attributes.size());
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            for (DirectoryTask task : subdirectories) {
+                for (Map.Entry<String, long[]> total : task.join().entrySet())
+                    add(totals, total.getKey(), total.getValue());
+            }
+            return totals;
+        }
+    }
+}
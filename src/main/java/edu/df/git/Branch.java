@@ -1,22 +1,36 @@
 package edu.df.git;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
 public class Branch {
     private final String name;
     private Date authorDate;
     private Date lastCommitDate;
-    private final ArrayList<Commit> commits;
+    private final CommitStore store;
+    private int[] commitRows;
+    private int numberOfCommits;
+    private final BitSet commitRowSet;
     private double commitPercentage;
     private final HashMap<Committer, Long> numberOfCommitsPerCommitter;
     private final HashMap<Committer, Double> percentageOfCommitsPerCommitter;
 
-    Branch(String branchName) {
+    /**
+     * Branch constructor
+     *
+     * @param branchName
+     * @param store      the commits of the branch are rows of
+     */
+    Branch(String branchName, CommitStore store) {
         this.name = branchName;
-        this.commits = new ArrayList<>();
+        this.store = store;
+        this.commitRows = new int[16];
+        this.numberOfCommits = 0;
+        this.commitRowSet = new BitSet();
         this.authorDate = null;
         this.lastCommitDate = null;
         this.commitPercentage = 0.0;
@@ -26,20 +40,36 @@ public class Branch {
 
 
     void calculatePercentages(long numberOfAllCommits) {
-        commitPercentage = (commits.size() / (double) numberOfAllCommits) * 100;
-
-        for (Commit commit : commits) {
-            if (!numberOfCommitsPerCommitter.containsKey(commit.getCommitter())) {
-                numberOfCommitsPerCommitter.put(commit.getCommitter(), 1L);
-            } else {
-                numberOfCommitsPerCommitter.put(commit.getCommitter(), numberOfCommitsPerCommitter.get(commit.getCommitter()) + 1);
-            }
-        }
-        for (Map.Entry<Committer, Long> entry : numberOfCommitsPerCommitter.entrySet()) {
-            percentageOfCommitsPerCommitter.put(entry.getKey(), (entry.getValue() / (double) commits.size() * 100));
+        commitPercentage = (numberOfCommits / (double) numberOfAllCommits) * 100;
+
+        long[] commitsPerCommitter = new long[store.getCommitters().size()];
+        for (int i = 0; i < numberOfCommits; i++)
+            commitsPerCommitter[store.getCommitterId(commitRows[i])]++;
+        for (int id = 0; id < commitsPerCommitter.length; id++) {
+            if (commitsPerCommitter[id] == 0)
+                continue;
+            Committer committer = store.getCommitters().get(id);
+            numberOfCommitsPerCommitter.put(committer, commitsPerCommitter[id]);
+            percentageOfCommitsPerCommitter.put(committer, (commitsPerCommitter[id] / (double) numberOfCommits * 100));
         }
     }
 
+    /**
+     * Adds a commit to the branch if it is not already there
+     *
+     * @param row of the commit in the store
+     * @return true if the commit was added
+     */
+    boolean addCommit(int row) {
+        if (commitRowSet.get(row))
+            return false;
+        commitRowSet.set(row);
+        if (numberOfCommits == commitRows.length)
+            commitRows = Arrays.copyOf(commitRows, commitRows.length * 2);
+        commitRows[numberOfCommits++] = row;
+        return true;
+    }
+
     public Date getAuthorDate() {
         return authorDate;
     }
@@ -56,8 +86,25 @@ public class Branch {
         this.lastCommitDate = lastCommitDate;
     }
 
-    public ArrayList<Commit> getCommits() {
-        return commits;
+    /**
+     * Returns a read only view of the commits of the branch, in the order they were added
+     *
+     * @return
+     */
+    public List<Commit> getCommits() {
+        return new AbstractList<Commit>() {
+            @Override
+            public Commit get(int index) {
+                if (index < 0 || index >= numberOfCommits)
+                    throw new IndexOutOfBoundsException("Index: " + index + ", size: " + numberOfCommits);
+                return store.get(commitRows[index]);
+            }
+
+            @Override
+            public int size() {
+                return numberOfCommits;
+            }
+        };
     }
 
     public String getName() {
@@ -0,0 +1,143 @@
+package edu.df.git;
+
+import edu.df.progress.ProgressTask;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.CommitTimeRevFilter;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Finds the branches that contain each commit with a single walk of the commit graph.
+ * <p>
+ * Every branch gets an index, and every commit gets a bitset holding the indexes of the branches it belongs to.
+ * The commits are visited in topological order, so all children of a commit are done before the commit itself
+ * and its bits can be passed on to its parents. Commits with the same branches share one bitset instance.
+ */
+class BranchMembership {
+    private final org.eclipse.jgit.lib.Repository repository;
+    private final List<Ref> branchRefs;
+    private final HashMap<ObjectId, BitSet> membership;
+    private ProgressTask progress;
+    private Date since, until;
+    private int numberOfCommits;
+
+    /**
+     * BranchMembership constructor
+     *
+     * @param repository
+     * @param branchRefs branches to compute, bit i of a commit stands for branchRefs.get(i)
+     */
+    BranchMembership(org.eclipse.jgit.lib.Repository repository, List<Ref> branchRefs) {
+        this.repository = repository;
+        this.branchRefs = branchRefs;
+        this.membership = new HashMap<>();
+    }
+
+    /**
+     * Limits the membership to a time window. The walk stops at the first commit older than since, and commits
+     * newer than until are walked to pass the branches on to the commits of the window but get no branches
+     *
+     * @param since null walks the whole history
+     * @param until null keeps the newest commits
+     */
+    void setWindow(Date since, Date until) {
+        this.since = since;
+        this.until = until;
+    }
+
+    /**
+     * Sets the task every walked commit is reported to
+     *
+     * @param progress may be null
+     */
+    void setProgress(ProgressTask progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Walks all commits reachable from the branch tips once and stores the branches of each one
+     *
+     * @throws IOException
+     */
+    void compute() throws IOException {
+        HashMap<BitSet, BitSet> interned = new HashMap<>();
+        HashMap<RevCommit, BitSet> pending = new HashMap<>();
+
+        RevWalk walk = new RevWalk(repository);
+        try {
+            walk.setRetainBody(false);
+            walk.sort(RevSort.TOPO);
+            if (since != null)
+                walk.setRevFilter(CommitTimeRevFilter.after(since));
+
+            for (int i = 0; i < branchRefs.size(); i++) {
+                RevCommit tip = walk.parseCommit(branchRefs.get(i).getObjectId());
+                BitSet bits = pending.get(tip);
+                if (bits == null) {
+                    bits = new BitSet(branchRefs.size());
+                    pending.put(tip, bits);
+                    walk.markStart(tip);
+                }
+                bits.set(i);
+            }
+
+            long untilSeconds = until == null ? Long.MAX_VALUE : until.getTime() / 1000L;
+            RevCommit commit;
+            while ((commit = walk.next()) != null) {
+                BitSet bits = pending.remove(commit);
+                BitSet shared = interned.get(bits);
+                if (shared == null) {
+                    interned.put(bits, bits);
+                    shared = bits;
+                }
+                if (commit.getCommitTime() <= untilSeconds)
+                    membership.put(commit.copy(), shared);
+                numberOfCommits++;
+                if (progress != null)
+                    progress.update(1);
+
+                for (RevCommit parent : commit.getParents()) {
+                    BitSet parentBits = pending.get(parent);
+                    if (parentBits == null) {
+                        // borrow the child's bitset until a second child shows up
+                        pending.put(parent, shared);
+                    } else if (parentBits != shared) {
+                        if (interned.get(parentBits) == parentBits) {
+                            parentBits = (BitSet) parentBits.clone();
+                            pending.put(parent, parentBits);
+                        }
+                        parentBits.or(shared);
+                    }
+                }
+            }
+        } finally {
+            walk.release();
+        }
+    }
+
+    /**
+     * Returns the branches that contain the given commit
+     *
+     * @param commit
+     * @return indexes into the branch list, or null if no branch contains the commit
+     */
+    BitSet getBranches(AnyObjectId commit) {
+        return membership.get(commit);
+    }
+
+    /**
+     * @return number of commits walked by compute()
+     */
+    int getNumberOfCommits() {
+        return numberOfCommits;
+    }
+}
@@ -1,64 +1,80 @@
 package edu.df.git;
 
+import org.eclipse.jgit.lib.ObjectId;
+
 import java.util.Date;
 
-public class Commit {
-    private final String name;
-    private final Date date;
-    private final Committer committer;
-    private final String fullMessage;
-    private final Tag tag;
-
-    Commit(String name, Committer committer, int commitTime, String fullMessage, Tag tag) {
-        this.name = name;
-        this.date = new Date(commitTime * 1000L);
-        this.committer = committer;
-        this.fullMessage = fullMessage;
-        this.tag = tag;
+/**
+ * A commit of a CommitStore, equal to any other object id with the same value
+ */
+public class Commit extends ObjectId {
+    private final CommitStore store;
+    private final int row;
+
+    Commit(CommitStore store, int row) {
+        super(store.getId(row));
+        this.store = store;
+        this.row = row;
     }
 
-    public String getName() {
-        return name;
+    /**
+     * Returns the position of the commit in Repository.getCommitList()
+     *
+     * @return
+     */
+    public int getIndex() {
+        return row;
+    }
+
+    /**
+     * Returns the commit time in seconds
+     *
+     * @return
+     */
+    public int getCommitTime() {
+        return store.getCommitTime(row);
     }
 
     public Date getDate() {
-        return date;
+        return new Date(store.getCommitTime(row) * 1000L);
+    }
+
+    public Date getAuthorDate() {
+        return new Date(store.getAuthorTime(row) * 1000L);
     }
 
     public Committer getCommitter() {
-        return committer;
+        return store.getCommitter(row);
     }
 
+    /**
+     * Reads the full message from the object database, messages are not kept in memory
+     *
+     * @return
+     */
     public String getFullMessage() {
-        return fullMessage;
+        return store.getFullMessage(row);
     }
 
     public Tag getTag() {
-        return tag;
+        return store.getTag(row);
     }
 
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-
-        Commit commit = (Commit) o;
-
-        return name != null ? name.equals(commit.name) : commit.name == null;
+    void setTag(Tag tag) {
+        store.setTag(row, tag);
     }
 
-    @Override
-    public int hashCode() {
-        return name != null ? name.hashCode() : 0;
+    int getAuthorTime() {
+        return store.getAuthorTime(row);
     }
 
     @Override
     public String toString() {
         return "{\"Commit\":{"
-                + "\"name\":\"" + name + "\""
-                + ",\"date\":" + date
-                + ",\"committer\":" + committer
-                + ",\"fullMessage\":\"" + fullMessage + "\""
+                + "\"name\":\"" + getName() + "\""
+                + ",\"date\":" + getDate()
+                + ",\"committer\":" + getCommitter()
+                + ",\"fullMessage\":\"" + getFullMessage() + "\""
                 + "}}";
     }
 
@@ -0,0 +1,374 @@
+package edu.df.git;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Number of commits of every committer per day, week and month, and the committer's share of each of them.
+ * <p>
+ * Rows are committers and columns are days, weeks and months, numbered from the first day, week and month
+ * of the repository as in CommitTimeSeries. Most committers are active on few days, so each of the three tables
+ * is stored sparse, one row after the other: the cells of a row are at indexes rowStart[row] to rowStart[row + 1]
+ * of parallel arrays holding the column, the number of commits and the percentage. The matrix is built in one pass
+ * over the commits, and the percentages of all committers are computed in one loop per table.
+ */
+class CommitActivityMatrix {
+    private final int firstDay, firstWeek, firstMonth;
+    private final Table days, weeks, months;
+
+    private CommitActivityMatrix(int firstDay, Table days) {
+        this.firstDay = firstDay;
+        this.firstMonth = CommitTimeSeries.monthOf(firstDay);
+        this.firstWeek = firstMonth * CommitTimeSeries.WEEKS_PER_MONTH;
+        this.days = days;
+
+        int numberOfDays = days.numberOfColumns();
+        int[] weekOfDay = new int[numberOfDays];
+        int[] monthOfDay = new int[numberOfDays];
+        for (int column = 0; column < numberOfDays; column++) {
+            int week = CommitTimeSeries.weekOf(firstDay + column);
+            weekOfDay[column] = week - firstWeek;
+            monthOfDay[column] = CommitTimeSeries.monthOfWeek(week) - firstMonth;
+        }
+        this.weeks = days.rollUp(weekOfDay);
+        this.months = days.rollUp(monthOfDay);
+
+        days.calculatePercentages();
+        weeks.calculatePercentages();
+        months.calculatePercentages();
+    }
+
+    /**
+     * Builds the matrix and gives every committer its row
+     *
+     * @param committers rows of the matrix
+     * @param commits    of the given committers
+     * @return
+     */
+    static CommitActivityMatrix build(List<Committer> committers, CommitStore commits) {
+        HashMap<Committer, Integer> rows = new HashMap<>();
+        for (Committer committer : committers)
+            rows.put(committer, rows.size());
+
+        int n = commits.size();
+        int[] rowOfCommitter = new int[commits.getCommitters().size()];
+        for (int id = 0; id < rowOfCommitter.length; id++)
+            rowOfCommitter[id] = rows.get(commits.getCommitters().get(id));
+
+        int[] commitRows = new int[n];
+        int[] commitDays = new int[n];
+        int firstDay = Integer.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            commitRows[i] = rowOfCommitter[commits.getCommitterId(i)];
+            commitDays[i] = CommitTimeSeries.epochDay(commits.getCommitTime(i) * 1000L);
+            firstDay = Math.min(firstDay, commitDays[i]);
+        }
+
+        // row in the high half, day in the low half, so sorting groups the commits by row then by day
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++)
+            keys[i] = ((long) commitRows[i] << 32) | (commitDays[i] - firstDay);
+        Arrays.sort(keys);
+
+        CommitActivityMatrix matrix = new CommitActivityMatrix(n == 0 ? 0 : firstDay, Table.fromSortedKeys(keys, committers.size()));
+        for (Committer committer : committers)
+            committer.setActivity(matrix, rows.get(committer));
+        return matrix;
+    }
+
+    Map<Date, Long> commitsPerDay(int row) {
+        return new RowView<>(days, row, this::dayKey, this::dayColumn, days::commitsAt);
+    }
+
+    Map<Date, Double> commitsPerDayPercentage(int row) {
+        return new RowView<>(days, row, this::dayKey, this::dayColumn, days::percentageAt);
+    }
+
+    Map<String, Long> commitsPerWeek(int row) {
+        return new RowView<>(weeks, row, this::weekKey, this::weekColumn, weeks::commitsAt);
+    }
+
+    Map<String, Double> commitsPerWeekPercentage(int row) {
+        return new RowView<>(weeks, row, this::weekKey, this::weekColumn, weeks::percentageAt);
+    }
+
+    Map<String, Long> commitsPerMonth(int row) {
+        return new RowView<>(months, row, this::monthKey, this::monthColumn, months::commitsAt);
+    }
+
+    Map<String, Double> commitsPerMonthPercentage(int row) {
+        return new RowView<>(months, row, this::monthKey, this::monthColumn, months::percentageAt);
+    }
+
+    private Date dayKey(int column) {
+        return CommitTimeSeries.toDate(firstDay + column);
+    }
+
+    /**
+     * @return week of the month, month of the year and year, separated by '_'
+     */
+    private String weekKey(int column) {
+        int week = firstWeek + column;
+        int month = CommitTimeSeries.monthOfWeek(week);
+        return CommitTimeSeries.weekOfMonth(week) + "_" + CommitTimeSeries.monthOfYear(month) + "_" + CommitTimeSeries.yearOf(month);
+    }
+
+    /**
+     * @return month of the year and year, separated by '_'
+     */
+    private String monthKey(int column) {
+        int month = firstMonth + column;
+        return CommitTimeSeries.monthOfYear(month) + "_" + CommitTimeSeries.yearOf(month);
+    }
+
+    /**
+     * The inverse of dayKey
+     *
+     * @param key
+     * @return column of the key, or -1 if it is not a key of the day table
+     */
+    private int dayColumn(Object key) {
+        if (!(key instanceof Date))
+            return -1;
+        long column = CommitTimeSeries.epochDay(((Date) key).getTime()) - (long) firstDay;
+        return toColumn(column, key, this::dayKey);
+    }
+
+    /**
+     * The inverse of weekKey
+     *
+     * @param key
+     * @return column of the key, or -1 if it is not a key of the week table
+     */
+    private int weekColumn(Object key) {
+        long[] numbers = splitKey(key, 3);
+        if (numbers == null)
+            return -1;
+        long column = (numbers[2] * 12 + numbers[1]) * CommitTimeSeries.WEEKS_PER_MONTH + numbers[0] - firstWeek;
+        return toColumn(column, key, this::weekKey);
+    }
+
+    /**
+     * The inverse of monthKey
+     *
+     * @param key
+     * @return column of the key, or -1 if it is not a key of the month table
+     */
+    private int monthColumn(Object key) {
+        long[] numbers = splitKey(key, 2);
+        if (numbers == null)
+            return -1;
+        long column = numbers[1] * 12 + numbers[0] - firstMonth;
+        return toColumn(column, key, this::monthKey);
+    }
+
+    /**
+     * Returns a column if its key is the given one, so keys that are written differently or out of range never match
+     */
+    private static int toColumn(long column, Object key, IntFunction<?> keyOf) {
+        return column >= 0 && column <= Integer.MAX_VALUE && key.equals(keyOf.apply((int) column)) ? (int) column : -1;
+    }
+
+    /**
+     * @return the numbers of a key separated by '_', or null if the key is not made of the given count of int numbers
+     */
+    private static long[] splitKey(Object key, int count) {
+        if (!(key instanceof String))
+            return null;
+        String[] parts = ((String) key).split("_", -1);
+        if (parts.length != count)
+            return null;
+        long[] numbers = new long[count];
+        try {
+            for (int i = 0; i < count; i++)
+                numbers[i] = Integer.parseInt(parts[i]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return numbers;
+    }
+
+    /**
+     * A sparse table, cells of each row are sorted by column
+     */
+    private static class Table {
+        private final int[] rowStart;
+        private final int[] columns;
+        private final long[] commits;
+        private final double[] percentages;
+
+        Table(int[] rowStart, int[] columns, long[] commits) {
+            this.rowStart = rowStart;
+            this.columns = columns;
+            this.commits = commits;
+            this.percentages = new double[commits.length];
+        }
+
+        /**
+         * Builds a table from sorted (row, column) keys, equal keys are counted in one cell
+         *
+         * @param keys
+         * @param numberOfRows
+         * @return
+         */
+        static Table fromSortedKeys(long[] keys, int numberOfRows) {
+            int cells = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (i == 0 || keys[i] != keys[i - 1])
+                    cells++;
+            }
+
+            int[] rowStart = new int[numberOfRows + 1];
+            int[] columns = new int[cells];
+            long[] commits = new long[cells];
+            int cell = -1;
+            for (int i = 0; i < keys.length; i++) {
+                if (i == 0 || keys[i] != keys[i - 1]) {
+                    cell++;
+                    rowStart[(int) (keys[i] >>> 32) + 1]++;
+                    columns[cell] = (int) keys[i];
+                }
+                commits[cell]++;
+            }
+            for (int row = 0; row < numberOfRows; row++)
+                rowStart[row + 1] += rowStart[row];
+            return new Table(rowStart, columns, commits);
+        }
+
+        /**
+         * Sums cells into coarser columns
+         *
+         * @param columnOf new column of each column, must not decrease as the column grows
+         * @return
+         */
+        Table rollUp(int[] columnOf) {
+            int numberOfRows = rowStart.length - 1;
+            int[] newRowStart = new int[numberOfRows + 1];
+            int[] newColumns = new int[columns.length];
+            long[] newCommits = new long[columns.length];
+            int cell = 0;
+            for (int row = 0; row < numberOfRows; row++) {
+                newRowStart[row] = cell;
+                for (int i = rowStart[row]; i < rowStart[row + 1]; i++) {
+                    int column = columnOf[columns[i]];
+                    if (cell > newRowStart[row] && newColumns[cell - 1] == column) {
+                        newCommits[cell - 1] += commits[i];
+                    } else {
+                        newColumns[cell] = column;
+                        newCommits[cell] = commits[i];
+                        cell++;
+                    }
+                }
+            }
+            newRowStart[numberOfRows] = cell;
+            return new Table(newRowStart, Arrays.copyOf(newColumns, cell), Arrays.copyOf(newCommits, cell));
+        }
+
+        int numberOfColumns() {
+            int max = -1;
+            for (int column : columns)
+                max = Math.max(max, column);
+            return max + 1;
+        }
+
+        /**
+         * Computes the share of each cell in the commits of its column
+         */
+        void calculatePercentages() {
+            long[] columnTotals = new long[numberOfColumns()];
+            for (int i = 0; i < commits.length; i++)
+                columnTotals[columns[i]] += commits[i];
+            for (int i = 0; i < commits.length; i++)
+                percentages[i] = commits[i] / (double) columnTotals[columns[i]] * 100;
+        }
+
+        Long commitsAt(int cell) {
+            return commits[cell];
+        }
+
+        Double percentageAt(int cell) {
+            return percentages[cell];
+        }
+    }
+
+    /**
+     * Read only map of the cells of one row, in column order. Lookups turn the key into its column and binary search
+     * the row
+     */
+    private static class RowView<K, V> extends AbstractMap<K, V> {
+        private final Table table;
+        private final int row;
+        private final IntFunction<K> key;
+        private final ToIntFunction<Object> column;
+        private final IntFunction<V> value;
+
+        RowView(Table table, int row, IntFunction<K> key, ToIntFunction<Object> column, IntFunction<V> value) {
+            this.table = table;
+            this.row = row;
+            this.key = key;
+            this.column = column;
+            this.value = value;
+        }
+
+        @Override
+        public V get(Object k) {
+            int cell = find(k);
+            return cell < 0 ? null : value.apply(cell);
+        }
+
+        @Override
+        public boolean containsKey(Object k) {
+            return find(k) >= 0;
+        }
+
+        /**
+         * @return cell of the key, or a negative number if the row has none
+         */
+        private int find(Object k) {
+            int c = column.applyAsInt(k);
+            return c < 0 ? -1 : Arrays.binarySearch(table.columns, table.rowStart[row], table.rowStart[row + 1], c);
+        }
+
+        @Override
+        public Set<Entry<K, V>> entrySet() {
+            return new AbstractSet<Entry<K, V>>() {
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    return new Iterator<Entry<K, V>>() {
+                        private int cell = table.rowStart[row];
+
+                        @Override
+                        public boolean hasNext() {
+                            return cell < table.rowStart[row + 1];
+                        }
+
+                        @Override
+                        public Entry<K, V> next() {
+                            if (!hasNext())
+                                throw new NoSuchElementException();
+                            Entry<K, V> entry = new SimpleImmutableEntry<>(key.apply(table.columns[cell]), value.apply(cell));
+                            cell++;
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return table.rowStart[row + 1] - table.rowStart[row];
+                }
+            };
+        }
+    }
+
+}
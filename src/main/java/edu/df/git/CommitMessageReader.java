@@ -0,0 +1,81 @@
+package edu.df.git;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.util.RawParseUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads commit messages from the object database when they are asked for, so they are not kept in memory
+ * for the whole run.
+ * <p>
+ * All reads go through one ObjectReader, opened on the first read and kept until release. ObjectReader is not
+ * thread safe, so reads are synchronized; reading a batch takes the lock once for all of its commits.
+ */
+class CommitMessageReader {
+    private final org.eclipse.jgit.lib.Repository repository;
+    private ObjectReader reader;
+
+    /**
+     * CommitMessageReader constructor
+     *
+     * @param repository
+     */
+    CommitMessageReader(org.eclipse.jgit.lib.Repository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Reads the full message of a commit
+     *
+     * @param id of the commit
+     * @return
+     * @throws IOException
+     */
+    synchronized String read(AnyObjectId id) throws IOException {
+        if (reader == null)
+            reader = repository.newObjectReader();
+        return parseMessage(reader.open(id, Constants.OBJ_COMMIT).getCachedBytes());
+    }
+
+    /**
+     * Reads the full messages of a batch of commits
+     *
+     * @param ids of the commits
+     * @return messages in the order of the ids
+     * @throws IOException
+     */
+    synchronized List<String> read(List<? extends AnyObjectId> ids) throws IOException {
+        List<String> messages = new ArrayList<>(ids.size());
+        for (AnyObjectId id : ids)
+            messages.add(read(id));
+        return messages;
+    }
+
+    /**
+     * Releases the reader, a later read opens a new one
+     */
+    synchronized void release() {
+        if (reader != null) {
+            reader.release();
+            reader = null;
+        }
+    }
+
+    /**
+     * Decodes the message of a raw commit as RevCommit.getFullMessage() does, without parsing the rest of it
+     *
+     * @param raw commit object
+     * @return
+     */
+    private static String parseMessage(byte[] raw) {
+        int messageStart = RawParseUtils.commitMessage(raw, 0);
+        if (messageStart < 0)
+            return "";
+        return RawParseUtils.decode(RawParseUtils.parseEncoding(raw), raw, messageStart, raw.length);
+    }
+}
@@ -0,0 +1,324 @@
+package edu.df.git;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.util.NB;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Commits of a repository, stored column by column.
+ * <p>
+ * Every commit is a row number. Object ids are kept raw, 20 bytes per commit in one array, and are found
+ * through an open addressing table of row numbers. Commit and author times are int seconds, committers are
+ * ids into a committer table. Messages are not stored, they are read from the object database when they are
+ * asked for. Commit objects are views of a row, created when they are asked for.
+ */
+class CommitStore {
+    private static final int ID_LENGTH = Constants.OBJECT_ID_LENGTH;
+
+    private int size;
+    private byte[] ids;
+    private int[] commitTimes;
+    private int[] authorTimes;
+    private int[] committerIds;
+    private Tag[] tags;
+    private int[] table;
+
+    private final ArrayList<Committer> committers;
+    private final HashMap<Committer, Integer> committerIndexes;
+    private final CommitMessageReader messageReader;
+
+    /**
+     * CommitStore constructor
+     *
+     * @param messageReader reads the messages of the commits, may be null if they are not needed
+     */
+    CommitStore(CommitMessageReader messageReader) {
+        this.size = 0;
+        this.ids = new byte[16 * ID_LENGTH];
+        this.commitTimes = new int[16];
+        this.authorTimes = new int[16];
+        this.committerIds = new int[16];
+        this.tags = new Tag[16];
+        this.table = new int[32];
+        this.committers = new ArrayList<>();
+        this.committerIndexes = new HashMap<>();
+        this.messageReader = messageReader;
+    }
+
+    /**
+     * Adds a commit if it is not stored yet
+     *
+     * @param id
+     * @param committer
+     * @param commitTime in seconds
+     * @param authorTime in seconds
+     * @param tag        may be null
+     * @return row of the commit
+     */
+    int add(AnyObjectId id, Committer committer, int commitTime, int authorTime, Tag tag) {
+        int row = indexOf(id);
+        if (row >= 0)
+            return row;
+
+        if (size == commitTimes.length)
+            grow();
+        row = size++;
+        id.copyRawTo(ids, row * ID_LENGTH);
+        commitTimes[row] = commitTime;
+        authorTimes[row] = authorTime;
+        committerIds[row] = committerId(committer);
+        tags[row] = tag;
+        insert(id.hashCode(), row);
+        return row;
+    }
+
+    /**
+     * Returns the row of a commit
+     *
+     * @param id
+     * @return the row, or -1 if the commit is not stored
+     */
+    int indexOf(AnyObjectId id) {
+        int mask = table.length - 1;
+        for (int slot = id.hashCode() & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int row = table[slot] - 1;
+            if (id.compareTo(ids, row * ID_LENGTH) == 0)
+                return row;
+        }
+        return -1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns a view of a row
+     *
+     * @param row
+     * @return
+     */
+    Commit get(int row) {
+        return new Commit(this, row);
+    }
+
+    ObjectId getId(int row) {
+        return ObjectId.fromRaw(ids, row * ID_LENGTH);
+    }
+
+    int getCommitTime(int row) {
+        return commitTimes[row];
+    }
+
+    int getAuthorTime(int row) {
+        return authorTimes[row];
+    }
+
+    int getCommitterId(int row) {
+        return committerIds[row];
+    }
+
+    Committer getCommitter(int row) {
+        return committers.get(committerIds[row]);
+    }
+
+    /**
+     * Reads the full message of a row from the object database
+     *
+     * @param row
+     * @return the message, or null if the store has no message reader
+     */
+    String getFullMessage(int row) {
+        if (messageReader == null)
+            return null;
+        try {
+            return messageReader.read(getId(row));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the full messages of a batch of commits at once
+     *
+     * @param commits
+     * @return messages in the order of the commits, or null if the store has no message reader
+     * @throws IOException
+     */
+    List<String> getFullMessages(List<Commit> commits) throws IOException {
+        return messageReader == null ? null : messageReader.read(commits);
+    }
+
+    Tag getTag(int row) {
+        return tags[row];
+    }
+
+    void setTag(int row, Tag tag) {
+        tags[row] = tag;
+    }
+
+    /**
+     * Returns the committer table, indexed by committer id
+     *
+     * @return
+     */
+    List<Committer> getCommitters() {
+        return committers;
+    }
+
+    /**
+     * Returns a read only view of all commits, in the order they were added
+     *
+     * @return
+     */
+    List<Commit> asList() {
+        return new AbstractList<Commit>() {
+            @Override
+            public Commit get(int row) {
+                if (row < 0 || row >= size)
+                    throw new IndexOutOfBoundsException("Row: " + row + ", size: " + size);
+                return CommitStore.this.get(row);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Returns a read only view of all commits sorted by commit time, commits with the same time keep the order
+     * they were added in
+     *
+     * @return
+     */
+    List<Commit> sortedByCommitTime() {
+        // time in the high half, row in the low half
+        long[] keys = new long[size];
+        for (int row = 0; row < size; row++)
+            keys[row] = ((long) commitTimes[row] << 32) | row;
+        Arrays.sort(keys);
+
+        final int[] rows = new int[size];
+        for (int i = 0; i < size; i++)
+            rows[i] = (int) keys[i];
+        return new AbstractList<Commit>() {
+            @Override
+            public Commit get(int index) {
+                return CommitStore.this.get(rows[index]);
+            }
+
+            @Override
+            public int size() {
+                return rows.length;
+            }
+        };
+    }
+
+    /**
+     * Returns a read only view of all commits keyed by name
+     *
+     * @return
+     */
+    Map<String, Commit> asMap() {
+        return new AbstractMap<String, Commit>() {
+            @Override
+            public Commit get(Object key) {
+                if (!(key instanceof String) || !ObjectId.isId((String) key))
+                    return null;
+                int row = indexOf(ObjectId.fromString((String) key));
+                return row < 0 ? null : CommitStore.this.get(row);
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return get(key) != null;
+            }
+
+            @Override
+            public Set<Entry<String, Commit>> entrySet() {
+                return new AbstractSet<Entry<String, Commit>>() {
+                    @Override
+                    public Iterator<Entry<String, Commit>> iterator() {
+                        return new Iterator<Entry<String, Commit>>() {
+                            private int row = 0;
+
+                            @Override
+                            public boolean hasNext() {
+                                return row < size;
+                            }
+
+                            @Override
+                            public Entry<String, Commit> next() {
+                                if (!hasNext())
+                                    throw new NoSuchElementException();
+                                Commit commit = CommitStore.this.get(row++);
+                                return new SimpleImmutableEntry<>(commit.getName(), commit);
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return size;
+                    }
+                };
+            }
+        };
+    }
+
+    private int committerId(Committer committer) {
+        Integer id = committerIndexes.get(committer);
+        if (id == null) {
+            id = committers.size();
+            committers.add(committer);
+            committerIndexes.put(committer, id);
+        }
+        return id;
+    }
+
+    private void insert(int hash, int row) {
+        if (2 * size > table.length) {
+            table = new int[table.length * 2];
+            for (int i = 0; i < row; i++)
+                insert(hashOf(i), i);
+        }
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != 0)
+            slot = (slot + 1) & mask;
+        table[slot] = row + 1;
+    }
+
+    /**
+     * Returns the hash code of the id of a row, the same as AnyObjectId.hashCode()
+     */
+    private int hashOf(int row) {
+        return NB.decodeInt32(ids, row * ID_LENGTH + 4);
+    }
+
+    private void grow() {
+        int capacity = commitTimes.length * 2;
+        ids = Arrays.copyOf(ids, capacity * ID_LENGTH);
+        commitTimes = Arrays.copyOf(commitTimes, capacity);
+        authorTimes = Arrays.copyOf(authorTimes, capacity);
+        committerIds = Arrays.copyOf(committerIds, capacity);
+        tags = Arrays.copyOf(tags, capacity);
+    }
+}
@@ -0,0 +1,297 @@
+package edu.df.git;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Number of commits per day, week and month.
+ * <p>
+ * Days are numbered from the epoch in the default time zone, so a commit falls on the same day as its date
+ * does in a Calendar. Counts are kept in a primitive array that covers at least the days from the first to the last
+ * commit, week and month counts are rolled up from it the first time they are asked for.
+ * Months are numbered year * 12 + month, months of the year starting at 0 like Calendar.MONTH.
+ * Weeks are numbered month * WEEKS_PER_MONTH + week of the month, weeks of the month following
+ * Calendar.WEEK_OF_MONTH in the default locale.
+ */
+public class CommitTimeSeries {
+    /**
+     * Number of week slots of a month, week of the month is between 0 and 6
+     */
+    public static final int WEEKS_PER_MONTH = 8;
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+    private static final TimeZone TIME_ZONE = TimeZone.getDefault();
+    private static final int FIRST_DAY_OF_WEEK;
+    private static final int MINIMAL_DAYS_IN_FIRST_WEEK;
+
+    static {
+        Calendar cal = Calendar.getInstance(TIME_ZONE);
+        FIRST_DAY_OF_WEEK = cal.getFirstDayOfWeek();
+        MINIMAL_DAYS_IN_FIRST_WEEK = cal.getMinimalDaysInFirstWeek();
+    }
+
+    private int base;
+    private long[] perDay;
+    private int firstDay, lastDay;
+    private int firstMonth;
+    private long[] perMonth;
+    private long[] perWeek;
+
+    public CommitTimeSeries() {
+        this.perDay = new long[0];
+        this.firstDay = 0;
+        this.lastDay = -1;
+    }
+
+    /**
+     * Adds a commit
+     *
+     * @param time of the commit in milliseconds
+     */
+    void add(long time) {
+        add(epochDay(time), 1);
+    }
+
+    /**
+     * Adds commits to a day
+     *
+     * @param day     epoch day
+     * @param commits
+     */
+    void add(int day, long commits) {
+        if (isEmpty()) {
+            perDay = new long[16];
+            base = day - perDay.length / 2;
+            firstDay = day;
+            lastDay = day;
+        } else if (day < base || day >= base + perDay.length) {
+            grow(day);
+        }
+        perDay[day - base] += commits;
+        firstDay = Math.min(firstDay, day);
+        lastDay = Math.max(lastDay, day);
+        perMonth = null;
+        perWeek = null;
+    }
+
+    /**
+     * Makes room for a day, at least doubling the array so days can be added in any order
+     *
+     * @param day epoch day
+     */
+    private void grow(int day) {
+        int low = Math.min(day, firstDay);
+        int high = Math.max(day, lastDay);
+        long[] days = new long[Math.max(perDay.length * 2, high - low + 1)];
+        int newBase = day < base ? high - days.length + 1 : low;
+        System.arraycopy(perDay, firstDay - base, days, firstDay - newBase, lastDay - firstDay + 1);
+        perDay = days;
+        base = newBase;
+    }
+
+    public boolean isEmpty() {
+        return perDay.length == 0;
+    }
+
+    /**
+     * Returns the day of the first commit, or 0 if there are no commits
+     *
+     * @return
+     */
+    public int getFirstDay() {
+        return firstDay;
+    }
+
+    /**
+     * Returns the day of the last commit, or -1 if there are no commits
+     *
+     * @return
+     */
+    public int getLastDay() {
+        return lastDay;
+    }
+
+    public long getCommitsOnDay(int day) {
+        return day < firstDay || day > lastDay ? 0 : perDay[day - base];
+    }
+
+    public int getFirstMonth() {
+        rollUp();
+        return firstMonth;
+    }
+
+    public int getLastMonth() {
+        rollUp();
+        return firstMonth + perMonth.length - 1;
+    }
+
+    public long getCommitsInMonth(int month) {
+        rollUp();
+        int index = month - firstMonth;
+        return index < 0 || index >= perMonth.length ? 0 : perMonth[index];
+    }
+
+    public int getFirstWeek() {
+        return getFirstMonth() * WEEKS_PER_MONTH;
+    }
+
+    public int getLastWeek() {
+        return getLastMonth() * WEEKS_PER_MONTH + WEEKS_PER_MONTH - 1;
+    }
+
+    public long getCommitsInWeek(int week) {
+        rollUp();
+        int index = week - firstMonth * WEEKS_PER_MONTH;
+        return index < 0 || index >= perWeek.length ? 0 : perWeek[index];
+    }
+
+    /**
+     * Sums the days into weeks and months, walking the days in order so the month is only looked up when it changes
+     */
+    private void rollUp() {
+        if (perMonth != null)
+            return;
+        if (isEmpty()) {
+            firstMonth = 0;
+            perMonth = new long[0];
+            perWeek = new long[0];
+            return;
+        }
+
+        firstMonth = monthOf(firstDay);
+        int months = monthOf(getLastDay()) - firstMonth + 1;
+        perMonth = new long[months];
+        perWeek = new long[months * WEEKS_PER_MONTH];
+
+        int month = firstMonth;
+        int monthStart = firstDayOfMonth(month);
+        int nextMonthStart = firstDayOfMonth(month + 1);
+        for (int day = firstDay; day <= lastDay; day++) {
+            long commits = perDay[day - base];
+            if (commits == 0)
+                continue;
+            while (day >= nextMonthStart) {
+                month++;
+                monthStart = nextMonthStart;
+                nextMonthStart = firstDayOfMonth(month + 1);
+            }
+            perMonth[month - firstMonth] += commits;
+            perWeek[(month - firstMonth) * WEEKS_PER_MONTH + weekOfMonth(monthStart, day)] += commits;
+        }
+    }
+
+    /**
+     * Returns the epoch day of a time in the default time zone
+     *
+     * @param time in milliseconds
+     * @return
+     */
+    public static int epochDay(long time) {
+        return (int) Math.floorDiv(time + TIME_ZONE.getOffset(time), MILLIS_PER_DAY);
+    }
+
+    /**
+     * Returns the start of a day in the default time zone
+     *
+     * @param day epoch day
+     * @return
+     */
+    public static Date toDate(int day) {
+        int month = monthOf(day);
+        Calendar cal = Calendar.getInstance(TIME_ZONE);
+        cal.clear();
+        cal.set(yearOf(month), monthOfYear(month), day - firstDayOfMonth(month) + 1);
+        return cal.getTime();
+    }
+
+    /**
+     * Returns the month of a day
+     *
+     * @param day epoch day
+     * @return year * 12 + month of the year
+     */
+    public static int monthOf(int day) {
+        // days are shifted to start on March 1st of year 0, so leap days come last in a year
+        int shifted = day + 719468;
+        int era = Math.floorDiv(shifted, 146097);
+        int dayOfEra = shifted - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int monthFromMarch = (5 * dayOfYear + 2) / 153;
+        int year = yearOfEra + era * 400 + (monthFromMarch >= 10 ? 1 : 0);
+        return year * 12 + (monthFromMarch < 10 ? monthFromMarch + 2 : monthFromMarch - 10);
+    }
+
+    /**
+     * Returns the week of a day
+     *
+     * @param day epoch day
+     * @return month * WEEKS_PER_MONTH + week of the month
+     */
+    public static int weekOf(int day) {
+        int month = monthOf(day);
+        return month * WEEKS_PER_MONTH + weekOfMonth(firstDayOfMonth(month), day);
+    }
+
+    public static int yearOf(int month) {
+        return Math.floorDiv(month, 12);
+    }
+
+    /**
+     * @param month
+     * @return month of the year, starting at 0
+     */
+    public static int monthOfYear(int month) {
+        return Math.floorMod(month, 12);
+    }
+
+    public static int monthOfWeek(int week) {
+        return Math.floorDiv(week, WEEKS_PER_MONTH);
+    }
+
+    public static int weekOfMonth(int week) {
+        return Math.floorMod(week, WEEKS_PER_MONTH);
+    }
+
+    /**
+     * Returns the epoch day of the first day of a month
+     *
+     * @param month
+     * @return
+     */
+    static int firstDayOfMonth(int month) {
+        int year = yearOf(month);
+        int monthFromMarch = monthOfYear(month) + (monthOfYear(month) < 2 ? 10 : -2);
+        if (monthOfYear(month) < 2)
+            year--;
+        int era = Math.floorDiv(year, 400);
+        int yearOfEra = year - era * 400;
+        int dayOfYear = (153 * monthFromMarch + 2) / 5;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Week of the month of a day, computed as GregorianCalendar computes WEEK_OF_MONTH
+     *
+     * @param monthStart epoch day of the first day of the month
+     * @param day        epoch day
+     * @return
+     */
+    private static int weekOfMonth(int monthStart, int day) {
+        int firstWeekStart = monthStart + 6 - Math.floorMod(dayOfWeek(monthStart + 6) - FIRST_DAY_OF_WEEK, 7);
+        if (firstWeekStart - monthStart >= MINIMAL_DAYS_IN_FIRST_WEEK)
+            firstWeekStart -= 7;
+        return Math.floorDiv(day - firstWeekStart, 7) + 1;
+    }
+
+    /**
+     * @param day epoch day
+     * @return day of the week, from Calendar.SUNDAY to Calendar.SATURDAY
+     */
+    private static int dayOfWeek(int day) {
+        // the epoch was a Thursday
+        return Math.floorMod(day + 4, 7) + 1;
+    }
+}
@@ -1,20 +1,16 @@
 package edu.df.git;
 
-import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
-import java.util.TreeMap;
+import java.util.Map;
 
 public class Committer {
     private final String name;
     private final String email;
     private long numberOfCommits, linesAdded, linesDeleted, filesChanged;
     private double commitPercentage, linesAddedPercentage, linesDeletedPercentage, filesChangedPercentage;
-    private final TreeMap<Date, Long> commitsPerDay;
-    private final TreeMap<Date, Double> commitsPerDayPercentage;
-    private final TreeMap<String, Long> commitsPerWeek;
-    private final TreeMap<String, Long> commitsPerMonth;
-    private final TreeMap<String, Double> commitsPerWeekPercentage;
-    private final TreeMap<String, Double> commitsPerMonthPercentage;
+    private CommitActivityMatrix activity;
+    private int activityRow;
 
     Committer(String name, String email) {
         this.name = name;
@@ -27,54 +23,11 @@ public class Committer {
         this.linesAddedPercentage = 0.0;
         this.linesDeletedPercentage = 0.0;
         this.filesChangedPercentage = 0.0;
-        this.commitsPerDay = new TreeMap<>();
-        this.commitsPerDayPercentage = new TreeMap<>();
-        this.commitsPerWeek = new TreeMap<>();
-        this.commitsPerMonth = new TreeMap<>();
-        this.commitsPerWeekPercentage = new TreeMap<>();
-        this.commitsPerMonthPercentage = new TreeMap<>();
     }
 
-    void calculatePercentages(long numberOfAllCommits, TreeMap<Date, Long> commitsPerDayForAll, TreeMap<String, Long> commitsPerWeekForAll, TreeMap<String, Long> commitsPerMonthForAll, long totalLinesAdded, long totalLinesDeleted, long totalFilesChanged) {
+    void calculatePercentages(long numberOfAllCommits, long totalLinesAdded, long totalLinesDeleted, long totalFilesChanged) {
         this.commitPercentage = (numberOfCommits / (double) numberOfAllCommits) * 100;
 
-        for (Date date : commitsPerDayForAll.keySet()) {
-            if (this.commitsPerDay.containsKey(date)) {
-                this.commitsPerDayPercentage.put(date, (this.commitsPerDay.get(date) / (double) commitsPerDayForAll.get(date) * 100));
-
-                Calendar cal = Calendar.getInstance();
-                cal.setTime(date);
-                int commitWeek = cal.get(Calendar.WEEK_OF_MONTH) == 5 ? 4 : cal.get(Calendar.WEEK_OF_MONTH);
-                int commitMonth = cal.get(Calendar.MONTH);
-                int commitYear = cal.get(Calendar.YEAR);
-
-                if (!commitsPerWeek.containsKey(commitWeek + "_" + commitMonth + "_" + commitYear)) {
-                    commitsPerWeek.put(commitWeek + "_" + commitMonth + "_" + commitYear, this.commitsPerDay.get(date));
-                } else {
-                    commitsPerWeek.put(commitWeek + "_" + commitMonth + "_" + commitYear, commitsPerWeek.get(commitWeek + "_" + commitMonth + "_" + commitYear) + this.commitsPerDay.get(date));
-                }
-
-                if (!commitsPerMonth.containsKey(commitMonth + "_" + commitYear)) {
-                    commitsPerMonth.put(commitMonth + "_" + commitYear, this.commitsPerDay.get(date));
-                } else {
-                    commitsPerMonth.put(commitMonth + "_" + commitYear, commitsPerMonth.get(commitMonth + "_" + commitYear) + this.commitsPerDay.get(date));
-                }
-            }
-        }
-
-        for (String week : this.commitsPerWeek.keySet())
-            if (this.commitsPerWeek.get(week) != null && commitsPerWeekForAll.get(week) != null && commitsPerWeekForAll.get(week) != 0)
-                this.commitsPerWeekPercentage.put(week, (this.commitsPerWeek.get(week) / (double) commitsPerWeekForAll.get(week) * 100));
-            else
-                this.commitsPerWeekPercentage.put(week, (double) 0);
-
-
-        for (String month : this.commitsPerMonth.keySet())
-            if (this.commitsPerMonth.get(month) != null && commitsPerMonthForAll.get(month) != null && commitsPerMonthForAll.get(month) != 0)
-                this.commitsPerMonthPercentage.put(month, (this.commitsPerMonth.get(month) / (double) commitsPerMonthForAll.get(month) * 100));
-            else
-                this.commitsPerMonthPercentage.put(month, (double) 0);
-
         if (totalLinesAdded != 0)
             this.linesAddedPercentage = (linesAdded / (double) totalLinesAdded) * 100;
         if (totalLinesDeleted != 0)
@@ -85,6 +38,17 @@ public class Committer {
 
     }
 
+    /**
+     * Sets the row of the activity matrix that holds this committer's commits per day, week and month
+     *
+     * @param activity
+     * @param activityRow
+     */
+    void setActivity(CommitActivityMatrix activity, int activityRow) {
+        this.activity = activity;
+        this.activityRow = activityRow;
+    }
+
     public String getName() {
         return name;
     }
@@ -97,28 +61,28 @@ public class Committer {
         return commitPercentage;
     }
 
-    public TreeMap<Date, Long> getCommitsPerDay() {
-        return commitsPerDay;
+    public Map<Date, Long> getCommitsPerDay() {
+        return activity == null ? Collections.<Date, Long>emptyMap() : activity.commitsPerDay(activityRow);
     }
 
-    public TreeMap<Date, Double> getCommitsPerDayPercentage() {
-        return commitsPerDayPercentage;
+    public Map<Date, Double> getCommitsPerDayPercentage() {
+        return activity == null ? Collections.<Date, Double>emptyMap() : activity.commitsPerDayPercentage(activityRow);
     }
 
-    public TreeMap<String, Long> getCommitsPerWeek() {
-        return commitsPerWeek;
+    public Map<String, Long> getCommitsPerWeek() {
+        return activity == null ? Collections.<String, Long>emptyMap() : activity.commitsPerWeek(activityRow);
     }
 
-    public TreeMap<String, Long> getCommitsPerMonth() {
-        return commitsPerMonth;
+    public Map<String, Long> getCommitsPerMonth() {
+        return activity == null ? Collections.<String, Long>emptyMap() : activity.commitsPerMonth(activityRow);
     }
 
-    public TreeMap<String, Double> getCommitsPerWeekPercentage() {
-        return commitsPerWeekPercentage;
+    public Map<String, Double> getCommitsPerWeekPercentage() {
+        return activity == null ? Collections.<String, Double>emptyMap() : activity.commitsPerWeekPercentage(activityRow);
     }
 
-    public TreeMap<String, Double> getCommitsPerMonthPercentage() {
-        return commitsPerMonthPercentage;
+    public Map<String, Double> getCommitsPerMonthPercentage() {
+        return activity == null ? Collections.<String, Double>emptyMap() : activity.commitsPerMonthPercentage(activityRow);
     }
 
     public long getNumberOfCommits() {
@@ -0,0 +1,442 @@
+package edu.df.git;
+
+import edu.df.metrics.PhaseMetrics;
+import edu.df.metrics.ThreadUsage;
+import edu.df.progress.ProgressTask;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Diffs consecutive commits of a list on a pool of worker threads.
+ * <p>
+ * Pair i is the diff from commit i - 1 to commit i. Workers take chunks of pairs from a shared counter
+ * and every worker owns its ObjectReader, RevWalk and DiffFormatter. Results are stored per pair,
+ * so callers can add them up in order and get the same totals as a sequential run.
+ * Pairs of trees found in the diff cache are not diffed again.
+ * <p>
+ * diffScopes() diffs path scopes instead: every commit is diffed, scope by scope, against the previous commit
+ * of the list that changed the scope, so the changes of a scope do not depend on the other scopes.
+ */
+class DiffEngine {
+    private static final int CHUNK_SIZE = 32;
+    private static final int SUBTREE_CACHE_SIZE = 256;
+
+    private final org.eclipse.jgit.lib.Repository repository;
+    private final int threads;
+    private final DiffStatCache cache;
+    private PhaseMetrics metrics;
+    private ProgressTask progress;
+    private ExecutorService executor;
+
+    /**
+     * DiffEngine constructor
+     *
+     * @param repository
+     * @param threads    number of worker threads
+     * @param cache      cache looked up before diffing two trees, may be null
+     */
+    DiffEngine(org.eclipse.jgit.lib.Repository repository, int threads, DiffStatCache cache) {
+        this.repository = repository;
+        this.threads = Math.max(1, threads);
+        this.cache = cache;
+    }
+
+    /**
+     * Sets the metrics the diffs, parsed commits and the usage of the worker threads are added to
+     *
+     * @param metrics may be null
+     */
+    void setMetrics(PhaseMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Sets the executor the workers run on. Null, the default, uses a pool of its own for every diff().
+     * Workers never wait for other tasks, so the executor can be shared with other work
+     *
+     * @param executor
+     */
+    void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Sets the task every diffed pair is reported to, cached pairs included
+     *
+     * @param progress may be null
+     */
+    void setProgress(ProgressTask progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Diffs every commit of the list against the previous one
+     *
+     * @param commitIds
+     * @return stats per pair, index 0 is always null
+     * @throws IOException
+     */
+    DiffStat[] diff(List<? extends AnyObjectId> commitIds) throws IOException {
+        final DiffStat[] stats = new DiffStat[commitIds.size()];
+        if (commitIds.size() < 2)
+            return stats;
+
+        AtomicInteger nextPair = new AtomicInteger(1);
+        run(nextPair, commitIds.size(), () -> new Worker(commitIds, stats, nextPair));
+        return stats;
+    }
+
+    /**
+     * Diffs the path scopes of every commit of the list. A commit is diffed in the scopes it changes compared to
+     * each of its parents, against the previous commit of the list that changed the same scope, or against the base
+     *
+     * @param scopes
+     * @param base      commit the scopes are diffed against before the first commit that changes them,
+     *                  null to diff them against an empty tree
+     * @param commitIds sorted by date
+     * @return stats per commit
+     * @throws IOException
+     */
+    ScopedDiffStat[] diffScopes(ScopeResolver scopes, AnyObjectId base, List<? extends AnyObjectId> commitIds) throws IOException {
+        int size = commitIds.size();
+        int[][] touchedScopes = new int[size][];
+        ObjectId[][] newSubtrees = new ObjectId[size][];
+        AtomicInteger nextCommit = new AtomicInteger(0);
+        run(nextCommit, size, () -> new ScopeWorker(scopes, commitIds, touchedScopes, newSubtrees, nextCommit));
+
+        // the subtree every commit is diffed against is the one of the previous commit in the same scope
+        ObjectId[] lastSubtrees = new ObjectId[scopes.size()];
+        if (base != null) {
+            ObjectReader reader = repository.newObjectReader();
+            try {
+                lastSubtrees = scopes.subtrees(reader, new RevWalk(reader).parseCommit(base).getTree());
+            } finally {
+                reader.release();
+            }
+        }
+        ObjectId[][] oldSubtrees = new ObjectId[size][];
+        for (int i = 0; i < size; i++) {
+            oldSubtrees[i] = new ObjectId[touchedScopes[i].length];
+            for (int j = 0; j < touchedScopes[i].length; j++) {
+                oldSubtrees[i][j] = lastSubtrees[touchedScopes[i][j]];
+                lastSubtrees[touchedScopes[i][j]] = newSubtrees[i][j];
+            }
+        }
+
+        ScopedDiffStat[] stats = new ScopedDiffStat[size];
+        AtomicInteger nextDiff = new AtomicInteger(0);
+        run(nextDiff, size, () -> new ScopeDiffWorker(scopes, touchedScopes, oldSubtrees, newSubtrees, stats, nextDiff));
+        return stats;
+    }
+
+    /**
+     * Runs workers that take chunks of items from a shared counter until all items are taken
+     *
+     * @param nextItem counter the workers take their chunks from
+     * @param size     number of items
+     * @param worker   creates a worker
+     * @throws IOException
+     */
+    private void run(AtomicInteger nextItem, int size, Supplier<ChunkWorker> worker) throws IOException {
+        int workers = Math.min(threads, (size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        if (workers == 0)
+            return;
+        ExecutorService executor = this.executor != null ? this.executor : Executors.newFixedThreadPool(workers);
+        List<Future<Void>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < workers; i++)
+                futures.add(executor.submit(worker.get()));
+            for (Future<Void> future : futures)
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while calculating line changes");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        } finally {
+            // workers that are still running stop after their current chunk
+            nextItem.set(size);
+            for (Future<Void> future : futures)
+                future.cancel(true);
+            if (this.executor == null)
+                executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Diffs two trees
+     *
+     * @param df
+     * @param oldTree may be null for an empty tree
+     * @param newTree may be null for an empty tree
+     * @return
+     * @throws IOException
+     */
+    static DiffStat diffTrees(DiffFormatter df, AnyObjectId oldTree, AnyObjectId newTree) throws IOException {
+        long linesAdded = 0, linesDeleted = 0, linesBefore = 0;
+        List<DiffEntry> diffs = df.scan(oldTree, newTree);
+        for (DiffEntry diff : diffs) {
+            for (Edit edit : df.toFileHeader(diff).toEditList()) {
+                linesAdded += edit.getEndB() - edit.getBeginB();
+                linesDeleted += edit.getEndA() - edit.getBeginA();
+                linesBefore += edit.getEndA();
+            }
+        }
+        return new DiffStat(diffs.size(), linesAdded, linesDeleted, linesBefore);
+    }
+
+    /**
+     * Worker that owns an ObjectReader, a RevWalk and a DiffFormatter and processes chunks of items
+     */
+    private abstract class ChunkWorker implements Callable<Void> {
+        private final AtomicInteger nextItem;
+        private final int size;
+        ObjectReader reader;
+        RevWalk rw;
+        DiffFormatter df;
+        long objectsParsed, diffsComputed;
+
+        ChunkWorker(AtomicInteger nextItem, int size) {
+            this.nextItem = nextItem;
+            this.size = size;
+        }
+
+        /**
+         * Processes the items from start, inclusive, to end, exclusive
+         *
+         * @param start
+         * @param end
+         * @throws IOException
+         */
+        abstract void process(int start, int end) throws IOException;
+
+        @Override
+        public Void call() throws IOException {
+            ThreadUsage usage = ThreadUsage.ofCurrentThread();
+            reader = repository.newObjectReader();
+            rw = new RevWalk(reader);
+            df = new DiffFormatter(DisabledOutputStream.INSTANCE);
+            try {
+                rw.setRetainBody(false);
+                df.setRepository(repository);
+                df.setDiffComparator(RawTextComparator.DEFAULT);
+                df.setDetectRenames(true);
+
+                int start;
+                while ((start = nextItem.getAndAdd(CHUNK_SIZE)) < size)
+                    process(start, Math.min(start + CHUNK_SIZE, size));
+                return null;
+            } finally {
+                df.release();
+                rw.release();
+                reader.release();
+                if (metrics != null) {
+                    metrics.addObjectsParsed(objectsParsed);
+                    metrics.addDiffsComputed(diffsComputed);
+                    metrics.addThreadUsage(usage);
+                }
+            }
+        }
+    }
+
+    /**
+     * Diffs pairs of consecutive commits
+     */
+    private class Worker extends ChunkWorker {
+        private final List<? extends AnyObjectId> commitIds;
+        private final DiffStat[] stats;
+
+        Worker(List<? extends AnyObjectId> commitIds, DiffStat[] stats, AtomicInteger nextPair) {
+            super(nextPair, commitIds.size());
+            this.commitIds = commitIds;
+            this.stats = stats;
+        }
+
+        @Override
+        void process(int start, int end) throws IOException {
+            objectsParsed += end - start + 1;
+            for (int i = start; i < end; i++) {
+                RevTree oldTree = rw.parseCommit(commitIds.get(i - 1)).getTree();
+                RevTree newTree = rw.parseCommit(commitIds.get(i)).getTree();
+                DiffStat diffStat = cache == null ? null : cache.get(oldTree, newTree);
+                if (diffStat == null) {
+                    diffStat = diffTrees(df, oldTree, newTree);
+                    diffsComputed++;
+                    if (cache != null)
+                        cache.put(oldTree, newTree, diffStat);
+                }
+                stats[i] = diffStat;
+                if (progress != null)
+                    progress.update(1);
+            }
+        }
+    }
+
+    /**
+     * Finds the scopes every commit changes and its subtrees in them.
+     * <p>
+     * A commit changes a scope if its subtree differs from the subtree of every parent, the rule of a commit walk
+     * filtered by the path of the scope. A root commit changes the scopes it has.
+     */
+    private class ScopeWorker extends ChunkWorker {
+        private final ScopeResolver scopes;
+        private final List<? extends AnyObjectId> commitIds;
+        private final int[][] touchedScopes;
+        private final ObjectId[][] newSubtrees;
+        private SubtreeCache subtrees;
+
+        ScopeWorker(ScopeResolver scopes, List<? extends AnyObjectId> commitIds, int[][] touchedScopes, ObjectId[][] newSubtrees, AtomicInteger nextCommit) {
+            super(nextCommit, commitIds.size());
+            this.scopes = scopes;
+            this.commitIds = commitIds;
+            this.touchedScopes = touchedScopes;
+            this.newSubtrees = newSubtrees;
+        }
+
+        @Override
+        void process(int start, int end) throws IOException {
+            if (subtrees == null)
+                subtrees = new SubtreeCache(scopes, reader);
+            for (int i = start; i < end; i++) {
+                RevCommit commit = rw.parseCommit(commitIds.get(i));
+                ObjectId[] commitSubtrees = subtrees.get(commit.getTree());
+                ObjectId[][] parentSubtrees = new ObjectId[commit.getParentCount()][];
+                for (int p = 0; p < parentSubtrees.length; p++) {
+                    RevCommit parent = commit.getParent(p);
+                    rw.parseHeaders(parent);
+                    parentSubtrees[p] = subtrees.get(parent.getTree());
+                }
+                objectsParsed += 1 + parentSubtrees.length;
+
+                int[] touched = new int[scopes.size()];
+                int count = 0;
+                for (int scope = 0; scope < scopes.size(); scope++) {
+                    boolean changed = commitSubtrees[scope] != null || parentSubtrees.length > 0;
+                    for (ObjectId[] parent : parentSubtrees)
+                        changed &= !Objects.equals(parent[scope], commitSubtrees[scope]);
+                    if (changed)
+                        touched[count++] = scope;
+                }
+                touchedScopes[i] = Arrays.copyOf(touched, count);
+                newSubtrees[i] = new ObjectId[count];
+                for (int j = 0; j < count; j++)
+                    newSubtrees[i][j] = commitSubtrees[touched[j]];
+            }
+        }
+    }
+
+    /**
+     * Diffs the subtrees of the scopes every commit changes, the totals are the sum of the top level scopes.
+     * Subtree pairs are looked up in the diff cache like pairs of root trees
+     */
+    private class ScopeDiffWorker extends ChunkWorker {
+        private final ScopeResolver scopes;
+        private final int[][] touchedScopes;
+        private final ObjectId[][] oldSubtrees, newSubtrees;
+        private final ScopedDiffStat[] stats;
+
+        ScopeDiffWorker(ScopeResolver scopes, int[][] touchedScopes, ObjectId[][] oldSubtrees, ObjectId[][] newSubtrees,
+                        ScopedDiffStat[] stats, AtomicInteger nextCommit) {
+            super(nextCommit, stats.length);
+            this.scopes = scopes;
+            this.touchedScopes = touchedScopes;
+            this.oldSubtrees = oldSubtrees;
+            this.newSubtrees = newSubtrees;
+            this.stats = stats;
+        }
+
+        @Override
+        void process(int start, int end) throws IOException {
+            for (int i = start; i < end; i++) {
+                int[] touched = touchedScopes[i];
+                int[] changedScopes = new int[touched.length];
+                DiffStat[] scopeStats = new DiffStat[touched.length];
+                int changed = 0, filesChanged = 0;
+                long linesAdded = 0, linesDeleted = 0;
+                for (int j = 0; j < touched.length; j++) {
+                    ObjectId oldTree = oldSubtrees[i][j], newTree = newSubtrees[i][j];
+                    if (Objects.equals(oldTree, newTree))
+                        continue;
+
+                    // a scope that appears or disappears is diffed against an empty tree, which is not cached
+                    boolean cacheable = cache != null && oldTree != null && newTree != null;
+                    DiffStat diffStat = cacheable ? cache.get(oldTree, newTree) : null;
+                    if (diffStat == null) {
+                        diffStat = diffTrees(df, oldTree, newTree);
+                        diffsComputed++;
+                        if (cacheable)
+                            cache.put(oldTree, newTree, diffStat);
+                    }
+                    changedScopes[changed] = touched[j];
+                    scopeStats[changed++] = diffStat;
+                    if (scopes.isTopLevel(touched[j])) {
+                        filesChanged += diffStat.getFilesChanged();
+                        linesAdded += diffStat.getLinesAdded();
+                        linesDeleted += diffStat.getLinesDeleted();
+                    }
+                }
+                stats[i] = new ScopedDiffStat(filesChanged, linesAdded, linesDeleted,
+                        Arrays.copyOf(changedScopes, changed), Arrays.copyOf(scopeStats, changed), touched);
+                if (progress != null)
+                    progress.update(1);
+            }
+        }
+    }
+
+    /**
+     * Subtrees of the scopes in the most recently seen trees. Commits are processed in date order and their parents
+     * are usually among the previous commits, so most lookups hit
+     */
+    private static class SubtreeCache {
+        private final ScopeResolver scopes;
+        private final ObjectReader reader;
+        private final LinkedHashMap<ObjectId, ObjectId[]> entries;
+
+        SubtreeCache(ScopeResolver scopes, ObjectReader reader) {
+            this.scopes = scopes;
+            this.reader = reader;
+            this.entries = new LinkedHashMap<ObjectId, ObjectId[]>(SUBTREE_CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ObjectId, ObjectId[]> eldest) {
+                    return size() > SUBTREE_CACHE_SIZE;
+                }
+            };
+        }
+
+        ObjectId[] get(RevTree tree) throws IOException {
+            ObjectId[] subtrees = entries.get(tree);
+            if (subtrees == null) {
+                subtrees = scopes.subtrees(reader, tree);
+                entries.put(tree.copy(), subtrees);
+            }
+            return subtrees;
+        }
+    }
+}
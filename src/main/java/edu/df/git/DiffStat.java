@@ -0,0 +1,42 @@
+package edu.df.git;
+
+/**
+ * Line and file changes between two trees.
+ */
+class DiffStat {
+    private final int filesChanged;
+    private final long linesAdded;
+    private final long linesDeleted;
+    private final long linesBefore;
+
+    /**
+     * DiffStat constructor
+     *
+     * @param filesChanged number of diff entries
+     * @param linesAdded   lines added over all edits
+     * @param linesDeleted lines deleted over all edits
+     * @param linesBefore  sum of the last old line of every edit, credited to the very first commit
+     */
+    DiffStat(int filesChanged, long linesAdded, long linesDeleted, long linesBefore) {
+        this.filesChanged = filesChanged;
+        this.linesAdded = linesAdded;
+        this.linesDeleted = linesDeleted;
+        this.linesBefore = linesBefore;
+    }
+
+    int getFilesChanged() {
+        return filesChanged;
+    }
+
+    long getLinesAdded() {
+        return linesAdded;
+    }
+
+    long getLinesDeleted() {
+        return linesDeleted;
+    }
+
+    long getLinesBefore() {
+        return linesBefore;
+    }
+}
@@ -0,0 +1,699 @@
+package edu.df.git;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent cache of diff statistics between two trees.
+ * <p>
+ * Trees are immutable, so the statistics of a (old tree, new tree) pair never change and can be shared by
+ * every repository that contains both trees, forks included. The cache file is append-only: every flush() appends
+ * the new entries as a segment, a run of fixed size records sorted by tree pair followed by a fence, the key of
+ * every FENCE_INTERVAL-th record. Only the fences are kept in memory, a lookup binary searches the fence of each
+ * segment and reads one block of records, so the records are never loaded on the heap and the file is never
+ * memory mapped.
+ * <p>
+ * Segments are merged like in a size-tiered log: after a flush the last segments are merged into one as long as
+ * the segment before them is at most twice as large, so there are about log2 of the number of flushes segments and
+ * a large segment is only rewritten once the newer ones add up to its size. When the file holds more than
+ * MAX_RECORDS records all segments are merged and the records of the oldest generations, the number of flushes
+ * before a record was added, are dropped. Merges rewrite the file in place from the first merged segment on, the
+ * file is never replaced, so readers in other processes keep a valid handle. The header holds an epoch that is odd
+ * while a merge is running and changes with every merge, a lookup that saw another epoch counts as a miss.
+ * <p>
+ * Instances are shared per file while they are open, so concurrent analyses in the same JVM use one cache,
+ * and are released when the last of them closes it.
+ */
+class DiffStatCache {
+    private static final int MAGIC = 0x47534443; // "GSDC"
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 16;
+    private static final int EPOCH_OFFSET = 8;
+    private static final int KEY_SIZE = 2 * Constants.OBJECT_ID_LENGTH;
+    private static final int RECORD_SIZE = KEY_SIZE + 4 + 4 + 3 * 8;
+    private static final int SEGMENT_HEADER_SIZE = 8;
+    private static final int FENCE_INTERVAL = 64;
+    private static final int MAX_RECORDS = 1 << 21;
+    private static final int READ_BUFFER_RECORDS = 1024;
+
+    private static final HashMap<File, DiffStatCache> OPEN_CACHES = new HashMap<>();
+    // file locks are held by the JVM, so threads writing a cache file are serialized here first
+    private static final Object FLUSH_LOCK = new Object();
+    private static final ThreadLocal<ByteBuffer> BLOCKS = ThreadLocal.withInitial(() -> ByteBuffer.allocate(FENCE_INTERVAL * RECORD_SIZE));
+    private static final ThreadLocal<ByteBuffer> EPOCHS = ThreadLocal.withInitial(() -> ByteBuffer.allocate(8));
+
+    private final File file;
+    private final File lockFile;
+    private final ConcurrentHashMap<TreePair, DiffStat> unsaved;
+    private volatile FileChannel channel;
+    private volatile Directory directory;
+    private int references;
+
+    private DiffStatCache(File file) {
+        this.file = file;
+        this.lockFile = new File(file.getPath() + ".lock");
+        this.unsaved = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns the default cache file, inside the user's cache directory
+     *
+     * @return
+     */
+    static File defaultFile() {
+        String cacheHome = System.getenv("XDG_CACHE_HOME");
+        if (cacheHome == null || cacheHome.isEmpty())
+            cacheHome = System.getProperty("user.home") + "/.cache";
+        return new File(cacheHome + "/gitstatistics/diffstats.bin");
+    }
+
+    /**
+     * Opens the cache stored in the given file, every call must be followed by a call to close()
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    static DiffStatCache open(File file) throws IOException {
+        File key = file.getCanonicalFile();
+        synchronized (OPEN_CACHES) {
+            DiffStatCache cache = OPEN_CACHES.get(key);
+            if (cache == null) {
+                cache = new DiffStatCache(key);
+                //noinspection ResultOfMethodCallIgnored
+                key.getParentFile().mkdirs();
+                cache.initialize();
+                OPEN_CACHES.put(key, cache);
+            }
+            cache.references++;
+            return cache;
+        }
+    }
+
+    /**
+     * Releases the cache, the last close writes the unsaved entries and closes the file
+     *
+     * @throws IOException
+     */
+    void close() throws IOException {
+        synchronized (OPEN_CACHES) {
+            if (--references > 0)
+                return;
+            OPEN_CACHES.remove(file);
+        }
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Returns cached statistics
+     *
+     * @param oldTree
+     * @param newTree
+     * @return the statistics, or null if the pair is not cached
+     */
+    DiffStat get(AnyObjectId oldTree, AnyObjectId newTree) {
+        DiffStat diffStat = unsaved.get(new TreePair(oldTree, newTree));
+        if (diffStat != null)
+            return diffStat;
+
+        byte[] key = key(oldTree, newTree);
+        try {
+            Directory current = directory;
+            long epoch = readEpoch();
+            if (epoch != current.epoch) {
+                current = reloadDirectory(epoch);
+                if (current == null)
+                    return null;
+            }
+            // newest segments first, they hold the entries that were just added
+            for (int i = current.segments.length - 1; i >= 0 && diffStat == null; i--)
+                diffStat = current.segments[i].find(channel(), key);
+            // a merge rewrote the file while the records were read
+            return readEpoch() == epoch ? diffStat : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Adds statistics to the cache, they are written to disk by the next flush()
+     *
+     * @param oldTree
+     * @param newTree
+     * @param diffStat
+     */
+    void put(AnyObjectId oldTree, AnyObjectId newTree, DiffStat diffStat) {
+        unsaved.putIfAbsent(new TreePair(oldTree.copy(), newTree.copy()), diffStat);
+    }
+
+    /**
+     * Appends the entries added since the last flush to the cache file as a new segment, then merges segments
+     * if the tail of the file got too fragmented or the file too large
+     *
+     * @throws IOException
+     */
+    void flush() throws IOException {
+        if (unsaved.isEmpty())
+            return;
+        // the entries are taken with their statistics, a concurrent flush may write and remove them meanwhile
+        List<TreePair> pairs = new ArrayList<>();
+        List<DiffStat> diffStats = new ArrayList<>();
+        for (Map.Entry<TreePair, DiffStat> entry : unsaved.entrySet()) {
+            pairs.add(entry.getKey());
+            diffStats.add(entry.getValue());
+        }
+        byte[][] keys = new byte[pairs.size()][];
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = key(pairs.get(i).oldTree, pairs.get(i).newTree);
+        Integer[] order = new Integer[keys.length];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, (a, b) -> compareKeys(keys[a], 0, keys[b], 0));
+
+        synchronized (FLUSH_LOCK) {
+            try (FileChannel lockChannel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock ignored = lockChannel.lock()) {
+                Directory current = readValidDirectory();
+                int generation = current.newestGeneration + 1;
+
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(SEGMENT_HEADER_SIZE + order.length * RECORD_SIZE);
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeInt(order.length);
+                out.writeInt(generation);
+                for (Integer i : order) {
+                    DiffStat diffStat = diffStats.get(i);
+                    out.write(keys[i]);
+                    out.writeInt(generation);
+                    out.writeInt(diffStat.getFilesChanged());
+                    out.writeLong(diffStat.getLinesAdded());
+                    out.writeLong(diffStat.getLinesDeleted());
+                    out.writeLong(diffStat.getLinesBefore());
+                }
+                for (int i = 0; i < order.length; i += FENCE_INTERVAL)
+                    out.write(keys[order[i]]);
+                writeFully(channel(), ByteBuffer.wrap(bytes.toByteArray()), current.end);
+
+                current = readDirectory();
+                if (current.records > MAX_RECORDS) {
+                    current = merge(current, 0, oldestGenerationToKeep(current));
+                } else {
+                    int first = firstSegmentToMerge(current);
+                    if (first < current.segments.length - 1)
+                        current = merge(current, first, Integer.MIN_VALUE);
+                }
+                directory = current;
+            }
+        }
+        // only after the new segment is visible, so every entry can be found all the time
+        for (TreePair pair : pairs)
+            unsaved.remove(pair);
+    }
+
+    /**
+     * Creates or checks the file and reads its segments
+     *
+     * @throws IOException
+     */
+    private void initialize() throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        synchronized (FLUSH_LOCK) {
+            try (FileChannel lockChannel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock ignored = lockChannel.lock()) {
+                directory = readValidDirectory();
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Reads the segments while the file lock is held, so no other writer is running.
+     * <p>
+     * A file with an unknown header is started over, and so is a file whose epoch is odd, as a merge
+     * was interrupted. A partly written last segment is cut off
+     *
+     * @return
+     * @throws IOException
+     */
+    private Directory readValidDirectory() throws IOException {
+        FileChannel channel = channel();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, 0);
+        header.flip();
+        long epoch = 0;
+        boolean valid = header.remaining() == HEADER_SIZE && header.getInt() == MAGIC && header.getInt() == VERSION;
+        if (valid) {
+            epoch = header.getLong();
+            valid = (epoch & 1) == 0;
+        }
+        if (!valid) {
+            channel.truncate(0);
+            header.clear();
+            header.putInt(MAGIC).putInt(VERSION).putLong(epoch + 2 & ~1L).flip();
+            writeFully(channel, header, 0);
+        }
+
+        Directory current = readDirectory();
+        if (channel.size() > current.end)
+            channel.truncate(current.end);
+        return current;
+    }
+
+    /**
+     * Reads the segments again after another process merged them
+     *
+     * @param epoch the epoch the file has now
+     * @return the segments, or null if a merge is running
+     */
+    private synchronized Directory reloadDirectory(long epoch) throws IOException {
+        if (directory.epoch == epoch)
+            return directory;
+        if ((epoch & 1) != 0)
+            return null;
+        Directory current = readDirectory();
+        if (current.epoch != epoch || readEpoch() != epoch)
+            return null;
+        directory = current;
+        return current;
+    }
+
+    /**
+     * Reads the header and the fence of every segment, a partly written last segment is left out
+     *
+     * @return
+     * @throws IOException
+     */
+    private Directory readDirectory() throws IOException {
+        FileChannel channel = channel();
+        long size = channel.size();
+        long epoch = readEpoch();
+        List<Segment> segments = new ArrayList<>();
+        long offset = HEADER_SIZE;
+        ByteBuffer segmentHeader = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+        while (offset + SEGMENT_HEADER_SIZE <= size) {
+            segmentHeader.clear();
+            readFully(channel, segmentHeader, offset);
+            int count = segmentHeader.getInt(0);
+            int generation = segmentHeader.getInt(4);
+            if (count < 0 || offset + Segment.size(count) > size)
+                break;
+            Segment segment = new Segment(offset, count, generation);
+            ByteBuffer fences = ByteBuffer.wrap(segment.fences);
+            readFully(channel, fences, segment.fencesOffset());
+            segments.add(segment);
+            offset += Segment.size(count);
+        }
+        return new Directory(epoch, offset, segments.toArray(new Segment[0]));
+    }
+
+    /**
+     * Returns the first of the last segments to merge, those after a segment more than twice as large as all of them
+     *
+     * @param current
+     * @return the index of the last segment if nothing is to be merged
+     */
+    private static int firstSegmentToMerge(Directory current) {
+        int first = current.segments.length - 1;
+        long tail = current.segments[first].count;
+        while (first > 0 && current.segments[first - 1].count <= 2 * tail) {
+            first--;
+            tail += current.segments[first].count;
+        }
+        return first;
+    }
+
+    /**
+     * Returns the oldest generation whose records fit in three quarters of MAX_RECORDS together with all newer
+     * ones, so the file is not merged again at the next flush
+     *
+     * @param current
+     * @return
+     * @throws IOException
+     */
+    private int oldestGenerationToKeep(Directory current) throws IOException {
+        TreeMap<Integer, Long> recordsPerGeneration = new TreeMap<>(Collections.reverseOrder());
+        for (Segment segment : current.segments) {
+            SegmentCursor cursor = new SegmentCursor(channel(), segment, 0);
+            while (cursor.next())
+                recordsPerGeneration.merge(cursor.generation(), 1L, Long::sum);
+        }
+
+        long kept = 0;
+        int oldest = Integer.MAX_VALUE;
+        for (Map.Entry<Integer, Long> entry : recordsPerGeneration.entrySet()) {
+            if (kept + entry.getValue() > MAX_RECORDS - MAX_RECORDS / 4)
+                break;
+            kept += entry.getValue();
+            oldest = entry.getKey();
+        }
+        return oldest;
+    }
+
+    /**
+     * Merges the segments from the given one to the last into one segment that replaces them in the file.
+     * The merged segment is written to a temporary file first and then copied over the merged segments, the
+     * epoch is odd while they are overwritten
+     *
+     * @param current          segments of the file
+     * @param first            first segment to merge
+     * @param oldestGeneration records of older generations are dropped
+     * @return the segments after the merge
+     * @throws IOException
+     */
+    private Directory merge(Directory current, int first, int oldestGeneration) throws IOException {
+        FileChannel channel = channel();
+        File tempFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        try (FileChannel temp = FileChannel.open(tempFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            PriorityQueue<SegmentCursor> cursors = new PriorityQueue<>();
+            for (int i = first; i < current.segments.length; i++) {
+                SegmentCursor cursor = new SegmentCursor(channel, current.segments[i], i);
+                if (cursor.next())
+                    cursors.add(cursor);
+            }
+
+            ByteBuffer output = ByteBuffer.allocate(READ_BUFFER_RECORDS * RECORD_SIZE);
+            ByteArrayOutputStream fences = new ByteArrayOutputStream();
+            byte[] lastKey = null;
+            int count = 0;
+            int generation = Integer.MIN_VALUE;
+            long position = SEGMENT_HEADER_SIZE;
+            while (!cursors.isEmpty()) {
+                SegmentCursor cursor = cursors.poll();
+                // equal keys come newest segment first, the older copies are skipped
+                if ((lastKey == null || compareKeys(cursor.record, 0, lastKey, 0) != 0) && cursor.generation() >= oldestGeneration) {
+                    if (count % FENCE_INTERVAL == 0)
+                        fences.write(cursor.record, 0, KEY_SIZE);
+                    if (!output.hasRemaining()) {
+                        output.flip();
+                        position += writeFully(temp, output, position);
+                        output.clear();
+                    }
+                    output.put(cursor.record);
+                    generation = Math.max(generation, cursor.generation());
+                    lastKey = Arrays.copyOf(cursor.record, KEY_SIZE);
+                    count++;
+                }
+                if (cursor.next())
+                    cursors.add(cursor);
+            }
+            output.flip();
+            position += writeFully(temp, output, position);
+            position += writeFully(temp, ByteBuffer.wrap(fences.toByteArray()), position);
+            ByteBuffer segmentHeader = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+            segmentHeader.putInt(count).putInt(generation == Integer.MIN_VALUE ? current.newestGeneration : generation).flip();
+            writeFully(temp, segmentHeader, 0);
+
+            long offset = current.segments[first].offset;
+            writeEpoch(current.epoch + 1);
+            for (long copied = 0; copied < position; )
+                copied += channel.transferFrom(temp.position(copied), offset + copied, position - copied);
+            channel.truncate(offset + position);
+            writeEpoch(current.epoch + 2);
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+        }
+        return readDirectory();
+    }
+
+    /**
+     * Returns the channel of the file, opened again if an interrupted thread closed it
+     *
+     * @return
+     * @throws IOException
+     */
+    private FileChannel channel() throws IOException {
+        FileChannel current = channel;
+        if (current.isOpen())
+            return current;
+        synchronized (this) {
+            if (!channel.isOpen())
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return channel;
+        }
+    }
+
+    private long readEpoch() throws IOException {
+        ByteBuffer epoch = EPOCHS.get();
+        epoch.clear();
+        readFully(channel(), epoch, EPOCH_OFFSET);
+        return epoch.position() == 8 ? epoch.getLong(0) : -1;
+    }
+
+    private void writeEpoch(long epoch) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        buffer.putLong(epoch).flip();
+        writeFully(channel(), buffer, EPOCH_OFFSET);
+    }
+
+    /**
+     * Reads from a position until the buffer is full or the file ends
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                return;
+        }
+    }
+
+    /**
+     * Writes the remaining bytes of a buffer at a position
+     *
+     * @return the number of bytes written
+     */
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining())
+            written += channel.write(buffer, position + written);
+        return written;
+    }
+
+    private static byte[] key(AnyObjectId oldTree, AnyObjectId newTree) {
+        byte[] key = new byte[KEY_SIZE];
+        oldTree.copyRawTo(key, 0);
+        newTree.copyRawTo(key, Constants.OBJECT_ID_LENGTH);
+        return key;
+    }
+
+    /**
+     * Compares two keys as unsigned bytes
+     */
+    private static int compareKeys(byte[] a, int aOffset, byte[] b, int bOffset) {
+        for (int i = 0; i < KEY_SIZE; i++) {
+            int cmp = (a[aOffset + i] & 0xff) - (b[bOffset + i] & 0xff);
+            if (cmp != 0)
+                return cmp;
+        }
+        return 0;
+    }
+
+    /**
+     * Segments of the file at one epoch
+     */
+    private static class Directory {
+        private final long epoch;
+        private final long end;
+        private final Segment[] segments;
+        private final long records;
+        private final int newestGeneration;
+
+        Directory(long epoch, long end, Segment[] segments) {
+            this.epoch = epoch;
+            this.end = end;
+            this.segments = segments;
+            long records = 0;
+            int newestGeneration = 0;
+            for (Segment segment : segments) {
+                records += segment.count;
+                newestGeneration = Math.max(newestGeneration, segment.generation);
+            }
+            this.records = records;
+            this.newestGeneration = newestGeneration;
+        }
+    }
+
+    /**
+     * Sorted run of records with its fence
+     */
+    private static class Segment {
+        private final long offset;
+        private final int count;
+        private final int generation;
+        private final byte[] fences;
+
+        Segment(long offset, int count, int generation) {
+            this.offset = offset;
+            this.count = count;
+            this.generation = generation;
+            this.fences = new byte[fenceCount(count) * KEY_SIZE];
+        }
+
+        static int fenceCount(int count) {
+            return (count + FENCE_INTERVAL - 1) / FENCE_INTERVAL;
+        }
+
+        static long size(int count) {
+            return SEGMENT_HEADER_SIZE + (long) count * RECORD_SIZE + (long) fenceCount(count) * KEY_SIZE;
+        }
+
+        long recordsOffset() {
+            return offset + SEGMENT_HEADER_SIZE;
+        }
+
+        long fencesOffset() {
+            return recordsOffset() + (long) count * RECORD_SIZE;
+        }
+
+        /**
+         * Finds the block of a key in the fence and binary searches the records of the block
+         *
+         * @param channel
+         * @param key
+         * @return the statistics, or null if the segment does not hold the key
+         * @throws IOException
+         */
+        DiffStat find(FileChannel channel, byte[] key) throws IOException {
+            int low = 0, high = fences.length / KEY_SIZE - 1, block = -1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (compareKeys(fences, middle * KEY_SIZE, key, 0) <= 0) {
+                    block = middle;
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            if (block < 0)
+                return null;
+
+            int first = block * FENCE_INTERVAL;
+            int records = Math.min(FENCE_INTERVAL, count - first);
+            ByteBuffer buffer = BLOCKS.get();
+            buffer.clear();
+            buffer.limit(records * RECORD_SIZE);
+            readFully(channel, buffer, recordsOffset() + (long) first * RECORD_SIZE);
+            if (buffer.hasRemaining())
+                return null;
+
+            byte[] bytes = buffer.array();
+            low = 0;
+            high = records - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int cmp = compareKeys(bytes, middle * RECORD_SIZE, key, 0);
+                if (cmp < 0) {
+                    low = middle + 1;
+                } else if (cmp > 0) {
+                    high = middle - 1;
+                } else {
+                    int stat = middle * RECORD_SIZE + KEY_SIZE + 4;
+                    return new DiffStat(buffer.getInt(stat), buffer.getLong(stat + 4), buffer.getLong(stat + 12), buffer.getLong(stat + 20));
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Reads the records of a segment in order, a buffer of records at a time
+     */
+    private static class SegmentCursor implements Comparable<SegmentCursor> {
+        private final FileChannel channel;
+        private final Segment segment;
+        private final int age;
+        private final ByteBuffer buffer;
+        private final byte[] record;
+        private int read;
+
+        /**
+         * SegmentCursor constructor
+         *
+         * @param channel
+         * @param segment
+         * @param age     index of the segment, of two equal keys the one of the higher index comes first
+         */
+        SegmentCursor(FileChannel channel, Segment segment, int age) {
+            this.channel = channel;
+            this.segment = segment;
+            this.age = age;
+            this.buffer = ByteBuffer.allocate(READ_BUFFER_RECORDS * RECORD_SIZE);
+            this.buffer.flip();
+            this.record = new byte[RECORD_SIZE];
+        }
+
+        /**
+         * Moves to the next record
+         *
+         * @return false at the end of the segment
+         * @throws IOException
+         */
+        boolean next() throws IOException {
+            if (read == segment.count)
+                return false;
+            if (!buffer.hasRemaining()) {
+                int records = Math.min(READ_BUFFER_RECORDS, segment.count - read);
+                buffer.clear();
+                buffer.limit(records * RECORD_SIZE);
+                readFully(channel, buffer, segment.recordsOffset() + (long) read * RECORD_SIZE);
+                if (buffer.hasRemaining())
+                    throw new EOFException("The diff cache ends within the segment at " + segment.offset);
+                buffer.flip();
+            }
+            buffer.get(record);
+            read++;
+            return true;
+        }
+
+        int generation() {
+            return (record[KEY_SIZE] & 0xff) << 24 | (record[KEY_SIZE + 1] & 0xff) << 16
+                    | (record[KEY_SIZE + 2] & 0xff) << 8 | record[KEY_SIZE + 3] & 0xff;
+        }
+
+        @Override
+        public int compareTo(SegmentCursor other) {
+            int cmp = compareKeys(record, 0, other.record, 0);
+            return cmp != 0 ? cmp : Integer.compare(other.age, age);
+        }
+    }
+
+    /**
+     * Key of the unsaved entries, a pair of tree ids
+     */
+    private static class TreePair {
+        private final AnyObjectId oldTree;
+        private final AnyObjectId newTree;
+
+        TreePair(AnyObjectId oldTree, AnyObjectId newTree) {
+            this.oldTree = oldTree;
+            this.newTree = newTree;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            TreePair treePair = (TreePair) o;
+
+            return AnyObjectId.equals(oldTree, treePair.oldTree) && AnyObjectId.equals(newTree, treePair.newTree);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * oldTree.hashCode() + newTree.hashCode();
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package edu.df.git;
+
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.util.RawParseUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * Resolves the author identities of commits to committers, through mailmap files.
+ * <p>
+ * Mailmaps have the format of git's .mailmap, a line such as {@code Proper Name <proper@mail> Old Name <old@mail>}
+ * maps an identity to another one, emails and names are matched ignoring case. Identities are cached by the raw
+ * bytes of the name and email in the commit header, so every distinct identity is parsed and mapped once and
+ * resolving the author of any further commit is a hash lookup. Identities that map to the same email share one
+ * committer, so all their commits and changes are added up under it, and it gets the name the mailmaps give
+ * that email if any.
+ */
+class IdentityResolver {
+    private final HashMap<String, Committer> committers;
+    private final HashMap<String, Mapping> byEmail;
+    private final HashMap<String, Mapping> byNameAndEmail;
+    private final HashMap<String, String> properNames;
+    private final HashMap<IdentKey, Committer> cache;
+    private final MessageDigest digest;
+
+    /**
+     * IdentityResolver constructor
+     *
+     * @param committers committers keyed by email, resolved committers are taken from and added to it
+     */
+    IdentityResolver(HashMap<String, Committer> committers) {
+        this.committers = committers;
+        this.byEmail = new HashMap<>();
+        this.byNameAndEmail = new HashMap<>();
+        this.properNames = new HashMap<>();
+        this.cache = new HashMap<>();
+        try {
+            this.digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Adds the entries of a mailmap, entries of later mailmaps take precedence like in git
+     *
+     * @param mailmap content of the file
+     * @throws IOException
+     */
+    void addMailmap(String mailmap) throws IOException {
+        byte[] bytes = mailmap.getBytes(StandardCharsets.UTF_8);
+        digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(bytes);
+
+        BufferedReader reader = new BufferedReader(new StringReader(mailmap));
+        for (String line; (line = reader.readLine()) != null; )
+            addEntry(line.trim());
+    }
+
+    /**
+     * Adds a line of a mailmap, lines that are not entries are skipped
+     *
+     * @param line
+     */
+    private void addEntry(String line) {
+        if (line.isEmpty() || line.startsWith("#"))
+            return;
+        int emailStart = line.indexOf('<');
+        int emailEnd = line.indexOf('>', emailStart + 1);
+        if (emailStart < 0 || emailEnd < 0)
+            return;
+        String properName = emptyToNull(line.substring(0, emailStart).trim());
+        String properEmail = line.substring(emailStart + 1, emailEnd).trim();
+        if (properName != null)
+            properNames.put(lowerCase(properEmail), properName);
+
+        String rest = line.substring(emailEnd + 1);
+        int oldEmailStart = rest.indexOf('<');
+        int oldEmailEnd = rest.indexOf('>', oldEmailStart + 1);
+        if (oldEmailStart < 0 || oldEmailEnd < 0) {
+            // Proper Name <email> only fixes the name of the email
+            mappingOf(byEmail, lowerCase(properEmail)).update(properName, null);
+            return;
+        }
+        String oldName = emptyToNull(rest.substring(0, oldEmailStart).trim());
+        String oldEmail = rest.substring(oldEmailStart + 1, oldEmailEnd).trim();
+        if (oldName == null)
+            mappingOf(byEmail, lowerCase(oldEmail)).update(properName, properEmail);
+        else
+            mappingOf(byNameAndEmail, lowerCase(oldName) + '\0' + lowerCase(oldEmail)).update(properName, properEmail);
+    }
+
+    private static Mapping mappingOf(HashMap<String, Mapping> mappings, String key) {
+        Mapping mapping = mappings.get(key);
+        if (mapping == null) {
+            mapping = new Mapping();
+            mappings.put(key, mapping);
+        }
+        return mapping;
+    }
+
+    /**
+     * Returns a hash of all mailmaps added, two resolvers with the same fingerprint resolve every identity the same way
+     *
+     * @return
+     */
+    String getFingerprint() {
+        try {
+            byte[] hash = ((MessageDigest) digest.clone()).digest();
+            StringBuilder fingerprint = new StringBuilder();
+            for (byte b : hash)
+                fingerprint.append(String.format("%02x", b));
+            return fingerprint.toString();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Resolves the identity that starts at identStart in a raw commit header
+     *
+     * @param raw        raw commit
+     * @param identStart first byte of the name
+     * @param identEnd   first byte after the closing bracket of the email
+     * @return the committer, a new one if no identity resolved to its email before
+     */
+    Committer resolve(byte[] raw, int identStart, int identEnd) {
+        IdentKey key = new IdentKey(raw, identStart, identEnd);
+        Committer committer = cache.get(key);
+        if (committer == null) {
+            PersonIdent ident = RawParseUtils.parsePersonIdentOnly(raw, identStart);
+            committer = resolve(ident.getName(), ident.getEmailAddress());
+            cache.put(key.copy(), committer);
+        }
+        return committer;
+    }
+
+    /**
+     * Resolves a name and email through the mailmaps
+     *
+     * @param name
+     * @param email
+     * @return
+     */
+    Committer resolve(String name, String email) {
+        Mapping mapping = byNameAndEmail.get(lowerCase(name) + '\0' + lowerCase(email));
+        if (mapping == null)
+            mapping = byEmail.get(lowerCase(email));
+        if (mapping != null) {
+            if (mapping.name != null)
+                name = mapping.name;
+            if (mapping.email != null)
+                email = mapping.email;
+        }
+
+        Committer committer = committers.get(email);
+        if (committer == null) {
+            // a committer merged from several identities is named after the mailmap, not after the first one found
+            String properName = properNames.get(lowerCase(email));
+            committer = new Committer(properName != null ? properName : name, email);
+            committers.put(email, committer);
+        }
+        return committer;
+    }
+
+    private static String lowerCase(String string) {
+        return string.toLowerCase(Locale.ROOT);
+    }
+
+    private static String emptyToNull(String string) {
+        return string.isEmpty() ? null : string;
+    }
+
+    /**
+     * Proper name and email of an identity, null where the mailmap keeps the one of the commit
+     */
+    private static class Mapping {
+        private String name;
+        private String email;
+
+        void update(String name, String email) {
+            if (name != null)
+                this.name = name;
+            if (email != null)
+                this.email = email;
+        }
+    }
+
+    /**
+     * Range of bytes of a raw commit, compared by content
+     */
+    private static class IdentKey {
+        private final byte[] bytes;
+        private final int start;
+        private final int end;
+        private final int hash;
+
+        IdentKey(byte[] bytes, int start, int end) {
+            this.bytes = bytes;
+            this.start = start;
+            this.end = end;
+            int hash = 1;
+            for (int i = start; i < end; i++)
+                hash = 31 * hash + bytes[i];
+            this.hash = hash;
+        }
+
+        /**
+         * Returns a key that holds a copy of the range, the raw commit it was taken from is not kept alive
+         *
+         * @return
+         */
+        IdentKey copy() {
+            byte[] copy = new byte[end - start];
+            System.arraycopy(bytes, start, copy, 0, copy.length);
+            return new IdentKey(copy, 0, copy.length);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            IdentKey identKey = (IdentKey) o;
+            if (hash != identKey.hash || end - start != identKey.end - identKey.start)
+                return false;
+            for (int i = 0; i < end - start; i++) {
+                if (bytes[start + i] != identKey.bytes[identKey.start + i])
+                    return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package edu.df.git;
+
+import edu.df.files.FileInfo;
+
+import java.util.HashMap;
+
+/**
+ * Statistics of a directory of the repository, a path scope, gathered by the same walk and diffs as the
+ * statistics of the whole repository.
+ * <p>
+ * A commit counts for the scope if it changes anything under it compared to each of its parents. Its line changes
+ * are the changes under the scope since the previous commit of the scope by date, so they do not depend on the
+ * other scopes analyzed with it.
+ */
+public class PathScope {
+    private final String path;
+    private final HashMap<String, Committer> committers;
+    private HashMap<String, FileInfo> filesInfo;
+    private long numberOfCommits, totalFilesChanged, totalLinesAdded, totalLinesDeleted;
+
+    /**
+     * PathScope constructor
+     *
+     * @param path directory relative to the root of the repository
+     */
+    PathScope(String path) {
+        this.path = path;
+        this.committers = new HashMap<>();
+        this.filesInfo = new HashMap<>();
+    }
+
+    /**
+     * Counts a commit of the scope
+     *
+     * @param author committer of the repository who made the commit
+     */
+    void addCommit(Committer author) {
+        numberOfCommits++;
+        Committer committer = committerOf(author);
+        committer.setNumberOfCommits(committer.getNumberOfCommits() + 1);
+    }
+
+    /**
+     * Adds the changes of a commit under the scope
+     *
+     * @param author   committer of the repository who made the commit
+     * @param diffStat
+     */
+    void addChanges(Committer author, DiffStat diffStat) {
+        totalFilesChanged += diffStat.getFilesChanged();
+        totalLinesAdded += diffStat.getLinesAdded();
+        totalLinesDeleted += diffStat.getLinesDeleted();
+
+        Committer committer = committerOf(author);
+        committer.setLinesAdded(committer.getLinesAdded() + diffStat.getLinesAdded());
+        committer.setLinesDeleted(committer.getLinesDeleted() + diffStat.getLinesDeleted());
+        committer.setFilesChanged(committer.getFilesChanged() + diffStat.getFilesChanged());
+    }
+
+    private Committer committerOf(Committer author) {
+        Committer committer = committers.get(author.getEmail());
+        if (committer == null) {
+            committer = new Committer(author.getName(), author.getEmail());
+            committers.put(author.getEmail(), committer);
+        }
+        return committer;
+    }
+
+    void setFilesInfo(HashMap<String, FileInfo> filesInfo) {
+        this.filesInfo = filesInfo;
+    }
+
+    /**
+     * Calculates the share of every committer of the scope's commits and changes
+     */
+    void calculatePercentages() {
+        for (Committer committer : committers.values())
+            committer.calculatePercentages(numberOfCommits, totalLinesAdded, totalLinesDeleted, totalFilesChanged);
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the committers of the scope keyed by email, with their commits and changes under the scope only.
+     * Their activity per day, week and month is not calculated
+     *
+     * @return
+     */
+    public HashMap<String, Committer> getCommitters() {
+        return committers;
+    }
+
+    public HashMap<String, FileInfo> getFilesInfo() {
+        return filesInfo;
+    }
+
+    public long getNumberOfFiles() {
+        long numberOfFiles = 0;
+        for (FileInfo fileInfo : filesInfo.values())
+            numberOfFiles += fileInfo.getNumberOfFiles();
+        return numberOfFiles;
+    }
+
+    public long getNumberOfLines() {
+        long numberOfLines = 0;
+        for (FileInfo fileInfo : filesInfo.values())
+            numberOfLines += fileInfo.getNumberOfLines();
+        return numberOfLines;
+    }
+
+    public long getNumberOfCommits() {
+        return numberOfCommits;
+    }
+
+    public long getTotalFilesChanged() {
+        return totalFilesChanged;
+    }
+
+    public long getTotalLinesAdded() {
+        return totalLinesAdded;
+    }
+
+    public long getTotalLinesDeleted() {
+        return totalLinesDeleted;
+    }
+}
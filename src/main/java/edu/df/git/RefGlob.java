@@ -0,0 +1,66 @@
+package edu.df.git;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A pattern over full ref names, such as refs/heads/release/* or refs/tags/**.
+ * <p>
+ * '*' matches any characters but '/', "**" matches any characters and '?' matches one character but '/'.
+ */
+class RefGlob {
+    private final Pattern pattern;
+
+    /**
+     * RefGlob constructor
+     *
+     * @param glob
+     */
+    RefGlob(String glob) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c != '*' && c != '?') {
+                literal.append(c);
+                continue;
+            }
+            if (literal.length() > 0) {
+                regex.append(Pattern.quote(literal.toString()));
+                literal.setLength(0);
+            }
+            if (c == '?') {
+                regex.append("[^/]");
+            } else if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                regex.append(".*");
+                i++;
+            } else {
+                regex.append("[^/]*");
+            }
+        }
+        if (literal.length() > 0)
+            regex.append(Pattern.quote(literal.toString()));
+        this.pattern = Pattern.compile(regex.toString());
+    }
+
+    boolean matches(String refName) {
+        return pattern.matcher(refName).matches();
+    }
+
+    /**
+     * Returns true if a ref matches any of the globs
+     *
+     * @param globs   null selects every ref
+     * @param refName
+     * @return
+     */
+    static boolean matchesAny(List<RefGlob> globs, String refName) {
+        if (globs == null)
+            return true;
+        for (RefGlob glob : globs) {
+            if (glob.matches(refName))
+                return true;
+        }
+        return false;
+    }
+}
@@ -1,23 +1,37 @@
 package edu.df.git;
 
 import edu.df.files.FileInfo;
+import edu.df.files.WorkingTreeScanner;
+import edu.df.metrics.AnalysisMetrics;
+import edu.df.metrics.PhaseMetrics;
+import edu.df.progress.ProgressReporter;
+import edu.df.progress.ProgressTask;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.diff.DiffEntry;
-import org.eclipse.jgit.diff.DiffFormatter;
-import org.eclipse.jgit.diff.Edit;
-import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
 import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.AnyObjectId;
 import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.CoreConfig;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevObject;
-import org.eclipse.jgit.revwalk.RevTag;
 import org.eclipse.jgit.revwalk.RevWalk;
-import org.eclipse.jgit.util.io.DisabledOutputStream;
+import org.eclipse.jgit.revwalk.filter.AndRevFilter;
+import org.eclipse.jgit.revwalk.filter.CommitTimeRevFilter;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.util.FS;
+import org.eclipse.jgit.util.RawParseUtils;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 
 public class Repository {
     /**
@@ -26,14 +40,35 @@ public class Repository {
     private final String gitRepositoryPath;
     private final String repositoryName;
     private final Git git;
+    private final CommitMessageReader messageReader;
 
     private HashMap<String, FileInfo> filesInfo;
     private HashMap<String, Branch> branches;
-    private HashMap<String, Commit> commits;
-    private TreeMap<Date, Long> commitsPerDay;
-    private TreeMap<String, Long> commitsPerWeek, commitsPerMonth;
+    private CommitStore commits;
+    private CommitTimeSeries commitTimeSeries;
     private HashMap<String, Tag> tags;
     private HashMap<String, Committer> committers;
+    private TagIndex tagIndex;
+    private int diffThreads;
+    private File diffCacheFile;
+    private File snapshotFile;
+    private String fileRevision;
+    private TreeFileScanner treeFileScanner;
+    private ObjectId head;
+    private LinkedHashMap<String, ObjectId> refTips;
+    private List<Commit> sortedByDateCommits;
+    private Date since, until;
+    private List<RefGlob> refGlobs;
+    private RevCommit windowBase;
+    private ScopeResolver scopeResolver;
+    private File aliasFile;
+    private IdentityResolver identityResolver;
+    private ArrayList<PathScope> pathScopes;
+    private AnalysisMetrics metrics;
+    private ProgressReporter progressReporter;
+    private ExecutorService executor;
+    private boolean complete;
+    private String snapshotDiscardReason;
 
 
     private long numberOfFiles, numberOfLines, numberOfBranches, numberOfTags, numberOfCommitters, numberOfAllCommits, totalFilesChanged, totalLinesAdded, totalLinesDeleted;
@@ -46,19 +81,19 @@ public class Repository {
      */
     public Repository(String gitRepositoryPath) throws IOException {
         this.gitRepositoryPath = gitRepositoryPath;
-        String gitFolder = gitRepositoryPath + "/.git";
-        this.git = Git.open(new File(gitFolder));
+        // opens both a working tree with a .git folder and a bare repository
+        this.git = Git.open(new File(gitRepositoryPath));
         this.repositoryName = new File(gitRepositoryPath).getName();
 
 
         this.filesInfo = new HashMap<>();
         this.branches = new HashMap<>();
-        this.commits = new HashMap<>();
-        this.commitsPerDay = new TreeMap<>();
-        this.commitsPerWeek = new TreeMap<>();
-        this.commitsPerMonth = new TreeMap<>();
+        this.messageReader = new CommitMessageReader(git.getRepository());
+        this.commits = new CommitStore(messageReader);
+        this.commitTimeSeries = new CommitTimeSeries();
         this.tags = new HashMap<>();
         this.committers = new HashMap<>();
+        this.pathScopes = new ArrayList<>();
 
         this.numberOfFiles = 0;
         this.numberOfFiles = 0;
@@ -69,44 +104,241 @@ public class Repository {
         this.totalFilesChanged = 0;
         this.totalLinesAdded = 0;
         this.totalLinesDeleted = 0;
+
+        this.diffThreads = Runtime.getRuntime().availableProcessors();
+        this.diffCacheFile = DiffStatCache.defaultFile();
+        this.progressReporter = new ProgressReporter();
     }
 
     /**
      * Analyzes a git repository.
+     * <p>
+     * If a snapshot of the previous run exists and no history was rewritten since, only new commits are analyzed
+     * and the rest of the state is restored from the snapshot.
      */
     public void analyze() {
+        metrics = new AnalysisMetrics(repositoryName);
+        complete = true;
+        snapshotDiscardReason = null;
+        Snapshot snapshot = null;
+        PhaseMetrics phase = metrics.startPhase("loadSnapshot");
+        try {
+            identityResolver = readIdentities();
+        } catch (IOException e) {
+            System.err.println("There was an error reading the mailmap, authors will not be mapped.");
+            e.printStackTrace();
+            identityResolver = new IdentityResolver(committers);
+            complete = false;
+        }
         try {
-            fileAnalysis();
+            head = git.getRepository().resolve(fileRevision == null ? Constants.HEAD : fileRevision);
+            refTips = collectRefTips();
+            if (snapshotFile != null && snapshotFile.isFile())
+                phase.addBytesRead(snapshotFile.length());
+            snapshot = loadSnapshot();
         } catch (IOException e) {
-            System.err.println("There was an error analyzing repository files.");
+            System.err.println("There was an error reading the snapshot of the previous run.");
             e.printStackTrace();
         }
-        System.out.println("Done fileAnalysis");
+        phase.stop();
+
+        phase = metrics.startPhase("fileAnalysis");
+        // the working tree can change without a commit, so only statistics scanned from a tree are reused
+        if (snapshot != null && !scansWorkingTree() && head != null && head.equals(snapshot.getFilesCommit())) {
+            filesInfo.putAll(snapshot.getFilesInfo());
+        } else {
+            try {
+                fileAnalysis(phase);
+            } catch (IOException e) {
+                System.err.println("There was an error analyzing repository files.");
+                e.printStackTrace();
+                complete = false;
+            }
+        }
+        phase.stop();
+
+        phase = metrics.startPhase("repositoryAnalysis");
+        ArrayList<Commit> newCommits = new ArrayList<>();
         try {
-            repositoryAnalysis();
+            newCommits = repositoryAnalysis(snapshot, phase);
         } catch (GitAPIException | IOException e) {
             System.err.println("There was an error analyzing repository branches.");
             e.printStackTrace();
+            complete = false;
         }
-        System.out.println("Done repositoryAnalysis");
+        phase.stop();
 
+        phase = metrics.startPhase("committersAnalysis");
         committersAnalysis();
-        System.out.println("Done committersAnalysis");
+        phase.stop();
 
+        phase = metrics.startPhase("calculateLineChanges");
         try {
-            calculateLineChanges();
+            calculateLineChanges(snapshot, newCommits, phase);
         } catch (IOException e) {
             System.err.println("There was an error calculating line changes.");
             e.printStackTrace();
+            complete = false;
         }
-        System.out.println("Done calculateLineChanges");
+        phase.stop();
 
+        phase = metrics.startPhase("calculateGenericStatistics");
         calculateGenericStatistics();
-        System.out.println("Done calculateGenericStatistics");
+        phase.stop();
+
+        if (complete && snapshotFile != null && !isPartial()) {
+            phase = metrics.startPhase("saveSnapshot");
+            try {
+                saveSnapshot();
+            } catch (IOException e) {
+                System.err.println("There was an error saving the snapshot.");
+                e.printStackTrace();
+            }
+            phase.stop();
+        }
+    }
 
+    /**
+     * Closes the repository, commit messages can not be read after it is closed
+     */
+    public void close() {
+        messageReader.release();
         git.close();
     }
 
+    /**
+     * Returns the commit of every ref selected by the ref globs, the same start points as git log --all
+     * when there are none
+     *
+     * @return ref name to commit id
+     * @throws IOException
+     */
+    private LinkedHashMap<String, ObjectId> collectRefTips() throws IOException {
+        org.eclipse.jgit.lib.Repository repository = git.getRepository();
+        LinkedHashMap<String, ObjectId> tips = new LinkedHashMap<>();
+        RevWalk walk = new RevWalk(repository);
+        try {
+            for (Ref ref : repository.getAllRefs().values()) {
+                if (ref.isSymbolic() || !RefGlob.matchesAny(refGlobs, ref.getName()))
+                    continue;
+                if (!ref.isPeeled())
+                    ref = repository.peel(ref);
+                ObjectId objectId = ref.getPeeledObjectId() != null ? ref.getPeeledObjectId() : ref.getObjectId();
+                try {
+                    tips.put(ref.getName(), walk.parseCommit(objectId).copy());
+                } catch (MissingObjectException | IncorrectObjectTypeException e) {
+                    // ref does not point to a commit
+                }
+            }
+        } finally {
+            walk.release();
+        }
+        return tips;
+    }
+
+    /**
+     * Creates the identity resolver of the run from the .mailmap of the repository and the alias file
+     *
+     * @return
+     * @throws IOException
+     */
+    private IdentityResolver readIdentities() throws IOException {
+        IdentityResolver resolver = new IdentityResolver(committers);
+        String mailmap = readMailmap();
+        if (mailmap != null)
+            resolver.addMailmap(mailmap);
+        if (aliasFile != null)
+            resolver.addMailmap(new String(Files.readAllBytes(aliasFile.toPath()), StandardCharsets.UTF_8));
+        return resolver;
+    }
+
+    /**
+     * Reads the .mailmap of the working tree, or the one of HEAD in a bare repository, as git does
+     *
+     * @return the content, or null if there is none
+     * @throws IOException
+     */
+    private String readMailmap() throws IOException {
+        org.eclipse.jgit.lib.Repository repository = git.getRepository();
+        if (!repository.isBare()) {
+            File mailmap = new File(repository.getWorkTree(), ".mailmap");
+            return mailmap.isFile() ? new String(Files.readAllBytes(mailmap.toPath()), StandardCharsets.UTF_8) : null;
+        }
+
+        ObjectId headCommit = repository.resolve(Constants.HEAD);
+        if (headCommit == null)
+            return null;
+        RevWalk walk = new RevWalk(repository);
+        try {
+            TreeWalk treeWalk = TreeWalk.forPath(repository, ".mailmap", walk.parseCommit(headCommit).getTree());
+            if (treeWalk == null)
+                return null;
+            return new String(repository.open(treeWalk.getObjectId(0)).getCachedBytes(), StandardCharsets.UTF_8);
+        } finally {
+            walk.release();
+        }
+    }
+
+    /**
+     * Reads the snapshot of the previous run and checks that it can be continued
+     * <p>
+     * Every ref of the snapshot must still exist and point to the same commit or a descendant of it,
+     * otherwise commits may have left the history and the whole repository has to be analyzed again.
+     * The mailmaps must be the same too, otherwise commits may belong to other committers now.
+     *
+     * @return the snapshot, or null if there is none or history was rewritten, in which case the reason is kept
+     * in snapshotDiscardReason
+     * @throws IOException
+     */
+    private Snapshot loadSnapshot() throws IOException {
+        if (snapshotFile == null || isPartial())
+            return null;
+        Snapshot snapshot = Snapshot.read(snapshotFile);
+        if (snapshot == null)
+            return null;
+        if (!snapshot.getIdentities().equals(identityResolver.getFingerprint())) {
+            snapshotDiscardReason = "the mailmap changed";
+            return null;
+        }
+
+        RevWalk walk = new RevWalk(git.getRepository());
+        try {
+            for (Map.Entry<String, ObjectId> oldTip : snapshot.getRefTips().entrySet()) {
+                ObjectId newTip = refTips.get(oldTip.getKey());
+                if (newTip == null) {
+                    snapshotDiscardReason = "ref " + oldTip.getKey() + " was deleted";
+                    return null;
+                }
+                if (newTip.equals(oldTip.getValue()))
+                    continue;
+                try {
+                    if (!walk.isMergedInto(walk.parseCommit(oldTip.getValue()), walk.parseCommit(newTip))) {
+                        snapshotDiscardReason = "ref " + oldTip.getKey() + " was rewritten";
+                        return null;
+                    }
+                } catch (MissingObjectException e) {
+                    snapshotDiscardReason = "the commit of ref " + oldTip.getKey() + " is gone";
+                    return null;
+                }
+            }
+        } finally {
+            walk.release();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Saves the analyzed state for the next run
+     *
+     * @throws IOException
+     */
+    private void saveSnapshot() throws IOException {
+        ArrayList<Commit> newestFirst = new ArrayList<>(sortedByDateCommits);
+        Collections.reverse(newestFirst);
+        new Snapshot(scansWorkingTree() ? null : head, identityResolver.getFingerprint(), filesInfo, refTips, new ArrayList<>(committers.values()), newestFirst,
+                totalFilesChanged, totalLinesAdded, totalLinesDeleted).write(snapshotFile);
+    }
+
     /**
      * Calculates percentages.
      */
@@ -121,8 +353,9 @@ public class Repository {
         numberOfTags = tags.size();
 
         /* Committers percentages */
+        CommitActivityMatrix.build(new ArrayList<>(committers.values()), commits);
         for (Committer committer : committers.values()) {
-            committer.calculatePercentages(numberOfAllCommits, commitsPerDay, commitsPerWeek, commitsPerMonth, totalLinesAdded, totalLinesDeleted, totalFilesChanged);
+            committer.calculatePercentages(numberOfAllCommits, totalLinesAdded, totalLinesDeleted, totalFilesChanged);
         }
 
         /* Branches percentages */
@@ -133,129 +366,312 @@ public class Repository {
         for (Branch branch : branches.values()) {
             branch.calculatePercentages(allCommitsInAllBranches);
         }
+
+        for (PathScope pathScope : pathScopes)
+            pathScope.calculatePercentages();
     }
 
     /**
      * Saves information for each file type found in the repository in HashMap<String, FileInfo> filesInfo
      * Key is the file extension, files with no extension are classified as "other"
      * <p>
-     * Uses a stack to store all files - including folders - found and pop's them until the stack is empty
+     * The working tree is scanned in parallel, one fork-join task per directory.
+     * Bare repositories, or any repository with a file revision set, are scanned from the object database instead.
+     * With path scopes the subtree of every scope is scanned from the object database, and the repository gets
+     * the files of the top level scopes.
      *
+     * @param phase metrics of the phase
      * @throws IOException
      */
-    private void fileAnalysis() throws IOException {
-        /* Analyze files */
-        File gitRepositoryDirectory = new File(gitRepositoryPath);
-
-        Stack<File> stack = new Stack<>();
-        stack.push(gitRepositoryDirectory);
-
-        while (!stack.isEmpty()) {
-            File child = stack.pop();
-            if (child.isDirectory() && !child.getName().equals(".git")) {
-                // file is a directory -ignores .git directory-
-                //noinspection ConstantConditions
-                for (File f : child.listFiles())
-                    stack.push(f);
-            } else if (child.isFile()) {
-                // file is a file
-                if (child.getName().contains(".")) {
-                    // file with extension
-                    String fileExtension = child.getName().substring(child.getName().lastIndexOf("."));
-                    addFile(fileExtension, child);
-                } else {
-                    // file with no extension
-                    addFile("other", child);
-                }
+    private void fileAnalysis(PhaseMetrics phase) throws IOException {
+        if (scansWorkingTree()) {
+            WorkingTreeScanner scanner = new WorkingTreeScanner(Runtime.getRuntime().availableProcessors(), excludeFiles());
+            scanner.setMetrics(phase);
+            filesInfo.putAll(scanner.scan(Paths.get(gitRepositoryPath)));
+            return;
+        }
+
+        ObjectId commit = head != null ? head : git.getRepository().resolve(fileRevision == null ? Constants.HEAD : fileRevision);
+        if (commit == null) {
+            if (fileRevision != null)
+                throw new IOException("Could not resolve revision " + fileRevision);
+            return;
+        }
+        if (treeFileScanner == null)
+            treeFileScanner = new TreeFileScanner(git.getRepository());
+        treeFileScanner.setMetrics(phase);
+        if (scopeResolver == null) {
+            filesInfo.putAll(treeFileScanner.scan(commit));
+            return;
+        }
+
+        ObjectId[] subtrees;
+        ObjectReader reader = git.getRepository().newObjectReader();
+        try {
+            subtrees = scopeResolver.subtrees(reader, new RevWalk(reader).parseCommit(commit).getTree());
+        } finally {
+            reader.release();
+        }
+        for (int scope = 0; scope < subtrees.length; scope++) {
+            if (subtrees[scope] == null)
+                continue;
+            HashMap<String, FileInfo> scopeFilesInfo = treeFileScanner.scan(subtrees[scope]);
+            pathScopes.get(scope).setFilesInfo(scopeFilesInfo);
+            if (scopeResolver.isTopLevel(scope))
+                addFilesInfo(scopeFilesInfo);
+        }
+    }
+
+    /**
+     * Returns true if the files are counted in the working tree rather than in the tree of a commit
+     *
+     * @return
+     */
+    private boolean scansWorkingTree() {
+        return fileRevision == null && scopeResolver == null && !git.getRepository().isBare();
+    }
+
+    /**
+     * Adds file statistics to the statistics of the repository
+     *
+     * @param added
+     */
+    private void addFilesInfo(HashMap<String, FileInfo> added) {
+        for (FileInfo addedInfo : added.values()) {
+            FileInfo fileInfo = filesInfo.get(addedInfo.getExtension());
+            if (fileInfo == null) {
+                fileInfo = new FileInfo(addedInfo.getExtension());
+                fileInfo.setNumberOfFiles(0);
+                filesInfo.put(addedInfo.getExtension(), fileInfo);
             }
+            fileInfo.setNumberOfFiles(fileInfo.getNumberOfFiles() + addedInfo.getNumberOfFiles());
+            fileInfo.setNumberOfLines(fileInfo.getNumberOfLines() + addedInfo.getNumberOfLines());
+            fileInfo.setNumberOfSkippedFiles(fileInfo.getNumberOfSkippedFiles() + addedInfo.getNumberOfSkippedFiles());
+            fileInfo.setNumberOfSkippedBytes(fileInfo.getNumberOfSkippedBytes() + addedInfo.getNumberOfSkippedBytes());
         }
     }
 
     /**
-     * Adds a file extension in HashMap<String, FileInfo> filesInfo if it doesn't exist
-     * <p>
-     * Increases number of files for that type of extension
-     * Counts file's lines and increases number of lines for that type of extension
+     * Returns the ignore files that apply to the whole working tree, core.excludesFile first and
+     * .git/info/exclude second, as the latter takes precedence
      *
-     * @param fileExtension is the extension of the file
+     * @return
      */
-    private void addFile(String fileExtension, File file) throws IOException {
-        if (filesInfo.containsKey(fileExtension))
-            filesInfo.get(fileExtension).setNumberOfFiles(filesInfo.get(fileExtension).getNumberOfFiles() + 1);
-        else
-            filesInfo.put(fileExtension, new FileInfo(fileExtension));
-        filesInfo.get(fileExtension).setNumberOfLines(filesInfo.get(fileExtension).getNumberOfLines() + countFileLines(file));
+    private List<Path> excludeFiles() {
+        List<Path> excludeFiles = new ArrayList<>();
+        FS fs = git.getRepository().getFS();
+        String excludesFile = git.getRepository().getConfig().get(CoreConfig.KEY).getExcludesFile();
+        if (excludesFile != null) {
+            if (excludesFile.startsWith("~/"))
+                excludeFiles.add(fs.resolve(fs.userHome(), excludesFile.substring(2)).toPath());
+            else
+                excludeFiles.add(fs.resolve(null, excludesFile).toPath());
+        }
+        excludeFiles.add(new File(git.getRepository().getDirectory(), "info/exclude").toPath());
+        return excludeFiles;
     }
 
     /**
      * Analyses a repository and finds Branches, Commits, Committers, Tags
+     * <p>
+     * Branch membership of all commits is computed up front with a single graph walk.
+     * With a snapshot only commits that are not reachable from the snapshot's refs are read from the repository,
+     * the rest are restored from the snapshot. Only the refs selected by the ref globs are walked, and the time
+     * window is applied as a filter of all three walks, commits, branch membership and tags, so commits before
+     * it are not read at all.
+     * With path scopes the walk only returns the commits that change something under them.
      *
+     * @param snapshot of the previous run, may be null
+     * @param phase    metrics of the phase
+     * @return commits that were not in the snapshot
      * @throws GitAPIException
      * @throws IOException
      */
-    private void repositoryAnalysis() throws GitAPIException, IOException {
-        List<Ref> refBranches = git.branchList().call();
-
-        Iterable<RevCommit> commitsIterator = git.log().all().call();
-        for (RevCommit commit : commitsIterator) {
-            addCommit(commit);
-            for (Ref branch : refBranches) {
-                String branchName = branch.getName();
-                addBranch(branchName);
-                if (commitInBranch(commit, branchName))
-                    addCommitToBranch(commit, branchName);
+    private ArrayList<Commit> repositoryAnalysis(Snapshot snapshot, PhaseMetrics phase) throws GitAPIException, IOException {
+        List<Ref> refBranches = new ArrayList<>();
+        for (Ref branch : git.branchList().call()) {
+            if (RefGlob.matchesAny(refGlobs, branch.getName()))
+                refBranches.add(branch);
+        }
+        for (Ref branch : refBranches)
+            addBranch(branch.getName());
+
+        BranchMembership branchMembership = new BranchMembership(git.getRepository(), refBranches);
+        branchMembership.setWindow(since, until);
+        ProgressTask progress = progressReporter.beginTask("Computing branch membership", "commits", -1);
+        branchMembership.setProgress(progress);
+        branchMembership.compute();
+        progress.end();
+        phase.addObjectsParsed(branchMembership.getNumberOfCommits());
+
+        if (refTips == null)
+            refTips = collectRefTips();
+        tagIndex = new TagIndex(git.getRepository());
+        tagIndex.setWindow(since, until);
+        if (refGlobs != null)
+            tagIndex.setStarts(refTips.values());
+        tagIndex.compute();
+        phase.addObjectsParsed(tagIndex.getNumberOfCommits());
+        tags.putAll(tagIndex.getTags());
+
+        if (snapshot != null)
+            restoreSnapshot(snapshot);
+
+        ArrayList<Commit> newCommits = new ArrayList<>();
+        progress = progressReporter.beginTask("Reading commits", "commits", -1);
+        RevWalk walk = new RevWalk(git.getRepository());
+        try {
+            for (ObjectId tip : refTips.values())
+                walk.markStart(walk.parseCommit(tip));
+            if (snapshot != null) {
+                for (ObjectId oldTip : snapshot.getRefTips().values())
+                    walk.markUninteresting(walk.parseCommit(oldTip));
             }
+            RevFilter timeFilter = timeFilter();
+            if (timeFilter != null)
+                walk.setRevFilter(timeFilter);
+            if (scopeResolver != null)
+                walk.setTreeFilter(scopeResolver.commitFilter());
+
+            windowBase = null;
+            for (RevCommit commit : walk) {
+                newCommits.add(addCommit(commit));
+                if (since != null)
+                    updateWindowBase(commit);
+                progress.update(1);
+            }
+        } finally {
+            walk.release();
+        }
+        progress.end();
+        phase.addObjectsParsed(newCommits.size());
+
+        ArrayList<Commit> allCommits = newCommits;
+        if (snapshot != null)
+            allCommits = mergeNewestFirst(newCommits, snapshot.getCommits());
+
+        for (Commit commit : allCommits) {
+            BitSet commitBranches = branchMembership.getBranches(commit);
+            if (commitBranches == null)
+                continue;
+            for (int i = commitBranches.nextSetBit(0); i >= 0; i = commitBranches.nextSetBit(i + 1))
+                addCommitToBranch(commit, refBranches.get(i).getName());
         }
+        if (isPartial())
+            branches.values().removeIf(branch -> branch.getCommits().isEmpty());
+
+        for (Iterator<Tag> iterator = tags.values().iterator(); iterator.hasNext(); ) {
+            Tag tag = iterator.next();
+            int row = commits.indexOf(tagIndex.getTarget(tag.getTag()));
+            tag.setCommit(row < 0 ? null : commits.get(row));
+            // with a selection only the tags of the selected commits are reported
+            if (row < 0 && (isPartial() || refGlobs != null))
+                iterator.remove();
+        }
+
+        return newCommits;
     }
 
     /**
-     * Adds given commit to given branch
+     * Returns the filter of the time window, or null if there is none.
+     * <p>
+     * The lower bound stops the walk at the first older commit, so commits before the window are never read.
      *
-     * @param commit
-     * @param branchName
+     * @return
      */
-    private void addCommitToBranch(RevCommit commit, String branchName) {
-        if (!branches.get(branchName).getCommits().contains(commit.getName()))
-            branches.get(branchName).getCommits().add(commits.get(commit.getName()));
+    private RevFilter timeFilter() {
+        if (since != null && until != null)
+            return AndRevFilter.create(CommitTimeRevFilter.after(since), CommitTimeRevFilter.before(until));
+        if (since != null)
+            return CommitTimeRevFilter.after(since);
+        if (until != null)
+            return CommitTimeRevFilter.before(until);
+        return null;
+    }
 
-        /* Check branch author date and change it, if needed */
-        if (branches.get(branchName).getAuthorDate() == null
-                || branches.get(branchName).getAuthorDate().after(commit.getAuthorIdent().getWhen()))
-            branches.get(branchName).setAuthorDate(commit.getAuthorIdent().getWhen());
+    private boolean hasTimeWindow() {
+        return since != null || until != null;
+    }
 
-        /* Check branch last commit date and change it, if needed */
-        if (branches.get(branchName).getLastCommitDate() == null
-                || branches.get(branchName).getLastCommitDate().before(new Date(commit.getCommitTime() * 1000L)))
-            branches.get(branchName).setLastCommitDate(new Date(commit.getCommitTime() * 1000L));
+    /**
+     * Returns true if only part of the history or of the tree is analyzed, such an analysis is not saved as a snapshot
+     *
+     * @return
+     */
+    private boolean isPartial() {
+        return hasTimeWindow() || scopeResolver != null;
     }
 
     /**
-     * Checks if given commit is in given branch
+     * Keeps the newest parent from before the window, the first commit of the window is diffed against it.
+     * Parents were parsed by the walk when they were queued, so their commit time is known
      *
-     * @param commit
-     * @param branchName
+     * @param commit in the window
+     */
+    private void updateWindowBase(RevCommit commit) {
+        long sinceSeconds = since.getTime() / 1000L;
+        for (RevCommit parent : commit.getParents()) {
+            if (parent.getCommitTime() < sinceSeconds && (windowBase == null || parent.getCommitTime() > windowBase.getCommitTime()))
+                windowBase = parent;
+        }
+    }
+
+    /**
+     * Merges two lists of commits that are ordered newest first, keeping that order
+     *
+     * @param first
+     * @param second
      * @return
-     * @throws IOException
      */
-    private boolean commitInBranch(RevCommit commit, String branchName) throws IOException {
-        org.eclipse.jgit.lib.Repository repository = git.getRepository();
-        RevWalk walk = new RevWalk(repository);
-        RevCommit targetCommit = walk.parseCommit(repository.resolve(
-                commit.getName()));
-
-        for (Map.Entry<String, Ref> e : repository.getAllRefs().entrySet()) {
-            if (e.getKey().startsWith(Constants.R_HEADS)) {
-                if (walk.isMergedInto(targetCommit, walk.parseCommit(
-                        e.getValue().getObjectId()))) {
-                    String foundInBranch = e.getValue().getName();
-                    if (branchName.equals(foundInBranch)) {
-                        return true;
-                    }
-                }
-            }
+    private ArrayList<Commit> mergeNewestFirst(List<Commit> first, List<Commit> second) {
+        ArrayList<Commit> merged = new ArrayList<>(first.size() + second.size());
+        int i = 0, j = 0;
+        while (i < first.size() && j < second.size()) {
+            if (second.get(j).getCommitTime() > first.get(i).getCommitTime())
+                merged.add(second.get(j++));
+            else
+                merged.add(first.get(i++));
         }
+        merged.addAll(first.subList(i, first.size()));
+        merged.addAll(second.subList(j, second.size()));
+        return merged;
+    }
 
-        return false;
+    /**
+     * Adds the committers and commits of a snapshot, commits get their tag from the current tag index
+     *
+     * @param snapshot
+     */
+    private void restoreSnapshot(Snapshot snapshot) {
+        for (Committer committer : snapshot.getCommitters())
+            committers.put(committer.getEmail(), committer);
+
+        for (Commit commit : snapshot.getCommits())
+            putCommit(commit, commit.getCommitter(), commit.getCommitTime(), commit.getAuthorTime(), tagIndex.getTag(commit));
+
+        totalFilesChanged = snapshot.getTotalFilesChanged();
+        totalLinesAdded = snapshot.getTotalLinesAdded();
+        totalLinesDeleted = snapshot.getTotalLinesDeleted();
+    }
+
+    /**
+     * Adds given commit to given branch
+     *
+     * @param commit
+     * @param branchName
+     */
+    private void addCommitToBranch(Commit commit, String branchName) {
+        Branch branch = branches.get(branchName);
+        if (!branch.addCommit(commits.indexOf(commit)))
+            return;
+
+        /* Check branch author date and change it, if needed */
+        if (branch.getAuthorDate() == null || branch.getAuthorDate().getTime() > commit.getAuthorTime() * 1000L)
+            branch.setAuthorDate(commit.getAuthorDate());
+
+        /* Check branch last commit date and change it, if needed */
+        if (branch.getLastCommitDate() == null || branch.getLastCommitDate().getTime() < commit.getCommitTime() * 1000L)
+            branch.setLastCommitDate(commit.getDate());
     }
 
     /**
@@ -265,252 +681,423 @@ public class Repository {
      */
     private void addBranch(String branchName) {
         if (!branches.containsKey(branchName))
-            branches.put(branchName, new Branch(branchName));
+            branches.put(branchName, new Branch(branchName, commits));
     }
 
 
     /**
-     * Adds a commit in HashMap<String, Commit> commits if it doesn't exist
+     * Adds a commit in CommitStore commits if it doesn't exist
+     * <p>
+     * The author line of the raw commit is parsed once: its name and email are resolved through the identity
+     * cache and only the author time is parsed for every commit.
      *
      * @param commit to be added
-     * @throws MissingObjectException
-     * @throws GitAPIException
+     * @return the added commit, or the one already there
+     * @throws IOException if the commit has no author
      */
-    private void addCommit(RevCommit commit) throws IOException {
-        String commitName = commit.getName();
+    private Commit addCommit(RevCommit commit) throws IOException {
+        int row = commits.indexOf(commit);
+        if (row >= 0)
+            return commits.get(row);
+
+        // check if the commit has a tag
+        Tag tag = getTag(commit);
+
+        byte[] raw = commit.getRawBuffer();
+        int identStart = RawParseUtils.author(raw, 0);
+        if (identStart < 0)
+            throw new IOException("Commit " + commit.name() + " has no author");
+        int identEnd = RawParseUtils.nextLF(raw, identStart, '>');
+        Committer committer = identityResolver.resolve(raw, identStart, identEnd);
+
+        int authorTime = RawParseUtils.parseBase10(raw, identEnd, null);
+        return putCommit(commit, committer, commit.getCommitTime(), authorTime, tag);
+    }
 
-        if (!commits.containsKey(commitName)) {
-            // check if the commit has a tag
-            Tag tag = getTag(commit);
+    /**
+     * Puts a commit in CommitStore commits and updates the date statistics
+     *
+     * @param id
+     * @param committer
+     * @param commitTime in seconds
+     * @param authorTime in seconds
+     * @param tag
+     * @return the commit
+     */
+    private Commit putCommit(AnyObjectId id, Committer committer, int commitTime, int authorTime, Tag tag) {
+        int size = commits.size();
+        int row = commits.add(id, committer, commitTime, authorTime, tag);
+        if (commits.size() > size)
+            commitTimeSeries.add(commitTime * 1000L);
+        return commits.get(row);
+    }
 
-            addCommitter(commit.getAuthorIdent().getName(), commit.getAuthorIdent().getEmailAddress());
+    /**
+     * Generates statistics for each committer.
+     */
+    private void committersAnalysis() {
+        for (int row = 0; row < commits.size(); row++) {
+            Committer committer = commits.getCommitter(row);
+            committer.setNumberOfCommits(committer.getNumberOfCommits() + 1);
+        }
+    }
 
-            Committer committer = committers.get(commit.getAuthorIdent().getEmailAddress());
+    /**
+     * Returns tag for a commit, if it exists
+     * <p>
+     * The tag is read from the tag index built by repositoryAnalysis
+     *
+     * @param commit
+     * @return
+     */
+    private Tag getTag(RevCommit commit) {
+        return tagIndex.getTag(commit);
+    }
 
-            commits.put(commitName, new Commit(commit.getName(), committer, commit.getCommitTime(), commit.getFullMessage(), tag));
 
-            if (tag != null)
-                tag.setCommit(commits.get(commitName));
+    /**
+     * Calculates file changes and lines additions and deletions
+     * <p>
+     * Commits are sorted by date and each one is diffed against the previous one.
+     * When all new commits come after the commits of the snapshot, only the new pairs are diffed
+     * and added to the restored totals, otherwise everything is calculated again.
+     * With a time window the first commit of the window is diffed against the newest commit before it.
+     * With path scopes the commits are diffed in the scopes they change, see addScopeChanges().
+     *
+     * @param snapshot   of the previous run, may be null
+     * @param newCommits commits that were not in the snapshot
+     * @param phase      metrics of the phase
+     * @throws IOException
+     */
+    private void calculateLineChanges(Snapshot snapshot, ArrayList<Commit> newCommits, PhaseMetrics phase) throws IOException {
+        if (snapshot != null)
+            newCommits.sort(Comparator.comparingInt(Commit::getCommitTime));
+
+        if (snapshot != null && canAppendLineChanges(snapshot, newCommits)) {
+            ArrayList<Commit> sortedCommits = new ArrayList<>(snapshot.getCommits().size() + newCommits.size());
+            sortedCommits.addAll(snapshot.getCommits());
+            Collections.reverse(sortedCommits);
 
-            updateCommitsStatistics(commitName);
-            updateCommitterDailyCommits(committer, commitName);
+            Commit base = sortedCommits.isEmpty() ? null : sortedCommits.get(sortedCommits.size() - 1);
+            sortedCommits.addAll(newCommits);
+            sortedByDateCommits = sortedCommits;
 
+            addLineChanges(newCommits, base, phase);
+            return;
+        }
+
+        if (snapshot != null) {
+            for (Committer committer : committers.values()) {
+                committer.setLinesAdded(0);
+                committer.setLinesDeleted(0);
+                committer.setFilesChanged(0);
+            }
+            totalFilesChanged = 0;
+            totalLinesAdded = 0;
+            totalLinesDeleted = 0;
         }
+
+        sortedByDateCommits = commits.sortedByCommitTime();
+        addLineChanges(sortedByDateCommits, windowBase, phase);
     }
 
     /**
-     * Calculate commit statistics by date
+     * Checks if new commits can be diffed on top of the snapshot, that is they are all newer than its last commit
      *
-     * @param commitName
+     * @param snapshot
+     * @param sortedNewCommits
+     * @return
      */
-    private void updateCommitsStatistics(String commitName) {
-        Date commitDateWithoutTime = calculateDateWithoutTime(commits.get(commitName).getDate().getTime());
-        if (!this.commitsPerDay.containsKey(commitDateWithoutTime)) {
-            this.commitsPerDay.put(commitDateWithoutTime, 1L);
-        } else {
-            this.commitsPerDay.put(commitDateWithoutTime, this.commitsPerDay.get(commitDateWithoutTime) + 1);
+    private boolean canAppendLineChanges(Snapshot snapshot, ArrayList<Commit> sortedNewCommits) {
+        return sortedNewCommits.isEmpty() || snapshot.getCommits().isEmpty()
+                || sortedNewCommits.get(0).getCommitTime() > snapshot.getCommits().get(0).getCommitTime();
+    }
+
+    /**
+     * Diffs each commit of the list against the previous one on the diff worker pool and adds the changes
+     * to the committers and totals, tree pairs that are already in the diff cache are not diffed again
+     * <p>
+     * With path scopes every commit is diffed in the scopes it changes instead, see addScopeChanges()
+     *
+     * @param sortedByDateCommits
+     * @param base                commit the first commit of the list is diffed against, null if the list starts
+     *                            with the first commit of the repository, whose author is credited with its lines
+     * @param phase               metrics of the phase
+     * @throws IOException
+     */
+    private void addLineChanges(List<Commit> sortedByDateCommits, AnyObjectId base, PhaseMetrics phase) throws IOException {
+        List<AnyObjectId> commitIds = new ArrayList<>(sortedByDateCommits.size() + 1);
+        if (base != null)
+            commitIds.add(base);
+        commitIds.addAll(sortedByDateCommits);
+        // with scopes a single commit still counts for the scopes it has
+        if (commitIds.size() < 2 && (scopeResolver == null || sortedByDateCommits.isEmpty()))
+            return;
+        int offset = base == null ? 0 : 1;
+
+        DiffStatCache diffCache = null;
+        if (diffCacheFile != null) {
+            try {
+                diffCache = DiffStatCache.open(diffCacheFile);
+            } catch (IOException e) {
+                System.err.println("Could not open the diff cache, line changes will be calculated without it.");
+                e.printStackTrace();
+            }
         }
 
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(commitDateWithoutTime);
-        int commitWeek = cal.get(Calendar.WEEK_OF_MONTH);
-        int commitMonth = cal.get(Calendar.MONTH);
-        int commitYear = cal.get(Calendar.YEAR);
+        DiffEngine diffEngine = new DiffEngine(git.getRepository(), diffThreads, diffCache);
+        diffEngine.setExecutor(executor);
+        diffEngine.setMetrics(phase);
+        ProgressTask progress = progressReporter.beginTask("Calculating line changes", "commits",
+                scopeResolver == null ? commitIds.size() - 1 : sortedByDateCommits.size());
+        diffEngine.setProgress(progress);
+        DiffStat[] diffStats;
+        try {
+            if (scopeResolver == null)
+                diffStats = diffEngine.diff(commitIds);
+            else
+                diffStats = diffEngine.diffScopes(scopeResolver, base, sortedByDateCommits);
+            progress.end();
 
-        if (!commitsPerWeek.containsKey(commitWeek + "_" + commitMonth + "_" + commitYear)) {
-            commitsPerWeek.put(commitWeek + "_" + commitMonth + "_" + commitYear, this.commitsPerDay.get(commitDateWithoutTime));
-        } else {
-            commitsPerWeek.put(commitWeek + "_" + commitMonth + "_" + commitYear, commitsPerWeek.get(commitWeek + "_" + commitMonth + "_" + commitYear) + 1);
+            if (diffCache != null) {
+                try {
+                    diffCache.flush();
+                } catch (IOException e) {
+                    System.err.println("Could not save the diff cache.");
+                    e.printStackTrace();
+                }
+            }
+        } finally {
+            if (diffCache != null)
+                closeDiffCache(diffCache);
         }
 
-        if (!commitsPerMonth.containsKey(commitMonth + "_" + commitYear)) {
-            commitsPerMonth.put(commitMonth + "_" + commitYear, this.commitsPerDay.get(commitDateWithoutTime));
-        } else {
-            commitsPerMonth.put(commitMonth + "_" + commitYear, commitsPerMonth.get(commitMonth + "_" + commitYear) + 1);
+        if (scopeResolver != null) {
+            addScopeChanges(sortedByDateCommits, (ScopedDiffStat[]) diffStats);
+            return;
+        }
+
+        for (int i = 1; i < commitIds.size(); i++) {
+            DiffStat diffStat = diffStats[i];
+
+            if (i == 1 && base == null) {
+                Committer firstCommitter = sortedByDateCommits.get(0).getCommitter();
+                firstCommitter.setLinesAdded(firstCommitter.getLinesAdded() + diffStat.getLinesBefore());
+            }
+
+            addChanges(sortedByDateCommits.get(i - offset).getCommitter(), diffStat);
         }
     }
 
     /**
-     * Updates a committer's daily commits
+     * Releases the diff cache, the cache is unmapped when no other analysis uses it
      *
-     * @param committer
-     * @param commitName
+     * @param diffCache
      */
-    private void updateCommitterDailyCommits(Committer committer, String commitName) {
-        Commit commit = commits.get(commitName);
-        TreeMap<Date, Long> dailyCommits = committer.getCommitsPerDay();
-
-        Date commitDateWithoutTime = calculateDateWithoutTime(commit.getDate().getTime());
-
-        if (!dailyCommits.containsKey(commitDateWithoutTime)) {
-            // Daily Commits of this author does not contain that date
-            dailyCommits.put(commitDateWithoutTime, 1L);
-        } else {
-            // Daily Commits contain that date
-            dailyCommits.put(commitDateWithoutTime, dailyCommits.get(commitDateWithoutTime) + 1);
+    private void closeDiffCache(DiffStatCache diffCache) {
+        try {
+            diffCache.close();
+        } catch (IOException e) {
+            System.err.println("Could not save the diff cache.");
+            e.printStackTrace();
         }
     }
 
     /**
-     * Sets given date's time to 00:00:00
+     * Adds the changes of a commit to its committer and to the totals
      *
-     * @param time
-     * @return
+     * @param committer
+     * @param diffStat
      */
-    private Date calculateDateWithoutTime(long time) {
-        Date date = new Date(time);
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(date);
-        cal.set(Calendar.HOUR_OF_DAY, 0);
-        cal.set(Calendar.MINUTE, 0);
-        cal.set(Calendar.SECOND, 0);
-        cal.set(Calendar.MILLISECOND, 0);
-        return cal.getTime();
+    private void addChanges(Committer committer, DiffStat diffStat) {
+        totalFilesChanged += diffStat.getFilesChanged();
+        totalLinesAdded += diffStat.getLinesAdded();
+        totalLinesDeleted += diffStat.getLinesDeleted();
+
+        committer.setLinesAdded(committer.getLinesAdded() + diffStat.getLinesAdded());
+        committer.setLinesDeleted(committer.getLinesDeleted() + diffStat.getLinesDeleted());
+        committer.setFilesChanged(committer.getFilesChanged() + diffStat.getFilesChanged());
     }
 
     /**
-     * Generates statistics for each committer.
+     * Adds the commits and changes of every scope, a commit counts for the scopes it changes compared to its parents.
+     * The repository gets the changes of the top level scopes
+     *
+     * @param sortedByDateCommits
+     * @param diffStats           stat of each commit
      */
-    private void committersAnalysis() {
-        for (Commit commit : commits.values()) {
-            commit.getCommitter().setNumberOfCommits(commit.getCommitter().getNumberOfCommits() + 1);
+    private void addScopeChanges(List<Commit> sortedByDateCommits, ScopedDiffStat[] diffStats) {
+        for (int i = 0; i < diffStats.length; i++) {
+            ScopedDiffStat diffStat = diffStats[i];
+            Committer committer = sortedByDateCommits.get(i).getCommitter();
+            addChanges(committer, diffStat);
+
+            for (int scope : diffStat.getTouchedScopes())
+                pathScopes.get(scope).addCommit(committer);
+            int[] changedScopes = diffStat.getChangedScopes();
+            for (int j = 0; j < changedScopes.length; j++)
+                pathScopes.get(changedScopes[j]).addChanges(committer, diffStat.getScopeStats()[j]);
         }
     }
 
     /**
-     * Adds a committer in HashMap<String, Committer> committers if he doesn't exists
+     * Sets the number of threads used to calculate line changes
      *
-     * @param name         of the committer
-     * @param emailAddress of the committer
+     * @param diffThreads
      */
-    private void addCommitter(String name, String emailAddress) {
-        if (!committers.containsKey(emailAddress))
-            committers.put(emailAddress, new Committer(name, emailAddress));
+    public void setDiffThreads(int diffThreads) {
+        this.diffThreads = diffThreads;
     }
 
     /**
-     * Returns tag for a commit, if it exists
+     * Sets the executor line changes are calculated on, diffThreads tasks are submitted to it.
+     * Null, the default, uses a pool of diffThreads threads for each analysis
      *
-     * @param commit
-     * @return
+     * @param executor
      */
-    private Tag getTag(RevCommit commit) throws IOException {
-        Tag tag = null;
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
 
-        RevWalk walk = new RevWalk(git.getRepository());
+    /**
+     * Sets the time window of the analysis, only commits made in it are read, diffed and counted.
+     * Snapshots are neither read nor saved for a windowed analysis
+     *
+     * @param since first commit time included, null for no lower bound
+     * @param until last commit time included, null for no upper bound
+     */
+    public void setTimeWindow(Date since, Date until) {
+        this.since = since;
+        this.until = until;
+    }
 
-        for (Ref ref : git.getRepository().getTags().values()) {
-            RevObject obj = walk.parseAny(ref.getObjectId());
-            RevCommit tagCommit;
-            if (obj instanceof RevCommit)
-                tagCommit = (RevCommit) obj;
-            else if (obj instanceof RevTag) {
-                try {
-                    tagCommit = walk.parseCommit(((RevTag) obj).getObject());
-                } catch (Exception e) {
-                    return tag;
-                }
-            } else
-                continue;
+    /**
+     * Selects the refs whose history is analyzed, by full name such as refs/heads/release/*.
+     * Only matching branches are reported and only matching refs are walked, null, the default, selects all
+     *
+     * @param refGlobs
+     */
+    public void setRefGlobs(List<String> refGlobs) {
+        if (refGlobs == null) {
+            this.refGlobs = null;
+            return;
+        }
+        this.refGlobs = new ArrayList<>();
+        for (String refGlob : refGlobs)
+            this.refGlobs.add(new RefGlob(refGlob));
+    }
 
-            if (commit.equals(tagCommit)
-                    || walk.isMergedInto(commit, tagCommit)) {
-                tag = new Tag(ref.getName());
-                tags.put(ref.getName(), tag);
-            }
+    /**
+     * Limits the analysis to directories of the repository. Only commits that change something under them are
+     * read, only changes under them are counted and only their files are scanned, from the file revision or HEAD.
+     * Every directory also gets statistics of its own, gathered by the same walk and diffs, see getPathScopes().
+     * Snapshots are neither read nor saved for a scoped analysis
+     *
+     * @param paths directories relative to the root, such as services/billing, null or empty for the whole repository
+     */
+    public void setPathScopes(List<String> paths) {
+        pathScopes = new ArrayList<>();
+        if (paths == null || paths.isEmpty()) {
+            scopeResolver = null;
+            return;
         }
+        scopeResolver = new ScopeResolver(paths);
+        for (int scope = 0; scope < scopeResolver.size(); scope++)
+            pathScopes.add(new PathScope(scopeResolver.getPath(scope)));
+    }
 
-        return tag;
+    /**
+     * Returns the statistics of every path scope, in the order they were set
+     *
+     * @return
+     */
+    public List<PathScope> getPathScopes() {
+        return pathScopes;
     }
 
+    /**
+     * Sets a file of author aliases in the format of .mailmap, its entries take precedence over the .mailmap
+     * of the repository. Null, the default, only uses the .mailmap
+     *
+     * @param aliasFile
+     */
+    public void setAliasFile(File aliasFile) {
+        this.aliasFile = aliasFile;
+    }
 
     /**
-     * Calculates file changes and lines additions and deletions
+     * Sets the file of the persistent diff cache, null disables the cache
      *
-     * @throws IOException
+     * @param diffCacheFile
      */
-    private void calculateLineChanges() throws IOException {
-        ArrayList<Commit> sortedByDateCommits = new ArrayList(commits.values());
-        sortedByDateCommits.sort((Comparator.comparing(Commit::getDate)));
+    public void setDiffCacheFile(File diffCacheFile) {
+        this.diffCacheFile = diffCacheFile;
+    }
 
-        org.eclipse.jgit.lib.Repository repository = git.getRepository();
-        RevWalk rw = new RevWalk(repository);
-
-        Commit commit1 = sortedByDateCommits.get(0);
-
-        int linesAdded0 = 0;
-        int filesChanged = 0, linesDeleted = 0, linesAdded = 0;
-
-        for (int i = 1; i < sortedByDateCommits.size(); i++) {
-            Commit commit2 = sortedByDateCommits.get(i);
-            RevCommit revCommit1 = rw.parseCommit(repository.resolve(commit1.getName()));
-            RevCommit revCommit2 = rw.parseCommit(repository.resolve(commit2.getName()));
-            DiffFormatter df = new DiffFormatter(DisabledOutputStream.INSTANCE);
-            df.setRepository(repository);
-            df.setDiffComparator(RawTextComparator.DEFAULT);
-            df.setDetectRenames(true);
-            List<DiffEntry> diffs;
-            diffs = df.scan(revCommit1.getTree(), revCommit2.getTree());
-            filesChanged += diffs.size();
-            for (DiffEntry diff : diffs) {
-                for (Edit edit : df.toFileHeader(diff).toEditList()) {
-                    linesAdded += edit.getEndB() - edit.getBeginB();
-                    linesDeleted += edit.getEndA() - edit.getBeginA();
-                    if (i == 1) {
-                        linesAdded0 += edit.getEndA();
-                    }
-                }
-            }
+    /**
+     * Sets the file the analyzed state is saved to, the next run with the same file only analyzes new commits.
+     * Null, the default, disables snapshots
+     *
+     * @param snapshotFile
+     */
+    public void setSnapshotFile(File snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
 
-            if (i == 1) {
-                commit1.getCommitter().setLinesAdded(commit1.getCommitter().getLinesAdded() + linesAdded0);
-            }
+    /**
+     * Sets the revision whose tree is used for file statistics, read from the object database
+     * instead of the working tree. Null, the default, uses the working tree or HEAD of a bare repository
+     *
+     * @param fileRevision commit-ish such as a branch, tag or commit id
+     */
+    public void setFileRevision(String fileRevision) {
+        this.fileRevision = fileRevision;
+    }
 
-            totalFilesChanged += filesChanged;
-            totalLinesAdded += linesAdded;
-            totalLinesDeleted += linesDeleted;
+    /**
+     * Sets the reporter the progress of the commit walks and of the line changes is sent to,
+     * by default a reporter without listeners
+     *
+     * @param progressReporter
+     */
+    public void setProgressReporter(ProgressReporter progressReporter) {
+        this.progressReporter = progressReporter;
+    }
 
-            commit2.getCommitter().setLinesAdded(commit2.getCommitter().getLinesAdded() + linesAdded);
-            commit2.getCommitter().setLinesDeleted(commit2.getCommitter().getLinesDeleted() + linesDeleted);
-            commit2.getCommitter().setFilesChanged(commit2.getCommitter().getFilesChanged() + filesChanged);
+    public ProgressReporter getProgressReporter() {
+        return progressReporter;
+    }
 
-            commit1 = sortedByDateCommits.get(i);
-            linesAdded = 0;
-            linesDeleted = 0;
-            filesChanged = 0;
-        }
+    public String getRepositoryName() {
+        return repositoryName;
+    }
 
+    /**
+     * Returns the metrics of the last analysis, such as the time and memory each phase took
+     *
+     * @return the metrics, or null before analyze() is called
+     */
+    public AnalysisMetrics getMetrics() {
+        return metrics;
     }
 
     /**
-     * Counts number of lines in a file
+     * Returns true if every phase of the last analysis succeeded, otherwise the statistics may be partial
      *
-     * @param file
-     * @return number of lines
-     * @throws IOException
+     * @return
      */
-    private int countFileLines(File file) throws IOException {
-        try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
-            byte[] c = new byte[1024];
-            int count = 0;
-            int readChars;
-            boolean endsWithoutNewLine = false;
-            while ((readChars = is.read(c)) != -1) {
-                for (int i = 0; i < readChars; ++i) {
-                    if (c[i] == '\n')
-                        ++count;
-                }
-                endsWithoutNewLine = (c[readChars - 1] != '\n');
-            }
-            if (endsWithoutNewLine) {
-                ++count;
-            }
-            return count;
-        }
+    public boolean isComplete() {
+        return complete;
     }
 
-    public String getRepositoryName() {
-        return repositoryName;
+    /**
+     * Returns why the last analysis could not continue from the snapshot of the previous run
+     *
+     * @return the reason, such as "ref refs/heads/master was rewritten", or null if the snapshot was used or there
+     * was none
+     */
+    public String getSnapshotDiscardReason() {
+        return snapshotDiscardReason;
     }
 
     public HashMap<String, Committer> getCommitters() {
@@ -525,6 +1112,14 @@ public class Repository {
         return numberOfLines;
     }
 
+    public HashMap<String, FileInfo> getFilesInfo() {
+        return filesInfo;
+    }
+
+    public CommitTimeSeries getCommitTimeSeries() {
+        return commitTimeSeries;
+    }
+
     public long getNumberOfBranches() {
         return numberOfBranches;
     }
@@ -545,8 +1140,33 @@ public class Repository {
         return branches;
     }
 
-    public HashMap<String, Commit> getCommits() {
-        return commits;
+    /**
+     * Returns a read only view of all commits keyed by name
+     *
+     * @return
+     */
+    public Map<String, Commit> getCommits() {
+        return commits.asMap();
+    }
+
+    /**
+     * Returns a read only view of all commits, each one at the position given by Commit.getIndex()
+     *
+     * @return
+     */
+    public List<Commit> getCommitList() {
+        return commits.asList();
+    }
+
+    /**
+     * Reads the full messages of a batch of commits from the object database, the repository must not be closed
+     *
+     * @param commits
+     * @return messages in the order of the commits
+     * @throws IOException
+     */
+    public List<String> getFullMessages(List<Commit> commits) throws IOException {
+        return this.commits.getFullMessages(commits);
     }
 
     public HashMap<String, Committer> getAuthors() {
@@ -0,0 +1,136 @@
+package edu.df.git;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Finds the subtrees of a set of directories, the path scopes, in the tree of a commit.
+ * <p>
+ * All scopes are resolved by one tree walk that only enters the directories on the way to a scope, so the cost
+ * depends on the depth of the scopes rather than on the size of the tree. Two trees have the same content under
+ * a scope if and only if they have the same subtree id there, which is what lets every scope be diffed,
+ * cached and counted separately from a single walk of the history.
+ */
+class ScopeResolver {
+    private final List<String> paths;
+    private final HashMap<String, Integer> scopeByPath;
+    private final HashSet<String> parentPaths;
+    private final BitSet topLevel;
+    private final TreeFilter pathFilter;
+
+    /**
+     * ScopeResolver constructor
+     *
+     * @param paths directories relative to the root of the repository, such as services/billing
+     */
+    ScopeResolver(List<String> paths) {
+        this.paths = new ArrayList<>();
+        this.scopeByPath = new HashMap<>();
+        this.parentPaths = new HashSet<>();
+        for (String path : paths) {
+            String normalized = normalize(path);
+            if (scopeByPath.containsKey(normalized))
+                continue;
+            scopeByPath.put(normalized, this.paths.size());
+            this.paths.add(normalized);
+            for (int slash = normalized.indexOf('/'); slash >= 0; slash = normalized.indexOf('/', slash + 1))
+                parentPaths.add(normalized.substring(0, slash));
+        }
+
+        // scopes inside another scope are already counted by it
+        this.topLevel = new BitSet();
+        for (int i = 0; i < this.paths.size(); i++) {
+            boolean nested = false;
+            String path = this.paths.get(i);
+            for (int slash = path.indexOf('/'); slash >= 0 && !nested; slash = path.indexOf('/', slash + 1))
+                nested = scopeByPath.containsKey(path.substring(0, slash));
+            if (!nested)
+                topLevel.set(i);
+        }
+        this.pathFilter = PathFilterGroup.createFromStrings(this.paths);
+    }
+
+    /**
+     * Strips leading and trailing slashes, a scope must name a directory below the root
+     *
+     * @param path
+     * @return
+     */
+    static String normalize(String path) {
+        String normalized = path.replace('\\', '/');
+        while (normalized.startsWith("/"))
+            normalized = normalized.substring(1);
+        while (normalized.endsWith("/"))
+            normalized = normalized.substring(0, normalized.length() - 1);
+        if (normalized.isEmpty() || Arrays.asList(normalized.split("/")).contains(".."))
+            throw new IllegalArgumentException("Wrong path scope " + path);
+        return normalized;
+    }
+
+    int size() {
+        return paths.size();
+    }
+
+    String getPath(int scope) {
+        return paths.get(scope);
+    }
+
+    /**
+     * Returns true if the scope is not inside another scope, the top level scopes do not overlap
+     *
+     * @param scope
+     * @return
+     */
+    boolean isTopLevel(int scope) {
+        return topLevel.get(scope);
+    }
+
+    /**
+     * Returns the filter of a commit walk that keeps the commits that change anything under the scopes
+     *
+     * @return
+     */
+    TreeFilter commitFilter() {
+        return AndTreeFilter.create(pathFilter, TreeFilter.ANY_DIFF);
+    }
+
+    /**
+     * Resolves the subtree of every scope
+     *
+     * @param reader
+     * @param tree   root tree of a commit
+     * @return subtree id per scope, null where the scope does not exist
+     * @throws IOException
+     */
+    ObjectId[] subtrees(ObjectReader reader, AnyObjectId tree) throws IOException {
+        ObjectId[] subtrees = new ObjectId[paths.size()];
+        TreeWalk treeWalk = new TreeWalk(reader);
+        treeWalk.addTree(tree);
+        treeWalk.setFilter(pathFilter);
+        treeWalk.setRecursive(false);
+        while (treeWalk.next()) {
+            if (!treeWalk.isSubtree())
+                continue;
+            String path = treeWalk.getPathString();
+            Integer scope = scopeByPath.get(path);
+            if (scope != null)
+                subtrees[scope] = treeWalk.getObjectId(0);
+            if (parentPaths.contains(path))
+                treeWalk.enterSubtree();
+        }
+        return subtrees;
+    }
+}
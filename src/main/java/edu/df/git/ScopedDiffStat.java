@@ -0,0 +1,44 @@
+package edu.df.git;
+
+/**
+ * Line and file changes of a commit in the path scopes it changes.
+ * <p>
+ * The totals are the sum of the top level scopes, so changes outside of the scopes are not counted. Scopes are
+ * diffed against an empty tree before they first appear, so no lines are left to credit to a first commit.
+ */
+class ScopedDiffStat extends DiffStat {
+    private final int[] changedScopes;
+    private final DiffStat[] scopeStats;
+    private final int[] touchedScopes;
+
+    /**
+     * ScopedDiffStat constructor
+     *
+     * @param filesChanged  number of diff entries of the top level scopes
+     * @param linesAdded    lines added in the top level scopes
+     * @param linesDeleted  lines deleted in the top level scopes
+     * @param changedScopes scopes whose subtree differs from the previous commit of the same scope
+     * @param scopeStats    changes of each scope of changedScopes
+     * @param touchedScopes scopes the commit changes compared to each of its parents, the scopes it
+     *                      counts as a commit of
+     */
+    ScopedDiffStat(int filesChanged, long linesAdded, long linesDeleted,
+                   int[] changedScopes, DiffStat[] scopeStats, int[] touchedScopes) {
+        super(filesChanged, linesAdded, linesDeleted, 0);
+        this.changedScopes = changedScopes;
+        this.scopeStats = scopeStats;
+        this.touchedScopes = touchedScopes;
+    }
+
+    int[] getChangedScopes() {
+        return changedScopes;
+    }
+
+    DiffStat[] getScopeStats() {
+        return scopeStats;
+    }
+
+    int[] getTouchedScopes() {
+        return touchedScopes;
+    }
+}
@@ -0,0 +1,251 @@
+package edu.df.git;
+
+import edu.df.files.FileInfo;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Analyzed state of a repository, saved at the end of a run so the next run only has to look at new commits.
+ * <p>
+ * The snapshot holds the ref tips the analysis started from, every commit with its committer and dates,
+ * the line change totals of each committer and the file statistics together with the commit whose tree they were
+ * scanned from. File statistics of the working tree are stored without a commit, as they may change without one.
+ * Committers are stored as resolved by the mailmaps, whose fingerprint is kept to tell if they changed since.
+ * Branches, tags and the per day statistics are not stored, they are rebuilt from the commits, and messages are
+ * read from the repository when the report needs them.
+ * Commits are kept newest first, the first one being the last commit of the line change calculation.
+ */
+class Snapshot {
+    private static final int MAGIC = 0x47535353; // "GSSS"
+    private static final int VERSION = 5;
+
+    private final ObjectId filesCommit;
+    private final String identities;
+    private final HashMap<String, FileInfo> filesInfo;
+    private final LinkedHashMap<String, ObjectId> refTips;
+    private final ArrayList<Committer> committers;
+    private final List<Commit> commits;
+    private final long totalFilesChanged, totalLinesAdded, totalLinesDeleted;
+
+    /**
+     * Snapshot constructor
+     *
+     * @param filesCommit       commit whose tree the file statistics were scanned from, null for the working tree
+     * @param identities        fingerprint of the mailmaps the committers were resolved with
+     * @param filesInfo
+     * @param refTips           ref name to commit id of every ref the analysis started from
+     * @param committers
+     * @param commits           newest first
+     * @param totalFilesChanged
+     * @param totalLinesAdded
+     * @param totalLinesDeleted
+     */
+    Snapshot(ObjectId filesCommit, String identities, HashMap<String, FileInfo> filesInfo, LinkedHashMap<String, ObjectId> refTips,
+             ArrayList<Committer> committers, List<Commit> commits,
+             long totalFilesChanged, long totalLinesAdded, long totalLinesDeleted) {
+        this.filesCommit = filesCommit;
+        this.identities = identities;
+        this.filesInfo = filesInfo;
+        this.refTips = refTips;
+        this.committers = committers;
+        this.commits = commits;
+        this.totalFilesChanged = totalFilesChanged;
+        this.totalLinesAdded = totalLinesAdded;
+        this.totalLinesDeleted = totalLinesDeleted;
+    }
+
+    /**
+     * Reads a snapshot
+     *
+     * @param file
+     * @return the snapshot, or null if the file does not exist or was written by another version
+     * @throws IOException
+     */
+    static Snapshot read(File file) throws IOException {
+        if (!file.isFile())
+            return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                return null;
+
+            ObjectId filesCommit = in.readBoolean() ? readObjectId(in) : null;
+            String identities = in.readUTF();
+
+            int numberOfExtensions = in.readInt();
+            HashMap<String, FileInfo> filesInfo = new HashMap<>();
+            for (int i = 0; i < numberOfExtensions; i++) {
+                FileInfo fileInfo = new FileInfo(in.readUTF());
+                fileInfo.setNumberOfFiles(in.readInt());
+                fileInfo.setNumberOfLines(in.readInt());
+                fileInfo.setNumberOfSkippedFiles(in.readInt());
+                fileInfo.setNumberOfSkippedBytes(in.readLong());
+                filesInfo.put(fileInfo.getExtension(), fileInfo);
+            }
+
+            int numberOfRefs = in.readInt();
+            LinkedHashMap<String, ObjectId> refTips = new LinkedHashMap<>();
+            for (int i = 0; i < numberOfRefs; i++)
+                refTips.put(in.readUTF(), readObjectId(in));
+
+            int numberOfCommitters = in.readInt();
+            ArrayList<Committer> committers = new ArrayList<>(numberOfCommitters);
+            for (int i = 0; i < numberOfCommitters; i++) {
+                Committer committer = new Committer(readString(in), readString(in));
+                committer.setLinesAdded(in.readLong());
+                committer.setLinesDeleted(in.readLong());
+                committer.setFilesChanged(in.readLong());
+                committers.add(committer);
+            }
+
+            int numberOfCommits = in.readInt();
+            CommitStore commits = new CommitStore(null);
+            for (int i = 0; i < numberOfCommits; i++) {
+                ObjectId id = readObjectId(in);
+                Committer committer = committers.get(in.readInt());
+                int commitTime = in.readInt();
+                int authorTime = in.readInt();
+                commits.add(id, committer, commitTime, authorTime, null);
+            }
+
+            return new Snapshot(filesCommit, identities, filesInfo, refTips, committers, commits.asList(), in.readLong(), in.readLong(), in.readLong());
+        }
+    }
+
+    /**
+     * Writes the snapshot, the file is replaced only after the new one is complete
+     *
+     * @param file
+     * @throws IOException
+     */
+    void write(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        //noinspection ResultOfMethodCallIgnored
+        parent.mkdirs();
+        File tempFile = File.createTempFile(file.getName(), ".tmp", parent);
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            out.writeBoolean(filesCommit != null);
+            if (filesCommit != null)
+                writeObjectId(out, filesCommit);
+            out.writeUTF(identities);
+
+            out.writeInt(filesInfo.size());
+            for (FileInfo fileInfo : filesInfo.values()) {
+                out.writeUTF(fileInfo.getExtension());
+                out.writeInt(fileInfo.getNumberOfFiles());
+                out.writeInt(fileInfo.getNumberOfLines());
+                out.writeInt(fileInfo.getNumberOfSkippedFiles());
+                out.writeLong(fileInfo.getNumberOfSkippedBytes());
+            }
+
+            out.writeInt(refTips.size());
+            for (Map.Entry<String, ObjectId> refTip : refTips.entrySet()) {
+                out.writeUTF(refTip.getKey());
+                writeObjectId(out, refTip.getValue());
+            }
+
+            HashMap<Committer, Integer> committerIndexes = new HashMap<>();
+            out.writeInt(committers.size());
+            for (Committer committer : committers) {
+                committerIndexes.put(committer, committerIndexes.size());
+                writeString(out, committer.getName());
+                writeString(out, committer.getEmail());
+                out.writeLong(committer.getLinesAdded());
+                out.writeLong(committer.getLinesDeleted());
+                out.writeLong(committer.getFilesChanged());
+            }
+
+            out.writeInt(commits.size());
+            for (Commit commit : commits) {
+                writeObjectId(out, commit);
+                out.writeInt(committerIndexes.get(commit.getCommitter()));
+                out.writeInt(commit.getCommitTime());
+                out.writeInt(commit.getAuthorTime());
+            }
+
+            out.writeLong(totalFilesChanged);
+            out.writeLong(totalLinesAdded);
+            out.writeLong(totalLinesDeleted);
+        } catch (IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+            throw e;
+        }
+
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static ObjectId readObjectId(DataInputStream in) throws IOException {
+        byte[] id = new byte[Constants.OBJECT_ID_LENGTH];
+        in.readFully(id);
+        return ObjectId.fromRaw(id);
+    }
+
+    private static void writeObjectId(DataOutputStream out, ObjectId id) throws IOException {
+        id.copyRawTo(out);
+    }
+
+    /**
+     * Reads a string written by writeString, unlike readUTF it has no 64KB limit
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * @return commit whose tree the file statistics were scanned from, null if they were scanned from the working tree
+     */
+    ObjectId getFilesCommit() {
+        return filesCommit;
+    }
+
+    String getIdentities() {
+        return identities;
+    }
+
+    HashMap<String, FileInfo> getFilesInfo() {
+        return filesInfo;
+    }
+
+    LinkedHashMap<String, ObjectId> getRefTips() {
+        return refTips;
+    }
+
+    ArrayList<Committer> getCommitters() {
+        return committers;
+    }
+
+    List<Commit> getCommits() {
+        return commits;
+    }
+
+    long getTotalFilesChanged() {
+        return totalFilesChanged;
+    }
+
+    long getTotalLinesAdded() {
+        return totalLinesAdded;
+    }
+
+    long getTotalLinesDeleted() {
+        return totalLinesDeleted;
+    }
+}
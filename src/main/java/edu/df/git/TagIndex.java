@@ -0,0 +1,186 @@
+package edu.df.git;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.CommitTimeRevFilter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+
+/**
+ * Finds the tag of every commit with a single walk of the commit graph.
+ * <p>
+ * A commit belongs to every tag it can be reached from. When more than one tag contains a commit,
+ * the tag that comes last in the repository's tag order wins.
+ * All tags are peeled once, then the commits are visited in topological order and each commit
+ * passes its best tag on to its parents. The walk can be limited to a time window and to the commits
+ * reachable from some refs, so only the tags of the selected history are walked.
+ */
+class TagIndex {
+    private final org.eclipse.jgit.lib.Repository repository;
+    private final HashMap<String, Tag> tags;
+    private final HashMap<String, ObjectId> targets;
+    private final HashMap<ObjectId, Tag> commitTags;
+    private Collection<? extends AnyObjectId> starts;
+    private Date since, until;
+    private int numberOfCommits;
+
+    /**
+     * TagIndex constructor
+     *
+     * @param repository
+     */
+    TagIndex(org.eclipse.jgit.lib.Repository repository) {
+        this.repository = repository;
+        this.tags = new HashMap<>();
+        this.targets = new HashMap<>();
+        this.commitTags = new HashMap<>();
+    }
+
+    /**
+     * Walks only the commits reachable from the given commits instead of the ones reachable from the tags.
+     * Tags of commits that are not reachable from them pass their tag on to no commit
+     *
+     * @param starts null walks from all tags
+     */
+    void setStarts(Collection<? extends AnyObjectId> starts) {
+        this.starts = starts;
+    }
+
+    /**
+     * Limits the tags of commits to a time window. The walk stops at the first commit older than since, and commits
+     * newer than until are walked to pass their tag on to the commits of the window but get no tag
+     *
+     * @param since null walks the whole history
+     * @param until null keeps the newest commits
+     */
+    void setWindow(Date since, Date until) {
+        this.since = since;
+        this.until = until;
+    }
+
+    /**
+     * Peels all tags and assigns a tag to every commit reachable from them
+     *
+     * @throws IOException
+     */
+    void compute() throws IOException {
+        RankWalk walk = new RankWalk(repository);
+        try {
+            walk.setRetainBody(false);
+            walk.sort(RevSort.TOPO);
+            if (since != null)
+                walk.setRevFilter(CommitTimeRevFilter.after(since));
+            long sinceSeconds = since == null ? Long.MIN_VALUE : since.getTime() / 1000L;
+            long untilSeconds = until == null ? Long.MAX_VALUE : until.getTime() / 1000L;
+
+            ArrayList<Tag> tagsByRank = new ArrayList<>();
+            for (Ref ref : repository.getTags().values()) {
+                RevObject obj = walk.peel(walk.parseAny(ref.getObjectId()));
+                if (!(obj instanceof RevCommit))
+                    continue;
+                RankedCommit tagCommit = (RankedCommit) obj;
+                // the tag and all of its commits are older than the window
+                if (tagCommit.getCommitTime() < sinceSeconds)
+                    continue;
+
+                Tag tag = new Tag(ref.getName());
+                tags.put(ref.getName(), tag);
+                targets.put(ref.getName(), tagCommit.copy());
+
+                tagCommit.rank = tagsByRank.size();
+                tagsByRank.add(tag);
+                if (starts == null)
+                    walk.markStart(tagCommit);
+            }
+            // tag commits that are reached from the starts carry the rank set above
+            if (starts != null) {
+                for (AnyObjectId start : starts)
+                    walk.markStart(walk.parseCommit(start));
+            }
+
+            RevCommit commit;
+            while ((commit = walk.next()) != null) {
+                numberOfCommits++;
+                int rank = ((RankedCommit) commit).rank;
+                if (rank < 0)
+                    continue;
+                if (commit.getCommitTime() <= untilSeconds)
+                    commitTags.put(commit.copy(), tagsByRank.get(rank));
+                for (RevCommit parent : commit.getParents()) {
+                    RankedCommit rankedParent = (RankedCommit) parent;
+                    if (rankedParent.rank < rank)
+                        rankedParent.rank = rank;
+                }
+            }
+        } finally {
+            walk.release();
+        }
+    }
+
+    /**
+     * Returns the tag of a commit
+     *
+     * @param commit
+     * @return the tag, or null if no tag contains the commit
+     */
+    Tag getTag(AnyObjectId commit) {
+        return commitTags.get(commit);
+    }
+
+    /**
+     * @return number of commits walked by compute()
+     */
+    int getNumberOfCommits() {
+        return numberOfCommits;
+    }
+
+    /**
+     * Returns the commit a tag points to
+     *
+     * @param tagName is the full ref name of the tag
+     * @return the commit id, or null for unknown tags
+     */
+    ObjectId getTarget(String tagName) {
+        return targets.get(tagName);
+    }
+
+    /**
+     * Returns all tags that point to a commit, keyed by their full ref name
+     *
+     * @return
+     */
+    HashMap<String, Tag> getTags() {
+        return tags;
+    }
+
+    /**
+     * RevWalk that creates commits able to carry the rank of their best tag
+     */
+    private static class RankWalk extends RevWalk {
+        RankWalk(org.eclipse.jgit.lib.Repository repository) {
+            super(repository);
+        }
+
+        @Override
+        protected RevCommit createCommit(AnyObjectId id) {
+            return new RankedCommit(id);
+        }
+    }
+
+    private static class RankedCommit extends RevCommit {
+        private int rank = -1;
+
+        RankedCommit(AnyObjectId id) {
+            super(id);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package edu.df.git;
+
+import edu.df.files.FileInfo;
+import edu.df.files.LineCounter;
+import edu.df.metrics.PhaseMetrics;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.MutableObjectId;
+import org.eclipse.jgit.lib.ObjectIdOwnerMap;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.ObjectStream;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+import java.io.IOException;
+import java.util.HashMap;
+
+/**
+ * Collects file statistics of a commit's tree straight from the object database, so no checkout is needed.
+ * <p>
+ * Line counts are cached by blob id: a blob found at several paths is read once, and scanning another
+ * revision with the same scanner only reads the blobs that changed. Binary blobs are counted as files, but their
+ * lines are not, they are reported as skipped files and bytes.
+ */
+class TreeFileScanner {
+    private final org.eclipse.jgit.lib.Repository repository;
+    private final ObjectIdOwnerMap<BlobLines> lineCounts;
+    private PhaseMetrics metrics;
+
+    /**
+     * TreeFileScanner constructor
+     *
+     * @param repository
+     */
+    TreeFileScanner(org.eclipse.jgit.lib.Repository repository) {
+        this.repository = repository;
+        this.lineCounts = new ObjectIdOwnerMap<>();
+    }
+
+    /**
+     * Sets the metrics the scanned files and the blobs read are added to
+     *
+     * @param metrics may be null
+     */
+    void setMetrics(PhaseMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Scans the tree of a commit
+     *
+     * @param commit or tree to scan
+     * @return file statistics keyed by extension
+     * @throws IOException
+     */
+    HashMap<String, FileInfo> scan(AnyObjectId commit) throws IOException {
+        HashMap<String, FileInfo> filesInfo = new HashMap<>();
+        long files = 0, blobsRead = 0, bytesRead = 0;
+        ObjectReader reader = repository.newObjectReader();
+        try {
+            RevWalk walk = new RevWalk(reader);
+            TreeWalk treeWalk = new TreeWalk(reader);
+            treeWalk.addTree(walk.parseTree(commit));
+            treeWalk.setRecursive(true);
+
+            MutableObjectId blobId = new MutableObjectId();
+            while (treeWalk.next()) {
+                if (treeWalk.getFileMode(0).getObjectType() != Constants.OBJ_BLOB)
+                    continue;
+                treeWalk.getObjectId(blobId, 0);
+                files++;
+
+                BlobLines blobLines = lineCounts.get(blobId);
+                if (blobLines == null) {
+                    ObjectLoader loader = reader.open(blobId);
+                    blobLines = new BlobLines(blobId, countLines(loader), loader.getSize());
+                    lineCounts.add(blobLines);
+                    blobsRead++;
+                    bytesRead += blobLines.size;
+                }
+
+                String fileExtension = FileInfo.extensionOf(treeWalk.getNameString());
+                FileInfo fileInfo = filesInfo.get(fileExtension);
+                if (fileInfo == null)
+                    filesInfo.put(fileExtension, new FileInfo(fileExtension));
+                else
+                    fileInfo.setNumberOfFiles(fileInfo.getNumberOfFiles() + 1);
+                fileInfo = filesInfo.get(fileExtension);
+                if (blobLines.lines == LineCounter.BINARY) {
+                    fileInfo.setNumberOfSkippedFiles(fileInfo.getNumberOfSkippedFiles() + 1);
+                    fileInfo.setNumberOfSkippedBytes(fileInfo.getNumberOfSkippedBytes() + blobLines.size);
+                } else
+                    fileInfo.setNumberOfLines(fileInfo.getNumberOfLines() + (int) blobLines.lines);
+            }
+        } finally {
+            reader.release();
+            if (metrics != null) {
+                metrics.addFilesScanned(files);
+                metrics.addObjectsParsed(blobsRead);
+                metrics.addBytesRead(bytesRead);
+            }
+        }
+        return filesInfo;
+    }
+
+    private static long countLines(ObjectLoader loader) throws IOException {
+        if (!loader.isLarge())
+            return LineCounter.countLines(loader.getCachedBytes());
+        try (ObjectStream in = loader.openStream()) {
+            return LineCounter.countLines(in);
+        }
+    }
+
+    /**
+     * Number of lines of a blob, or LineCounter.BINARY, and its size
+     */
+    private static class BlobLines extends ObjectIdOwnerMap.Entry {
+        private final long lines;
+        private final long size;
+
+        BlobLines(AnyObjectId id, long lines, long size) {
+            super(id);
+            this.lines = lines;
+            this.size = size;
+        }
+    }
+}
@@ -1,17 +1,73 @@
 package edu.df.gitstatistics;
 
+import edu.df.batch.BatchAnalysis;
+import edu.df.batch.BatchListener;
+import edu.df.batch.ManifestEntry;
+import edu.df.batch.RepositoryResult;
 import edu.df.git.Repository;
 import edu.df.htmlgenerator.ReportGenerator;
+import edu.df.server.RefreshListener;
+import edu.df.server.ReportServer;
+import edu.df.server.ReportVersion;
+import edu.df.progress.ConsoleProgressListener;
 
 import java.awt.*;
+import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
 
 public class GitStatistics {
     public static void main(String[] args) {
+        if (args.length == 3 && args[0].equals("--batch")) {
+            batch(args[1].replaceAll("\\\\", "/"), args[2].replaceAll("\\\\", "/"));
+            return;
+        }
+        if (args.length >= 4 && args[0].equals("--serve")) {
+            serve(args);
+            return;
+        }
+        Date since = null, until = null;
+        List<String> refGlobs = null, pathScopes = null;
+        File aliasFile = null;
+        int first = 0;
+        try {
+            for (; first < args.length && args[first].startsWith("--") && args[first].contains("="); first++) {
+                String value = args[first].substring(args[first].indexOf('=') + 1);
+                if (args[first].startsWith("--since=")) {
+                    since = parseDate(value, false);
+                } else if (args[first].startsWith("--until=")) {
+                    until = parseDate(value, true);
+                } else if (args[first].startsWith("--refs=")) {
+                    refGlobs = Arrays.asList(value.split(","));
+                } else if (args[first].startsWith("--scopes=")) {
+                    pathScopes = Arrays.asList(value.split(","));
+                } else if (args[first].startsWith("--aliases=")) {
+                    aliasFile = new File(value.replaceAll("\\\\", "/"));
+                } else {
+                    System.err.println("Unknown option " + args[first] + ".");
+                    return;
+                }
+            }
+        } catch (ParseException e) {
+            System.err.println("Wrong date, please write dates as yyyy-MM-dd.");
+            return;
+        }
+        args = Arrays.copyOfRange(args, first, args.length);
+
         if (args.length != 2) {
-            System.err.println("Wrong number of arguments.\nPlease insert local git repository path and HTML output path.");
+            System.err.println("Wrong number of arguments.\nPlease insert local git repository path and HTML output path," +
+                    " or --batch, a manifest with a repository path per line and the HTML output path," +
+                    " or --serve, a port, the output path and the repository paths.\n" +
+                    "A single repository can be limited with --since=yyyy-MM-dd, --until=yyyy-MM-dd," +
+                    " --refs=refs/heads/release/*,... and --scopes=services/billing,... before its path." +
+                    " Authors are mapped through the .mailmap of the repository and --aliases=file in the same format.");
             return;
         }
         final String gitRepositoryPath = args[0].replaceAll("\\\\", "/");
@@ -19,16 +75,115 @@ public class GitStatistics {
 
         try {
             final Repository repository = new Repository(gitRepositoryPath);
+            repository.setSnapshotFile(new File(outputPath + "/gitstatistics.snapshot"));
+            repository.getProgressReporter().addListener(new ConsoleProgressListener());
+            repository.setTimeWindow(since, until);
+            repository.setRefGlobs(refGlobs);
+            repository.setPathScopes(pathScopes);
+            repository.setAliasFile(aliasFile);
             repository.analyze();
+            if (repository.getSnapshotDiscardReason() != null)
+                System.out.println("The previous snapshot was not used, " + repository.getSnapshotDiscardReason() + ", the whole repository was analyzed.");
             final ReportGenerator reportGenerator = new ReportGenerator(repository, outputPath);
-            reportGenerator.generateHtmlReport();
+            try {
+                reportGenerator.generateHtmlReport();
+            } finally {
+                repository.close();
+            }
             if (Desktop.isDesktopSupported()) {
                 Desktop.getDesktop().browse(new URI("file:///" + outputPath + "/html/index.html"));
             }
         } catch (IOException e) {
             System.err.println("An error occurred while gathering data from the repository.");
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage() + ", please write scopes as directories of the repository.");
         } catch (URISyntaxException e) {
             System.err.println("Could not open the browser, please open the index.html file: " + outputPath + "/html/index.html");
         }
     }
+
+    /**
+     * Parses a day in local time
+     *
+     * @param date  as yyyy-MM-dd
+     * @param endOf true for the last millisecond of the day, false for the first
+     * @return
+     * @throws ParseException
+     */
+    private static Date parseDate(String date, boolean endOf) throws ParseException {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        format.setLenient(false);
+        Date day = format.parse(date);
+        if (!endOf)
+            return day;
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(day);
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        return new Date(calendar.getTimeInMillis() - 1);
+    }
+
+    /**
+     * Analyzes every repository of a manifest, the summary of all of them is written to outputPath/index.html
+     *
+     * @param manifestPath
+     * @param outputPath
+     */
+    private static void batch(String manifestPath, String outputPath) {
+        try {
+            BatchAnalysis batchAnalysis = new BatchAnalysis(ManifestEntry.read(new File(manifestPath)), new File(outputPath));
+            batchAnalysis.addListener(new BatchListener() {
+                @Override
+                public void repositoryStarted(ManifestEntry entry) {
+                    System.out.println("Analyzing " + entry.getPath());
+                }
+
+                @Override
+                public void repositoryFinished(RepositoryResult result) {
+                    if (result.getStatus() != RepositoryResult.Status.FAILED)
+                        System.out.println("Finished " + result.getEntry().getPath() + (result.getStatus() == RepositoryResult.Status.INCOMPLETE ? " with errors" : ""));
+                }
+            });
+            batchAnalysis.run();
+        } catch (IOException e) {
+            System.err.println("An error occurred while running the batch.");
+            e.printStackTrace();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage() + ", please give the repository a smaller budget.");
+        } catch (OutOfMemoryError e) {
+            System.err.println("The batch ran out of memory and was stopped, please give the JVM more heap or the repositories smaller budgets.");
+            throw e;
+        }
+    }
+
+    /**
+     * Serves the reports of repositories over HTTP until the JVM is stopped
+     *
+     * @param args --serve, the port, the output path and the repository paths
+     */
+    private static void serve(String[] args) {
+        try {
+            ReportServer server = new ReportServer(new File(args[2].replaceAll("\\\\", "/")), Integer.parseInt(args[1]));
+            for (int i = 3; i < args.length; i++)
+                server.addRepository(args[i].replaceAll("\\\\", "/"));
+            server.addListener(new RefreshListener() {
+                @Override
+                public void refreshStarted(String name) {
+                    System.out.println("Refreshing " + name);
+                }
+
+                @Override
+                public void versionPublished(ReportVersion version) {
+                    System.out.println("Published version " + version.getNumber() + " of " + version.getName());
+                }
+            });
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+            System.out.println("Serving the reports at " + server.getUri());
+        } catch (NumberFormatException e) {
+            System.err.println("Wrong port " + args[1] + ".");
+        } catch (IOException e) {
+            System.err.println("An error occurred while starting the report server.");
+            e.printStackTrace();
+        }
+    }
 }
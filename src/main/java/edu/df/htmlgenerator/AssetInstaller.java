@@ -0,0 +1,168 @@
+package edu.df.htmlgenerator;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Installs the static files of the report, images, style sheets and scripts, into an asset folder.
+ * <p>
+ * A file is only written when its content differs from the resource: the size is compared first, then a SHA-256
+ * hash. Resources are streamed straight to a temporary file next to the target, which is then moved over it, so
+ * several reports can share one asset folder and never see a half written file. Resource hashes are computed once
+ * per JVM.
+ */
+class AssetInstaller {
+    /**
+     * Resource name and folder of every asset
+     */
+    private static final String[][] ASSETS = {
+            {"favicon.ico", "img"},
+            {"logo.png", "img"},
+            {"background.jpg", "img"},
+            {"milligram.min.css", "css"},
+            {"normalize.css", "css"},
+            {"fonts.css", "css"},
+            {"scripts.js", "js"}
+    };
+
+    private static final ConcurrentHashMap<String, Digest> resourceDigests = new ConcurrentHashMap<>();
+
+    private final Path assetDir;
+
+    /**
+     * AssetInstaller constructor
+     *
+     * @param assetDir folder that receives the img, css and js folders
+     */
+    AssetInstaller(Path assetDir) {
+        this.assetDir = assetDir;
+    }
+
+    /**
+     * Installs all assets
+     *
+     * @return number of files written, files that were up to date are not counted
+     * @throws IOException
+     */
+    int install() throws IOException {
+        int written = 0;
+        for (String[] asset : ASSETS) {
+            if (install(asset[0], assetDir.resolve(asset[1]).resolve(asset[0])))
+                written++;
+        }
+        return written;
+    }
+
+    /**
+     * Installs a resource unless the target already has the same content
+     *
+     * @param resource
+     * @param target
+     * @return true if the target was written
+     * @throws IOException
+     */
+    boolean install(String resource, Path target) throws IOException {
+        Digest expected = resourceDigest(resource);
+        if (expected.equals(fileDigest(target, expected.size)))
+            return false;
+
+        Files.createDirectories(target.getParent());
+        Path tempFile = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (InputStream in = openResource(resource)) {
+                Files.copy(in, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        return true;
+    }
+
+    private static Digest resourceDigest(String resource) throws IOException {
+        Digest digest = resourceDigests.get(resource);
+        if (digest == null) {
+            try (InputStream in = openResource(resource)) {
+                digest = digest(in);
+            }
+            resourceDigests.put(resource, digest);
+        }
+        return digest;
+    }
+
+    /**
+     * Returns the digest of a file, or null if it does not exist or its size is not the expected one
+     */
+    private static Digest fileDigest(Path file, long expectedSize) throws IOException {
+        try {
+            if (Files.size(file) != expectedSize)
+                return null;
+            try (InputStream in = Files.newInputStream(file)) {
+                return digest(in);
+            }
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static Digest digest(InputStream in) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        long size = 0;
+        byte[] buffer = new byte[8192];
+        try (DigestInputStream digestIn = new DigestInputStream(in, md)) {
+            for (int read; (read = digestIn.read(buffer)) != -1; )
+                size += read;
+        }
+        return new Digest(size, md.digest());
+    }
+
+    private static InputStream openResource(String resource) throws IOException {
+        InputStream in = AssetInstaller.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null)
+            throw new FileNotFoundException("Resource " + resource + " not found");
+        return in;
+    }
+
+    /**
+     * Size and hash of a file
+     */
+    private static class Digest {
+        private final long size;
+        private final byte[] hash;
+
+        Digest(long size, byte[] hash) {
+            this.size = size;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Digest digest = (Digest) o;
+
+            return size == digest.size && Arrays.equals(hash, digest.hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(size) + Arrays.hashCode(hash);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package edu.df.htmlgenerator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+
+/**
+ * Writes an HTML page element by element to a buffered file, so a page is never held in memory as a whole.
+ * <p>
+ * Text and attribute values are escaped as they are written. Every tag is followed by a new line, the same layout
+ * the report always had. Small fixed parts of a page can still be built with j2html and written with raw(), and
+ * sections written to a string by another HtmlWriter are added with copy().
+ */
+class HtmlWriter implements Closeable {
+    private final Writer out;
+    private final ArrayDeque<String> openElements;
+    private boolean startTagOpen;
+
+    /**
+     * HtmlWriter constructor, the file is written in UTF-8
+     *
+     * @param file
+     * @throws IOException
+     */
+    HtmlWriter(Path file) throws IOException {
+        this(Files.newBufferedWriter(file, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * HtmlWriter constructor
+     *
+     * @param out
+     */
+    HtmlWriter(Writer out) {
+        this.out = out;
+        this.openElements = new ArrayDeque<>();
+        this.startTagOpen = false;
+    }
+
+    /**
+     * Writes the start tag of an element, attributes can be added until something else is written
+     *
+     * @param name
+     * @return
+     * @throws IOException
+     */
+    HtmlWriter open(String name) throws IOException {
+        closeStartTag();
+        out.write('<');
+        out.write(name);
+        openElements.push(name);
+        startTagOpen = true;
+        return this;
+    }
+
+    /**
+     * Adds an attribute to the start tag just written
+     *
+     * @param name
+     * @param value
+     * @return
+     * @throws IOException
+     */
+    HtmlWriter attr(String name, String value) throws IOException {
+        if (!startTagOpen)
+            throw new IllegalStateException("Attribute " + name + " written outside of a start tag");
+        out.write(' ');
+        out.write(name);
+        out.write("=\"");
+        escape(value);
+        out.write('"');
+        return this;
+    }
+
+    /**
+     * Writes escaped text
+     *
+     * @param text
+     * @return
+     * @throws IOException
+     */
+    HtmlWriter text(String text) throws IOException {
+        closeStartTag();
+        escape(text);
+        return this;
+    }
+
+    /**
+     * Writes the end tag of the innermost open element
+     *
+     * @return
+     * @throws IOException
+     */
+    HtmlWriter end() throws IOException {
+        closeStartTag();
+        out.write("</");
+        out.write(openElements.pop());
+        out.write(">\n");
+        return this;
+    }
+
+    /**
+     * Writes an element that only holds text
+     *
+     * @param name
+     * @param text
+     * @return
+     * @throws IOException
+     */
+    HtmlWriter element(String name, String text) throws IOException {
+        return open(name).text(text).end();
+    }
+
+    /**
+     * Writes rendered HTML, such as a j2html tag, starting a new line after every tag
+     *
+     * @param html
+     * @return
+     * @throws IOException
+     */
+    HtmlWriter raw(String html) throws IOException {
+        closeStartTag();
+        int start = 0;
+        for (int i = html.indexOf('>'); i >= 0; i = html.indexOf('>', start)) {
+            out.write(html, start, i + 1 - start);
+            out.write('\n');
+            start = i + 1;
+        }
+        out.write(html, start, html.length() - start);
+        return this;
+    }
+
+    /**
+     * Writes HTML written by another HtmlWriter as it is
+     *
+     * @param html
+     * @return
+     * @throws IOException
+     */
+    HtmlWriter copy(String html) throws IOException {
+        closeStartTag();
+        out.write(html);
+        return this;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void closeStartTag() throws IOException {
+        if (startTagOpen) {
+            out.write(">\n");
+            startTagOpen = false;
+        }
+    }
+
+    private void escape(String string) throws IOException {
+        int start = 0;
+        for (int i = 0; i < string.length(); i++) {
+            String entity;
+            switch (string.charAt(i)) {
+                case '&':
+                    entity = "&amp;";
+                    break;
+                case '<':
+                    entity = "&lt;";
+                    break;
+                case '>':
+                    entity = "&gt;";
+                    break;
+                case '"':
+                    entity = "&quot;";
+                    break;
+                case '\'':
+                    entity = "&#x27;";
+                    break;
+                default:
+                    continue;
+            }
+            out.write(string, start, i - start);
+            out.write(entity);
+            start = i + 1;
+        }
+        out.write(string, start, string.length() - start);
+    }
+}
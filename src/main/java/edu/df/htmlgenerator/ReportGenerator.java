@@ -3,78 +3,250 @@ package edu.df.htmlgenerator;
 import edu.df.git.Branch;
 import edu.df.git.Commit;
 import edu.df.git.Committer;
+import edu.df.git.PathScope;
 import edu.df.git.Repository;
+import edu.df.metrics.AnalysisMetrics;
+import edu.df.progress.ProgressReporter;
+import edu.df.progress.ProgressTask;
 import j2html.tags.ContainerTag;
-import j2html.tags.DomContent;
 
 import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.file.Path;
 import java.text.DecimalFormat;
 import java.time.Month;
 import java.time.format.TextStyle;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static j2html.TagCreator.*;
 
 public class ReportGenerator {
+    /**
+     * Number of commits in a shard of commit rows, the messages of a shard are read from the repository at once
+     */
+    private static final int COMMITS_PER_SHARD = 512;
+    /**
+     * Number of commits shown on a page of a branch
+     */
+    private static final int COMMITS_PER_PAGE = 100;
+
+    /**
+     * Number of sections of a page generated ahead of the one being written
+     */
+    private static final int SECTIONS_IN_FLIGHT = 4 * Runtime.getRuntime().availableProcessors();
+
+    private static final String HIDDEN_DIV_STYLE = "z-index:10;overflow-y:auto;visibility:hidden;display: inline-block;\n" +
+            "    position: fixed;\n" +
+            "    top: 0;\n" +
+            "    bottom: 0;\n" +
+            "    left: 0;\n" +
+            "    right: 0;\n" +
+            "    width: 95%;\n" +
+            "    height: 95%;\n" +
+            "    margin: auto;\n" +
+            "    background-color: #f3f3f3;" +
+            "padding-left:20px; padding-right:20px;padding-top:20px; padding-bottom:20px;";
+
     final private Repository repository;
     final private File outputDir;
     final private File htmlDir;
+    final private File dataDir;
+    private File assetDir;
+    private String assetUrl;
+    private ExecutorService executor;
+    private ProgressReporter progressReporter;
+    private ProgressTask progress;
 
     public ReportGenerator(Repository repository, String outputPath) {
         this.repository = repository;
-        String outputPath1 = outputPath;
         this.outputDir = new File(outputPath);
         if (!outputDir.exists())
             outputDir.mkdir();
-        File cssDir = new File(outputPath + "/css");
-        if (!cssDir.exists())
-            cssDir.mkdir();
-        File imgDir = new File(outputPath + "/img");
-        if (!imgDir.exists())
-            imgDir.mkdir();
         htmlDir = new File(outputPath + "/html");
         if (!htmlDir.exists())
             htmlDir.mkdir();
-        File jsDir = new File(outputPath + "/js");
-        if (!jsDir.exists())
-            jsDir.mkdir();
+        dataDir = new File(outputPath + "/data");
+        if (!dataDir.exists())
+            dataDir.mkdir();
+        this.assetDir = outputDir;
+        this.assetUrl = "..";
+        this.progressReporter = repository.getProgressReporter();
+    }
+
+    /**
+     * Sets the folder the images, style sheets and scripts are installed to, pages link to it with a relative path.
+     * Many reports can share one folder, by default each report has its own
+     *
+     * @param assetDir
+     */
+    public void setAssetDirectory(File assetDir) {
+        this.assetDir = assetDir;
+        Path from = htmlDir.toPath().toAbsolutePath().normalize();
+        Path to = assetDir.toPath().toAbsolutePath().normalize();
+        try {
+            this.assetUrl = from.relativize(to).toString().replace(File.separatorChar, '/');
+            if (assetUrl.isEmpty())
+                assetUrl = ".";
+        } catch (IllegalArgumentException e) {
+            // on another drive, there is no relative path
+            this.assetUrl = to.toUri().toString().replaceAll("/$", "");
+        }
+    }
+
+    /**
+     * Sets the executor the report is generated on. Null, the default, uses a pool of one thread per processor
+     * for each report
+     *
+     * @param executor
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
 
+    /**
+     * Sets the reporter the progress of the report is sent to, by default the one of the repository
+     *
+     * @param progressReporter
+     */
+    public void setProgressReporter(ProgressReporter progressReporter) {
+        this.progressReporter = progressReporter;
     }
 
+    /**
+     * Writes the report, each page is streamed to its file as it is generated
+     * <p>
+     * Data shards, the index page and the hidden div of every branch and committer are generated in parallel on
+     * the executor. The calling thread writes the branches and statistics pages, adding the divs in a fixed order,
+     * so the report is the same as if everything ran on one thread. Tasks never wait for other tasks, so any
+     * executor can be used.
+     *
+     * @throws IOException
+     */
     public void generateHtmlReport() throws IOException {
         ContainerTag head = generateHtmlHead();
         ContainerTag header = generateHtmlHeader();
         ContainerTag footer = generateHtmlFooter();
 
-        ContainerTag indexBody = generateHtmlIndexBody();
-        ContainerTag branchesBody = generateHtmlBranchesBody();
-        ContainerTag statisticsBody = generateHtmlStatisticsBody();
+        try {
+            copyResources();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
 
-        String htmlIndex = generateHtmlOutput(head, header, indexBody, footer);
-        String htmlBranches = generateHtmlOutput(head, header, branchesBody, footer);
-        String htmlStatistics = generateHtmlOutput(head, header, statisticsBody, footer);
+        try {
+            writeMetrics();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        // one item per commit shard, branch, committer and the index page
+        int commitShards = (repository.getCommitList().size() + COMMITS_PER_SHARD - 1) / COMMITS_PER_SHARD;
+        progress = progressReporter.beginTask("Writing report", "items",
+                commitShards + repository.getBranches().size() + repository.getCommitters().size() + 1);
 
-        HashMap<String, String> htmlStrings = new HashMap<>();
-        htmlStrings.put("index.html", htmlIndex);
-        htmlStrings.put("branches.html", htmlBranches);
-        htmlStrings.put("statistics.html", htmlStatistics);
+        ExecutorService executor = this.executor != null ? this.executor : Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        List<Future<Void>> files = new ArrayList<>();
+        try {
+            submitCommitShards(executor, files);
+            files.add(executor.submit(() -> {
+                writePage("index.html", head, header, footer, out -> out.raw(generateHtmlIndexBody().render()));
+                progress.update(1);
+                return null;
+            }));
+            writePage("branches.html", head, header, footer, out -> writeHtmlBranchesBody(out, executor));
+            writePage("statistics.html", head, header, footer, out -> writeHtmlStatisticsBody(out, executor));
+            for (Future<Void> file : files)
+                await(file);
+            progress.end();
+        } finally {
+            for (Future<Void> file : files)
+                file.cancel(true);
+            if (this.executor == null)
+                executor.shutdownNow();
+        }
+    }
 
-        generateFiles(htmlStrings);
+    /**
+     * Writes the body of a page
+     */
+    private interface BodyWriter {
+        void write(HtmlWriter out) throws IOException;
+    }
 
+    /**
+     * Writes a section of a page
+     */
+    private interface SectionWriter {
+        void write(HtmlWriter out, int index) throws IOException;
+    }
+
+    /**
+     * Writes sections generated on the executor in the order of their indexes. Only SECTIONS_IN_FLIGHT sections
+     * are generated ahead of the one being written, so a page is never held in memory as a whole
+     *
+     * @param out
+     * @param executor
+     * @param count    number of sections
+     * @param section
+     * @throws IOException
+     */
+    private void writeSections(HtmlWriter out, ExecutorService executor, int count, SectionWriter section) throws IOException {
+        ArrayDeque<Future<String>> pending = new ArrayDeque<>();
+        try {
+            for (int i = 0; i < count; i++) {
+                final int index = i;
+                pending.add(executor.submit(() -> {
+                    StringWriter buffer = new StringWriter();
+                    try (HtmlWriter sectionOut = new HtmlWriter(buffer)) {
+                        section.write(sectionOut, index);
+                    }
+                    progress.update(1);
+                    return buffer.toString();
+                }));
+                if (pending.size() >= SECTIONS_IN_FLIGHT)
+                    out.copy(await(pending.poll()));
+            }
+            while (!pending.isEmpty())
+                out.copy(await(pending.poll()));
+        } finally {
+            for (Future<String> future : pending)
+                future.cancel(true);
+        }
+    }
+
+    /**
+     * Waits for a task of the executor
+     *
+     * @param future
+     * @return the result of the task
+     * @throws IOException thrown by the task
+     */
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while generating the report");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
     }
 
     private ContainerTag generateHtmlHead() {
         return head().with(meta().withCharset("UTF-8"),
                 meta().withName("viewport").withContent("width=device-width, initial-scale=1"),
                 meta().withName("description").withContent("Git repository analytics and statistics."),
-                link().withRel("shortcut icon").withHref("../img/favicon.ico").withType("image/x-icon"),
+                link().withRel("shortcut icon").withHref(assetUrl + "/img/favicon.ico").withType("image/x-icon"),
                 title("GIT Statistics - " + repository.getRepositoryName()),
-                link().withRel("stylesheet").withHref("../css/milligram.min.css"),
-                link().withRel("stylesheet").withHref("../css/fonts.css"),
-                link().withHref("stylesheet").withHref("../css/normalize.css"),
-                script().withSrc("../js/scripts.js"));
+                link().withRel("stylesheet").withHref(assetUrl + "/css/milligram.min.css"),
+                link().withRel("stylesheet").withHref(assetUrl + "/css/fonts.css"),
+                link().withHref("stylesheet").withHref(assetUrl + "/css/normalize.css"),
+                script().withSrc(assetUrl + "/js/scripts.js"));
     }
 
     private ContainerTag generateHtmlHeader() {
@@ -87,7 +259,7 @@ public class ReportGenerator {
                 (div().withClass("column column-25").
                         with(
                                 a().withHref("./index.html").with(
-                                        img().withSrc("../img/logo.png").withAlt("GS logo")
+                                        img().withSrc(assetUrl + "/img/logo.png").withAlt("GS logo")
                                 ))),
                 (div().
                         withClass("nav").
@@ -136,243 +308,303 @@ public class ReportGenerator {
                                                                                         td().withText("Number Of Committers"), td().withText(String.valueOf(repository.getNumberOfCommitters())))))));
     }
 
-    private ContainerTag generateHtmlBranchesBody() {
-        return body().
-                withClass("container").
-                with(div().withClass("row").withStyle(
-                        "background-color:rgba(255, 255, 255, 0.75); padding-left:20px; padding-right:20px;padding-top:20px; padding-bottom:20px;" +
-                                "max-width:1080px;" +
-                                "margin: 0 auto !important;" +
-                                "float: none !important;").withClass("column column-100").
-                                with(h1(repository.getRepositoryName()).withStyle("text-align:center;")),
-                        div().withClass("row").withStyle(
-                                "background-color:rgba(255, 255, 255, 0.75); padding-left:20px; padding-right:20px;padding-top:20px; padding-bottom:20px;" +
-                                        "max-width:1080px;" +
-                                        "margin: 0 auto !important;" +
-                                        "float: none !important;font-size:1.5em;").withClass("column column-100").
-                                with(table().
-                                        with(
-                                                tbody().
-                                                        with(
-                                                                tr().with(td().with(h4("Branch")), td().with(h4("Creation Date")), td().with(h4("Last Commit"))),
-                                                                tr().withClass("branch").with(createBranchesTable(repository.getBranches()))))),
-                        div().withClass("column column-100").
-                                with(createBranchesHiddenDivs(repository.getBranches())));
-
+    private void writeHtmlBranchesBody(HtmlWriter out, ExecutorService executor) throws IOException {
+        out.open("body").attr("class", "container");
+        out.raw(div().withClass("row").withStyle(
+                "background-color:rgba(255, 255, 255, 0.75); padding-left:20px; padding-right:20px;padding-top:20px; padding-bottom:20px;" +
+                        "max-width:1080px;" +
+                        "margin: 0 auto !important;" +
+                        "float: none !important;").withClass("column column-100").
+                with(h1(repository.getRepositoryName()).withStyle("text-align:center;")).render());
+        out.open("div").attr("class", "column column-100").attr("style",
+                "background-color:rgba(255, 255, 255, 0.75); padding-left:20px; padding-right:20px;padding-top:20px; padding-bottom:20px;" +
+                        "max-width:1080px;" +
+                        "margin: 0 auto !important;" +
+                        "float: none !important;font-size:1.5em;");
+        out.open("table").open("tbody");
+        writeHeaderRow(out, "Branch", "Creation Date", "Last Commit");
+        out.open("tr").attr("class", "branch");
+        writeBranchesTable(out, repository.getBranches());
+        out.end().end().end().end();
+        out.open("div").attr("class", "column column-100");
+        writeBranchesHiddenDivs(out, executor, repository.getBranches());
+        out.end();
+        out.end();
     }
 
-    private List<DomContent> createBranchesTable(HashMap<String, Branch> branches) {
-        List<DomContent> domContent = new ArrayList<>();
+    private void writeBranchesTable(HtmlWriter out, HashMap<String, Branch> branches) throws IOException {
         for (Branch branch : branches.values()) {
-            domContent.add(
-                    tr().withClass("branches").with(td().withText(
-                            branch.getName().substring(branch.getName().lastIndexOf("/") + 1)),
-                            td().withText(branch.getAuthorDate().toString()),
-                            td().withText(branch.getLastCommitDate().toString())).attr("onclick", "showCommits(\""
-                            + (branch.getName().substring(branch.getName().lastIndexOf("/") + 1)) + "\")").withStyle("cursor:pointer;"));
-
+            String name = branch.getName().substring(branch.getName().lastIndexOf("/") + 1);
+            out.open("tr").attr("class", "branches").attr("onclick", "showCommits(\"" + name + "\")").attr("style", "cursor:pointer;");
+            out.element("td", name).element("td", branch.getAuthorDate().toString()).element("td", branch.getLastCommitDate().toString());
+            out.end();
         }
-        return domContent;
     }
 
-    private List<DomContent> createBranchesHiddenDivs(HashMap<String, Branch> branches) {
-        List<DomContent> domContent = new ArrayList<>();
-        for (Branch branch : branches.values()) {
-            domContent.add(
-                    div().withStyle("z-index:10;overflow-y:auto;visibility:hidden;display: inline-block;\n" +
-                            "    position: fixed;\n" +
-                            "    top: 0;\n" +
-                            "    bottom: 0;\n" +
-                            "    left: 0;\n" +
-                            "    right: 0;\n" +
-                            "    width: 95%;\n" +
-                            "    height: 95%;\n" +
-                            "    margin: auto;\n" +
-                            "    background-color: #f3f3f3;" +
-                            "padding-left:20px; padding-right:20px;padding-top:20px; padding-bottom:20px;").
-                            withClass("row").withClass("column column-50").withId(branch.getName().substring(branch.getName().lastIndexOf("/") + 1)).with(
-                            h1().withId("h" + branch.getName().substring(branch.getName().lastIndexOf("/") + 1))).withClass("column column-50").
-                            with(a("exit").withClass("button").attr("onclick", "hideCommits(\"" + branch.getName().substring(branch.getName().lastIndexOf("/") + 1) + "\")")).
-                            withClass("row").withClass("column column-100").with(
-                            table().with(tbody().
-                                    with(tr().with(td().with(h4("Commit")), td().with(h4("Message")), td().with(h4("Date")), td().with(h4("Author")), td().with(h4("Tag"))),
-                                            tr().withClass("commit").with(createCommitsTable(repository.getBranches().get(branch.getName()).getCommits()))))));
+    private void writeBranchesHiddenDivs(HtmlWriter out, ExecutorService executor, HashMap<String, Branch> branches) throws IOException {
+        List<Branch> branchList = new ArrayList<>(branches.values());
+        writeSections(out, executor, branchList.size(), (section, branchIndex) -> writeBranchHiddenDiv(section, branchList.get(branchIndex), branchIndex));
+    }
+
+    /**
+     * Writes the hidden div of a branch, its commits are not part of the page but are loaded by scripts.js
+     * a page at a time. Each page is a shard listing the indexes of its commits in the commit shards
+     *
+     * @param out
+     * @param branch
+     * @param branchIndex
+     * @throws IOException
+     */
+    private void writeBranchHiddenDiv(HtmlWriter out, Branch branch, int branchIndex) throws IOException {
+        String name = branch.getName().substring(branch.getName().lastIndexOf("/") + 1);
+        int pages = writeBranchPages(branch.getCommits(), branchIndex);
+        out.open("div").attr("style", HIDDEN_DIV_STYLE).attr("class", "column column-100").attr("id", name).
+                attr("data-branch", String.valueOf(branchIndex)).attr("data-pages", String.valueOf(pages)).
+                attr("data-shard-size", String.valueOf(COMMITS_PER_SHARD));
+        out.open("h1").attr("id", "h" + name).end();
+        out.open("a").attr("class", "button").attr("onclick", "hideCommits(\"" + name + "\")").text("exit").end();
+        out.open("div");
+        out.open("a").attr("class", "button button-outline").attr("onclick", "showCommitsPage(\"" + name + "\", -1)").text("previous").end();
+        out.open("span").attr("id", "p" + name).end();
+        out.open("a").attr("class", "button button-outline").attr("onclick", "showCommitsPage(\"" + name + "\", 1)").text("next").end();
+        out.end();
+        out.open("table").open("tbody").attr("id", "c" + name);
+        writeHeaderRow(out, "Commit", "Message", "Date", "Author", "Tag");
+        out.end().end().end();
+    }
+
+    /**
+     * Writes the pages of a branch as shards named branches/[branch index]/[page]
+     *
+     * @param commits     of the branch
+     * @param branchIndex
+     * @return number of pages
+     * @throws IOException
+     */
+    private int writeBranchPages(List<Commit> commits, int branchIndex) throws IOException {
+        int pages = 0;
+        for (int start = 0; start < commits.size(); start += COMMITS_PER_PAGE, pages++) {
+            try (ShardWriter out = new ShardWriter(dataDir.toPath(), "branches/" + branchIndex + "/" + pages)) {
+                out.beginArray();
+                for (Commit commit : commits.subList(start, Math.min(start + COMMITS_PER_PAGE, commits.size())))
+                    out.value(commit.getIndex());
+                out.endArray();
+            }
         }
-        return domContent;
+        return pages;
     }
 
-    private List<DomContent> createCommitsTable(ArrayList<Commit> commits) {
-        List<DomContent> domContent = new ArrayList<>();
-        for (Commit commit : commits) {
-            domContent.add(
-                    tr().withClass("commits").withId(commit.getName()).with(td().withText(
-                            commit.getName()), td().withText(commit.getFullMessage()), td().withText(commit.getDate().toString()),
-                            td().withText(commit.getCommitter().getEmail()),
-                            td().withText((commit.getTag() == null) ? "-" : commit.getTag().toString().substring(commit.getTag().toString().lastIndexOf("/") + 1))));
+    /**
+     * Submits the writing of the rows of all commits, stored once as shards named commits/[index / COMMITS_PER_SHARD]
+     *
+     * @param executor
+     * @param files    receives a future per shard
+     */
+    private void submitCommitShards(ExecutorService executor, List<Future<Void>> files) {
+        List<Commit> commits = repository.getCommitList();
+        for (int start = 0; start < commits.size(); start += COMMITS_PER_SHARD) {
+            List<Commit> batch = new ArrayList<>(commits.subList(start, Math.min(start + COMMITS_PER_SHARD, commits.size())));
+            int shard = start / COMMITS_PER_SHARD;
+            files.add(executor.submit(() -> {
+                writeCommitShard(batch, shard);
+                progress.update(1);
+                return null;
+            }));
+        }
+    }
 
+    /**
+     * Writes a shard of commit rows, each row holds the name, message, date, author and tag of a commit
+     *
+     * @param commits of the shard
+     * @param shard
+     * @throws IOException
+     */
+    private void writeCommitShard(List<Commit> commits, int shard) throws IOException {
+        List<String> messages = repository.getFullMessages(commits);
+        try (ShardWriter out = new ShardWriter(dataDir.toPath(), "commits/" + shard)) {
+            out.beginArray();
+            for (int i = 0; i < commits.size(); i++) {
+                Commit commit = commits.get(i);
+                out.beginArray().value(commit.getName()).value(messages.get(i)).value(commit.getDate().toString()).
+                        value(commit.getCommitter().getEmail()).
+                        value((commit.getTag() == null) ? "-" : commit.getTag().toString().substring(commit.getTag().toString().lastIndexOf("/") + 1)).
+                        endArray();
+            }
+            out.endArray();
         }
-        return domContent;
     }
 
+    /**
+     * Writes a row of h4 titles
+     *
+     * @param out
+     * @param titles
+     * @throws IOException
+     */
+    private void writeHeaderRow(HtmlWriter out, String... titles) throws IOException {
+        out.open("tr");
+        for (String title : titles)
+            out.open("td").element("h4", title).end();
+        out.end();
+    }
 
-    private ContainerTag generateHtmlStatisticsBody() {
-        return body().
-                withClass("container").
-                with(div().withClass("row").withStyle(
-                        "background-color:rgba(255, 255, 255, 0.75); padding-left:20px; padding-right:20px;padding-top:20px; padding-bottom:20px;" +
-                                "max-width:1080px;" +
-                                "margin: 0 auto !important;" +
-                                "float: none !important;").withClass("column column-100").
-                                with(h1(repository.getRepositoryName()).withStyle("text-align:center;")),
-                        div().withClass("row").withStyle(
-                                "background-color:rgba(255, 255, 255, 0.75); padding-left:20px; padding-right:20px;padding-top:20px; padding-bottom:20px;" +
-                                        "max-width:1080px;" +
-                                        "margin: 0 auto !important;" +
-                                        "float: none !important;font-size:1.5em;").withClass("column column-100").
-                                with(
-                                        table().
-                                                with(
-                                                        tbody().
-                                                                with(
-                                                                        tr().
-                                                                                with(
-                                                                                        td().withText("Number Of Commits"), td().withText(String.valueOf(repository.getNumberOfAllCommits()))))),
-                                        table().
-                                                with(
-                                                        tbody().
-                                                                with(
-                                                                        tr().with(td().with(h4("Name")), td().with(h4("Email")), td().with(h4("Commit Percentage"))),
-                                                                        tr().withClass("committer").with(createCommitsPercentagePerCommitter(repository.getCommitters())
-                                                                        ))),
-                                        table().
-                                                with(
-                                                        tbody().
-                                                                with(
-                                                                        tr().with(td().with(h4("Branch")), td().with(h4("Commit Percentage"))),
-                                                                        tr().with(createCommitsPercentagePerBranch(repository.getBranches())
-                                                                        ))),
-                                        div().withClass("column column-100").
-                                                with(createStatisticsHiddenDivs(repository.getCommitters()))
-                                ));
+    private void writeHtmlStatisticsBody(HtmlWriter out, ExecutorService executor) throws IOException {
+        out.open("body").attr("class", "container");
+        out.raw(div().withClass("row").withStyle(
+                "background-color:rgba(255, 255, 255, 0.75); padding-left:20px; padding-right:20px;padding-top:20px; padding-bottom:20px;" +
+                        "max-width:1080px;" +
+                        "margin: 0 auto !important;" +
+                        "float: none !important;").withClass("column column-100").
+                with(h1(repository.getRepositoryName()).withStyle("text-align:center;")).render());
+        out.open("div").attr("class", "column column-100").attr("style",
+                "background-color:rgba(255, 255, 255, 0.75); padding-left:20px; padding-right:20px;padding-top:20px; padding-bottom:20px;" +
+                        "max-width:1080px;" +
+                        "margin: 0 auto !important;" +
+                        "float: none !important;font-size:1.5em;");
+        out.open("table").open("tbody").open("tr");
+        out.element("td", "Number Of Commits").element("td", String.valueOf(repository.getNumberOfAllCommits()));
+        out.end().end().end();
+
+        out.open("table").open("tbody");
+        writeHeaderRow(out, "Name", "Email", "Commit Percentage");
+        out.open("tr").attr("class", "committer");
+        writeCommitsPercentagePerCommitter(out, repository.getCommitters());
+        out.end().end().end();
+
+        out.open("table").open("tbody");
+        writeHeaderRow(out, "Branch", "Commit Percentage");
+        out.open("tr");
+        writeCommitsPercentagePerBranch(out, repository.getBranches());
+        out.end().end().end();
+
+        if (!repository.getPathScopes().isEmpty()) {
+            out.open("table").open("tbody");
+            writeHeaderRow(out, "Path", "Commits", "Committers", "Files", "Lines", "Lines Added", "Lines Deleted");
+            writePathScopes(out, repository.getPathScopes());
+            out.end().end();
+        }
+
+        out.open("div").attr("class", "column column-100");
+        writeStatisticsHiddenDivs(out, executor, repository.getCommitters());
+        out.end();
+        out.end();
+        out.end();
     }
 
-    private List<DomContent> createCommitsPercentagePerCommitter(HashMap<String, Committer> committers) {
-        List<DomContent> domContent = new ArrayList<>();
+    private void writeCommitsPercentagePerCommitter(HtmlWriter out, HashMap<String, Committer> committers) throws IOException {
+        DecimalFormat df = new DecimalFormat("#.##");
         for (Committer committer : committers.values()) {
-            DecimalFormat df = new DecimalFormat("#.##");
-            domContent.add(
-                    tr().attr("onclick", "showCommitterInfo(\"" + committer.getEmail() + "\")").withClass("committers").with(td().withText(
-                            committer.getName()), td().withText(committer.getEmail()), td().withText(df.format(committer.getCommitPercentage()) + "%")).
-                            withStyle("cursor:pointer;"));
-
+            out.open("tr").attr("onclick", "showCommitterInfo(\"" + committer.getEmail() + "\")").attr("class", "committers").attr("style", "cursor:pointer;");
+            out.element("td", committer.getName()).element("td", committer.getEmail()).element("td", df.format(committer.getCommitPercentage()) + "%");
+            out.end();
         }
-        return domContent;
     }
 
-    private Iterable<? extends DomContent> createCommitsPercentagePerBranch(HashMap<String, Branch> branches) {
-        List<DomContent> domContent = new ArrayList<>();
+    private void writeCommitsPercentagePerBranch(HtmlWriter out, HashMap<String, Branch> branches) throws IOException {
+        DecimalFormat df = new DecimalFormat("#.##");
         for (Branch branch : branches.values()) {
-            DecimalFormat df = new DecimalFormat("#.##");
-            domContent.add(
-                    tr().with(td().withText(
-                            branch.getName().substring(branch.getName().lastIndexOf("/") + 1)), td().withText(df.format(branch.getCommitPercentage()) + "%")));
+            out.open("tr");
+            out.element("td", branch.getName().substring(branch.getName().lastIndexOf("/") + 1)).element("td", df.format(branch.getCommitPercentage()) + "%");
+            out.end();
         }
-        return domContent;
     }
 
-    private List<DomContent> createStatisticsHiddenDivs(HashMap<String, Committer> committers) {
-        List<DomContent> domContent = new ArrayList<>();
-        for (Committer committer : committers.values()) {
-            DecimalFormat df = new DecimalFormat("#.##");
-            domContent.add(
-                    div().withStyle("z-index:10;overflow-y:auto;visibility:hidden;display: inline-block;\n" +
-                            "    position: fixed;\n" +
-                            "    top: 0;\n" +
-                            "    bottom: 0;\n" +
-                            "    left: 0;\n" +
-                            "    right: 0;\n" +
-                            "    width: 95%;\n" +
-                            "    height: 95%;\n" +
-                            "    margin: auto;\n" +
-                            "    background-color: #f3f3f3;" +
-                            "padding-left:20px; padding-right:20px;padding-top:20px; padding-bottom:20px;").
-                            withClass("row").withClass("column column-50").withId(committer.getEmail()).with(
-                            h1().withId("h" + committer.getEmail())).withClass("column column-50").
-                            with(a("exit").withClass("button").attr("onclick", "hideCommitterInfo(\"" + committer.getEmail() + "\")")).
-                            withClass("row").withClass("column column-100").with(
-                            table().with(tbody().
-                                    with(tr().with(td().with(h4("Repository")), td().with(h4("Commit Percentage")))
-                                            , tr().with(createCommitsPercentagePerCommitterPerBranch(committer))).
-                                    withClass("row").withClass("column column-100").with(
-                                    table().with(tbody().
-                                            with(tr().with(td().with(h4("Lines Added Percentage")), td().with(h4("Lines Removed Percentage")), td().with(h4("Files Change"))),
-                                                    tr().with(td().withText(df.format(committer.getLinesAddedPercentage()) + "%"), td().withText(df.format(committer.getLinesDeletedPercentage()) + "%"),
-                                                            td().withText(df.format(committer.getFilesChangedPercentage()) + "%"))))).
-                                    withClass("row").withClass("column column-100").with(
-                                    table().with(tbody().
-                                            with(tr().with(td().with(h4("Commit percentage per day"))),
-                                                    tr().withClass("perday").with(createCommitPercentagePerDay(committer))))).
-                                    withClass("row").withClass("column column-100").with(
-                                    table().with(tbody().
-                                            with(tr().with(td().with(h4("Commit percentage per week"))),
-                                                    tr().withClass("perweek").with(createCommitPercentagePerWeek(committer)))).
-                                            withClass("row").withClass("column column-100").with(
-                                            table().with(tbody().
-                                                    with(tr().with(td().with(h4("Commit percentage per month"))),
-                                                            tr().withClass("permonth").with(createCommitPercentagePerMonth(committer)))))))));
+    private void writePathScopes(HtmlWriter out, List<PathScope> pathScopes) throws IOException {
+        for (PathScope pathScope : pathScopes) {
+            out.open("tr");
+            out.element("td", pathScope.getPath()).element("td", String.valueOf(pathScope.getNumberOfCommits()))
+                    .element("td", String.valueOf(pathScope.getCommitters().size()))
+                    .element("td", String.valueOf(pathScope.getNumberOfFiles())).element("td", String.valueOf(pathScope.getNumberOfLines()))
+                    .element("td", String.valueOf(pathScope.getTotalLinesAdded())).element("td", String.valueOf(pathScope.getTotalLinesDeleted()));
+            out.end();
         }
-        return domContent;
     }
 
-    private List<DomContent> createCommitsPercentagePerCommitterPerBranch(Committer committer) {
-        List<DomContent> domContent = new ArrayList<>();
+    private void writeStatisticsHiddenDivs(HtmlWriter out, ExecutorService executor, HashMap<String, Committer> committers) throws IOException {
+        List<Committer> committerList = new ArrayList<>(committers.values());
+        writeSections(out, executor, committerList.size(), (section, index) -> writeStatisticsHiddenDiv(section, committerList.get(index)));
+    }
+
+    private void writeStatisticsHiddenDiv(HtmlWriter out, Committer committer) throws IOException {
+        DecimalFormat df = new DecimalFormat("#.##");
+        out.open("div").attr("style", HIDDEN_DIV_STYLE).attr("class", "column column-100").attr("id", committer.getEmail());
+        out.open("h1").attr("id", "h" + committer.getEmail()).end();
+        out.open("a").attr("class", "button").attr("onclick", "hideCommitterInfo(\"" + committer.getEmail() + "\")").text("exit").end();
+        out.open("table").open("tbody").attr("class", "column column-100");
+        writeHeaderRow(out, "Repository", "Commit Percentage");
+        out.open("tr");
+        writeCommitsPercentagePerCommitterPerBranch(out, committer);
+        out.end();
+
+        out.open("table").open("tbody");
+        writeHeaderRow(out, "Lines Added Percentage", "Lines Removed Percentage", "Files Change");
+        out.open("tr");
+        out.element("td", df.format(committer.getLinesAddedPercentage()) + "%").element("td", df.format(committer.getLinesDeletedPercentage()) + "%").
+                element("td", df.format(committer.getFilesChangedPercentage()) + "%");
+        out.end().end().end();
+
+        out.open("table").open("tbody");
+        writeHeaderRow(out, "Commit percentage per day");
+        out.open("tr").attr("class", "perday");
+        writeCommitPercentagePerDay(out, committer);
+        out.end().end().end();
+
+        out.open("table").attr("class", "column column-100").open("tbody");
+        writeHeaderRow(out, "Commit percentage per week");
+        out.open("tr").attr("class", "perweek");
+        writeCommitPercentagePerWeek(out, committer);
+        out.end().end();
+        out.open("table").open("tbody");
+        writeHeaderRow(out, "Commit percentage per month");
+        out.open("tr").attr("class", "permonth");
+        writeCommitPercentagePerMonth(out, committer);
+        out.end().end().end();
+        out.end();
+
+        out.end().end().end();
+    }
+
+    private void writeCommitsPercentagePerCommitterPerBranch(HtmlWriter out, Committer committer) throws IOException {
+        DecimalFormat df = new DecimalFormat("#.##");
         for (Branch branch : repository.getBranches().values()) {
-            DecimalFormat df = new DecimalFormat("#.##");
-            domContent.add(
-                    tr().with(
-                            td().withText(branch.getName().substring(branch.getName().lastIndexOf("/") + 1)),
-                            td().withText((branch.getPercentageOfCommitsPerCommitter().get(committer) == null) ? "0%" : df.format(branch.getPercentageOfCommitsPerCommitter().get(committer)) + "%")));
+            Double percentage = branch.getPercentageOfCommitsPerCommitter().get(committer);
+            out.open("tr");
+            out.element("td", branch.getName().substring(branch.getName().lastIndexOf("/") + 1)).element("td", (percentage == null) ? "0%" : df.format(percentage) + "%");
+            out.end();
         }
-        return domContent;
     }
 
-    private List<DomContent> createCommitPercentagePerDay(Committer committer) {
-        List<DomContent> domContent = new ArrayList<>();
+    private void writeCommitPercentagePerDay(HtmlWriter out, Committer committer) throws IOException {
+        DecimalFormat df = new DecimalFormat("#.##");
         for (Map.Entry<Date, Double> e : committer.getCommitsPerDayPercentage().entrySet()) {
-            DecimalFormat df = new DecimalFormat("#.##");
-            domContent.add(
-                    tr().with(
-                            td().withText(e.getKey().toString().replaceAll("/*00:00:00 [a-zA-Z]*/*", "")),
-                            td().withText((e.getValue() == null) ? "0%" : df.format(e.getValue()) + "%")));
+            out.open("tr");
+            out.element("td", e.getKey().toString().replaceAll("/*00:00:00 [a-zA-Z]*/*", "")).element("td", (e.getValue() == null) ? "0%" : df.format(e.getValue()) + "%");
+            out.end();
         }
-        return domContent;
     }
 
-    private List<DomContent> createCommitPercentagePerWeek(Committer committer) {
-        List<DomContent> domContent = new ArrayList<>();
+    private void writeCommitPercentagePerWeek(HtmlWriter out, Committer committer) throws IOException {
+        DecimalFormat df = new DecimalFormat("#.##");
         for (Map.Entry<String, Double> e : committer.getCommitsPerWeekPercentage().entrySet()) {
-            DecimalFormat df = new DecimalFormat("#.##");
-            domContent.add(
-                    tr().with(
-                            td().withText(e.getKey().substring(0, 1) + " week of " +
-                                    Month.of(1 + Integer.parseInt(e.getKey().substring(2, e.getKey().lastIndexOf("_")))).getDisplayName(TextStyle.FULL, Locale.US) + " " +
-                                    e.getKey().substring(e.getKey().lastIndexOf("_") + 1)),
-                            td().withText((e.getValue() == null) ? "0%" : df.format(e.getValue()) + "%")));
+            out.open("tr");
+            out.element("td", e.getKey().substring(0, 1) + " week of " +
+                    Month.of(1 + Integer.parseInt(e.getKey().substring(2, e.getKey().lastIndexOf("_")))).getDisplayName(TextStyle.FULL, Locale.US) + " " +
+                    e.getKey().substring(e.getKey().lastIndexOf("_") + 1)).
+                    element("td", (e.getValue() == null) ? "0%" : df.format(e.getValue()) + "%");
+            out.end();
         }
-        return domContent;
     }
 
-    private List<DomContent> createCommitPercentagePerMonth(Committer committer) {
-        List<DomContent> domContent = new ArrayList<>();
+    private void writeCommitPercentagePerMonth(HtmlWriter out, Committer committer) throws IOException {
+        DecimalFormat df = new DecimalFormat("#.##");
         for (Map.Entry<String, Double> e : committer.getCommitsPerMonthPercentage().entrySet()) {
-            DecimalFormat df = new DecimalFormat("#.##");
-            domContent.add(
-                    tr().with(
-                            td().withText(Month.of(1 + Integer.parseInt(e.getKey().substring(0, e.getKey().indexOf("_")))).getDisplayName(TextStyle.FULL, Locale.US) + " " +
-                                    e.getKey().substring(e.getKey().lastIndexOf("_") + 1)),
-                            td().withText((e.getValue() == null) ? "0%" : df.format(e.getValue()) + "%")));
+            out.open("tr");
+            out.element("td", Month.of(1 + Integer.parseInt(e.getKey().substring(0, e.getKey().indexOf("_")))).getDisplayName(TextStyle.FULL, Locale.US) + " " +
+                    e.getKey().substring(e.getKey().lastIndexOf("_") + 1)).
+                    element("td", (e.getValue() == null) ? "0%" : df.format(e.getValue()) + "%");
+            out.end();
         }
-        return domContent;
     }
 
 
@@ -386,76 +618,54 @@ public class ReportGenerator {
     }
 
 
-    private String generateHtmlOutput(ContainerTag head, ContainerTag header, ContainerTag body, ContainerTag footer) {
-        return document().render() + html().withStyle("background-image:url(\"../img/background.jpg\");").attr("lang", "eng").with(head, header, body, footer).render();
-    }
-
-    private void generateFiles(HashMap<String, String> htmlStrings) throws IOException {
-        try {
-            copyResources();
-        } catch (Exception e) {
-            e.printStackTrace();
+    /**
+     * Writes a page to the html folder
+     *
+     * @param fileName
+     * @param head
+     * @param header
+     * @param footer
+     * @param body
+     * @throws IOException
+     */
+    private void writePage(String fileName, ContainerTag head, ContainerTag header, ContainerTag footer, BodyWriter body) throws IOException {
+        try (HtmlWriter out = new HtmlWriter(new File(htmlDir, fileName).toPath())) {
+            out.raw(document().render());
+            out.open("html").attr("style", "background-image:url(\"" + assetUrl + "/img/background.jpg\");").attr("lang", "eng");
+            out.raw(head.render()).raw(header.render());
+            body.write(out);
+            out.raw(footer.render());
+            out.end();
         }
-
-        for (Map.Entry<String, String> html : htmlStrings.entrySet())
-            writeFile(html.getKey(), html.getValue());
     }
 
+    /**
+     * Installs the images, style sheets and scripts, files that are up to date are left alone
+     *
+     * @throws IOException
+     */
     private void copyResources() throws IOException {
-        File favicon = getResourceAsFile("favicon.ico");
-        if (new File(outputDir.toPath() + "/img/favicon.ico").exists())
-            Files.copy(favicon.toPath(), Paths.get(outputDir.toPath() + "/img/favicon.ico"));
-        File logo = getResourceAsFile("logo.png");
-        if (!new File(outputDir.toPath() + "/img/logo.png").exists())
-            Files.copy(logo.toPath(), Paths.get(outputDir.toPath() + "/img/logo.png"));
-        File background = getResourceAsFile("background.jpg");
-        if (!new File(outputDir.toPath() + "/img/background.jpg").exists())
-            Files.copy(background.toPath(), Paths.get(outputDir.toPath() + "/img/background.jpg"));
-        File milligramCss = getResourceAsFile("milligram.min.css");
-        if (!new File(outputDir.toPath() + "/css/milligram.min.css").exists())
-            Files.copy(milligramCss.toPath(), Paths.get(outputDir.toPath() + "/css/milligram.min.css"));
-        File normalizeCss = getResourceAsFile("normalize.css");
-        if (!new File(outputDir.toPath() + "/css/normalize.css").exists())
-            Files.copy(normalizeCss.toPath(), Paths.get(outputDir.toPath() + "/css/normalize.css"));
-        File fontsCss = getResourceAsFile("fonts.css");
-        if (!new File(outputDir.toPath() + "/css/fonts.css").exists())
-            Files.copy(fontsCss.toPath(), Paths.get(outputDir.toPath() + "/css/fonts.css"));
-        File scriptsJs = getResourceAsFile("scripts.js");
-        if (!new File(outputDir.toPath() + "/js/scripts.js").exists())
-            Files.copy(scriptsJs.toPath(), Paths.get(outputDir.toPath() + "/js/scripts.js"));
-    }
-
-    private File getResourceAsFile(String resourcePath) {
-        try {
-            InputStream in = ClassLoader.getSystemClassLoader().getResourceAsStream(resourcePath);
-            if (in == null) {
-                return null;
-            }
-
-            File tempFile = File.createTempFile(String.valueOf(in.hashCode()), ".tmp");
-            tempFile.deleteOnExit();
+        installAssets(assetDir);
+    }
 
-            try (FileOutputStream out = new FileOutputStream(tempFile)) {
-                //copy stream
-                byte[] buffer = new byte[1024];
-                int bytesRead;
-                while ((bytesRead = in.read(buffer)) != -1) {
-                    out.write(buffer, 0, bytesRead);
-                }
-            }
-            return tempFile;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return null;
-        }
+    /**
+     * Installs the images, style sheets and scripts into a folder, for pages that share the assets of the reports
+     *
+     * @param assetDir
+     * @throws IOException
+     */
+    public static void installAssets(File assetDir) throws IOException {
+        new AssetInstaller(assetDir.toPath()).install();
     }
 
-    private void writeFile(String fileName, String html) throws IOException {
-        File htmlFile = new File(htmlDir.getAbsolutePath() + "/" + fileName);
-        FileWriter fstream = new FileWriter(htmlFile, false);
-        BufferedWriter out = new BufferedWriter(fstream);
-        html = html.replaceAll(">", ">\n");
-        out.write(html);
-        out.close();
+    /**
+     * Writes the metrics of the analysis to metrics.json in the output folder
+     *
+     * @throws IOException
+     */
+    private void writeMetrics() throws IOException {
+        AnalysisMetrics metrics = repository.getMetrics();
+        if (metrics != null)
+            metrics.writeJson(new File(outputDir, "metrics.json"));
     }
 }
@@ -0,0 +1,117 @@
+package edu.df.htmlgenerator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+
+/**
+ * Writes a data shard of the report, a script that passes one JSON value to loadShard() in scripts.js.
+ * <p>
+ * Shards are scripts rather than plain JSON so the report can load them with script tags, which also works
+ * when the report is opened from the file system. A shard named "branches/3/0" is written to branches/3/0.js
+ * under the data folder.
+ */
+class ShardWriter implements Closeable {
+    private final Writer out;
+    private final ArrayDeque<Boolean> firstInArray;
+
+    /**
+     * ShardWriter constructor, the file is written in UTF-8
+     *
+     * @param dataDir
+     * @param name    of the shard, may contain '/' to put it in a sub folder
+     * @throws IOException
+     */
+    ShardWriter(Path dataDir, String name) throws IOException {
+        Path file = dataDir.resolve(name + ".js");
+        Files.createDirectories(file.getParent());
+        this.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        this.firstInArray = new ArrayDeque<>();
+        out.write("loadShard(");
+        string(name);
+        out.write(", ");
+    }
+
+    ShardWriter beginArray() throws IOException {
+        separate();
+        out.write('[');
+        firstInArray.push(true);
+        return this;
+    }
+
+    ShardWriter endArray() throws IOException {
+        firstInArray.pop();
+        out.write(']');
+        if (firstInArray.isEmpty())
+            out.write('\n');
+        return this;
+    }
+
+    ShardWriter value(String value) throws IOException {
+        separate();
+        string(value);
+        return this;
+    }
+
+    ShardWriter value(long value) throws IOException {
+        separate();
+        out.write(Long.toString(value));
+        return this;
+    }
+
+    /**
+     * Ends the call to loadShard() and closes the file
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            out.write(");\n");
+        } finally {
+            out.close();
+        }
+    }
+
+    private void separate() throws IOException {
+        if (firstInArray.isEmpty())
+            return;
+        if (firstInArray.pop())
+            firstInArray.push(false);
+        else {
+            firstInArray.push(false);
+            out.write(',');
+        }
+    }
+
+    /**
+     * Writes a JSON string, line and paragraph separators are escaped too as scripts do not allow them in strings
+     */
+    private void string(String string) throws IOException {
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            String escaped;
+            if (c == '"')
+                escaped = "\\\"";
+            else if (c == '\\')
+                escaped = "\\\\";
+            else if (c == '\n')
+                escaped = "\\n";
+            else if (c < 0x20 || c == '\u2028' || c == '\u2029')
+                escaped = String.format("\\u%04x", (int) c);
+            else
+                continue;
+            out.write(string, start, i - start);
+            out.write(escaped);
+            start = i + 1;
+        }
+        out.write(string, start, string.length() - start);
+        out.write('"');
+    }
+}
@@ -0,0 +1,173 @@
+package edu.df.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Metrics of every phase of the analysis of a repository, in the order the phases ran.
+ * <p>
+ * Totals add up the phases, except peak heap which is the highest of them and is measured for the whole JVM, so it
+ * includes analyses that run at the same time. The metrics can be written as JSON
+ * so a scheduler can follow the cost of analyzing a repository from one run to the next.
+ */
+public class AnalysisMetrics {
+    private final String repositoryName;
+    private final long startTime;
+    private final List<PhaseMetrics> phases;
+
+    /**
+     * AnalysisMetrics constructor
+     *
+     * @param repositoryName
+     */
+    public AnalysisMetrics(String repositoryName) {
+        this.repositoryName = repositoryName;
+        this.startTime = System.currentTimeMillis();
+        this.phases = new ArrayList<>();
+    }
+
+    /**
+     * Starts a phase, the caller stops it when the phase is over
+     *
+     * @param name
+     * @return
+     */
+    public synchronized PhaseMetrics startPhase(String name) {
+        PhaseMetrics phase = new PhaseMetrics(name);
+        phases.add(phase);
+        phase.start();
+        return phase;
+    }
+
+    public String getRepositoryName() {
+        return repositoryName;
+    }
+
+    /**
+     * @return start of the analysis in milliseconds since the epoch
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public synchronized List<PhaseMetrics> getPhases() {
+        return Collections.unmodifiableList(new ArrayList<>(phases));
+    }
+
+    /**
+     * Returns a phase by name
+     *
+     * @param name
+     * @return the phase, or null if it did not run
+     */
+    public synchronized PhaseMetrics getPhase(String name) {
+        for (PhaseMetrics phase : phases) {
+            if (phase.getName().equals(name))
+                return phase;
+        }
+        return null;
+    }
+
+    public long getWallTimeNanos() {
+        long total = 0;
+        for (PhaseMetrics phase : getPhases())
+            total += phase.getWallTimeNanos();
+        return total;
+    }
+
+    /**
+     * @return CPU time of all phases, or -1 if the JVM can not measure it
+     */
+    public long getCpuTimeNanos() {
+        long total = 0;
+        for (PhaseMetrics phase : getPhases()) {
+            if (phase.getCpuTimeNanos() < 0)
+                return -1;
+            total += phase.getCpuTimeNanos();
+        }
+        return total;
+    }
+
+    /**
+     * @return bytes allocated by all phases, or -1 if the JVM can not measure it
+     */
+    public long getAllocatedBytes() {
+        long total = 0;
+        for (PhaseMetrics phase : getPhases()) {
+            if (phase.getAllocatedBytes() < 0)
+                return -1;
+            total += phase.getAllocatedBytes();
+        }
+        return total;
+    }
+
+    public long getPeakHeapBytes() {
+        long peak = 0;
+        for (PhaseMetrics phase : getPhases())
+            peak = Math.max(peak, phase.getPeakHeapBytes());
+        return peak;
+    }
+
+    /**
+     * Writes the metrics as JSON, in UTF-8
+     *
+     * @param file
+     * @throws IOException
+     */
+    public void writeJson(File file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            out.write(toJson());
+        }
+    }
+
+    /**
+     * Returns the metrics as a JSON object, with times in nanoseconds and sizes in bytes
+     *
+     * @return
+     */
+    public String toJson() {
+        return toJson("") + "\n";
+    }
+
+    /**
+     * Returns the metrics as a JSON object to be nested in another one, every line but the first is indented
+     *
+     * @param indent
+     * @return
+     */
+    public String toJson(String indent) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append(indent).append("  \"repository\": ").append(Json.quote(repositoryName)).append(",\n");
+        json.append(indent).append("  \"startTime\": ").append(startTime).append(",\n");
+        json.append(indent).append("  \"wallTimeNanos\": ").append(getWallTimeNanos()).append(",\n");
+        json.append(indent).append("  \"cpuTimeNanos\": ").append(getCpuTimeNanos()).append(",\n");
+        json.append(indent).append("  \"allocatedBytes\": ").append(getAllocatedBytes()).append(",\n");
+        json.append(indent).append("  \"peakHeapBytes\": ").append(getPeakHeapBytes()).append(",\n");
+        json.append(indent).append("  \"phases\": [");
+        List<PhaseMetrics> phases = getPhases();
+        for (int i = 0; i < phases.size(); i++) {
+            PhaseMetrics phase = phases.get(i);
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append(indent).append("    {\"name\": ").append(Json.quote(phase.getName()))
+                    .append(", \"wallTimeNanos\": ").append(phase.getWallTimeNanos())
+                    .append(", \"cpuTimeNanos\": ").append(phase.getCpuTimeNanos())
+                    .append(", \"allocatedBytes\": ").append(phase.getAllocatedBytes())
+                    .append(", \"peakHeapBytes\": ").append(phase.getPeakHeapBytes())
+                    .append(", \"objectsParsed\": ").append(phase.getObjectsParsed())
+                    .append(", \"diffsComputed\": ").append(phase.getDiffsComputed())
+                    .append(", \"filesScanned\": ").append(phase.getFilesScanned())
+                    .append(", \"bytesRead\": ").append(phase.getBytesRead())
+                    .append('}');
+        }
+        json.append(phases.isEmpty() ? "]\n" : "\n" + indent + "  ]\n");
+        json.append(indent).append("}");
+        return json.toString();
+    }
+}
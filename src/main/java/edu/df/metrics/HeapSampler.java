@@ -0,0 +1,79 @@
+package edu.df.metrics;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Samples the heap usage of the JVM for the phases that are running, without resetting any JVM-wide state.
+ * <p>
+ * The heap only grows between two collections, so its highest usage is reached right before a collection.
+ * Every running phase gets the heap usage when it starts and stops, and the usage before every collection that
+ * happens in between, taken from the GC notifications of the HotSpot extension. The usage before a collection
+ * is read from all heap pools at the same moment, so it is never the sum of peaks reached at different times.
+ * Without GC notifications only the start and stop samples are taken.
+ */
+class HeapSampler {
+    private static final Set<PhaseMetrics> RUNNING = ConcurrentHashMap.newKeySet();
+    private static final Set<String> HEAP_POOLS = new HashSet<>();
+
+    static {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP)
+                HEAP_POOLS.add(pool.getName());
+        }
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter)
+                ((NotificationEmitter) collector).addNotificationListener(HeapSampler::collected, null, null);
+        }
+    }
+
+    private HeapSampler() {
+    }
+
+    /**
+     * Reads the heap usage of the JVM now
+     *
+     * @return used bytes
+     */
+    static long heapUsed() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Samples the heap for a phase until it is removed
+     *
+     * @param phase
+     */
+    static void add(PhaseMetrics phase) {
+        RUNNING.add(phase);
+    }
+
+    static void remove(PhaseMetrics phase) {
+        RUNNING.remove(phase);
+    }
+
+    private static void collected(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType()) || RUNNING.isEmpty())
+            return;
+        GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        long used = 0;
+        for (Map.Entry<String, MemoryUsage> pool : info.getGcInfo().getMemoryUsageBeforeGc().entrySet()) {
+            if (HEAP_POOLS.contains(pool.getKey()))
+                used += pool.getValue().getUsed();
+        }
+        for (PhaseMetrics phase : RUNNING)
+            phase.sampleHeap(used);
+    }
+}
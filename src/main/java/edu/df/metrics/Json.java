@@ -0,0 +1,31 @@
+package edu.df.metrics;
+
+/**
+ * Helpers for the JSON files written by hand, such as the metrics files.
+ */
+public class Json {
+    private Json() {
+    }
+
+    /**
+     * Returns a string as a JSON string literal, null as null
+     *
+     * @param string
+     * @return
+     */
+    public static String quote(String string) {
+        if (string == null)
+            return "null";
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c == '"' || c == '\\')
+                quoted.append('\\').append(c);
+            else if (c < 0x20)
+                quoted.append(String.format("\\u%04x", (int) c));
+            else
+                quoted.append(c);
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,143 @@
+package edu.df.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * What one phase of the analysis cost and what it did.
+ * <p>
+ * Wall time is measured from start to stop. CPU time and allocated bytes are those of the thread that runs
+ * the phase, plus those of the worker threads that report their usage with addThreadUsage(), so work done on
+ * thread pools is counted too. Peak heap is the highest heap usage of the whole JVM seen during the phase, sampled
+ * when it starts and stops and before every garbage collection in between. It is JVM-wide, so when analyses run
+ * concurrently, in batch mode or in the report server, it includes the memory of the other analyses.
+ * Counters may be added to from any thread.
+ */
+public class PhaseMetrics {
+    private final String name;
+    private long startNanos;
+    private ThreadUsage startUsage;
+    private long wallTimeNanos;
+    private boolean running;
+    private final AtomicLong cpuTimeNanos, allocatedBytes, peakHeapBytes;
+    private final AtomicLong objectsParsed, diffsComputed, filesScanned, bytesRead;
+
+    PhaseMetrics(String name) {
+        this.name = name;
+        this.cpuTimeNanos = new AtomicLong();
+        this.allocatedBytes = new AtomicLong();
+        this.peakHeapBytes = new AtomicLong();
+        this.objectsParsed = new AtomicLong();
+        this.diffsComputed = new AtomicLong();
+        this.filesScanned = new AtomicLong();
+        this.bytesRead = new AtomicLong();
+    }
+
+    void start() {
+        sampleHeap(HeapSampler.heapUsed());
+        HeapSampler.add(this);
+        running = true;
+        startUsage = ThreadUsage.ofCurrentThread();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Ends the phase, it must be called by the thread that started it
+     */
+    public void stop() {
+        if (!running)
+            return;
+        wallTimeNanos = System.nanoTime() - startNanos;
+        addThreadUsage(startUsage);
+        HeapSampler.remove(this);
+        sampleHeap(HeapSampler.heapUsed());
+        running = false;
+    }
+
+    /**
+     * Raises the peak heap of the phase to the given usage if it is higher
+     *
+     * @param used heap bytes used by the JVM
+     */
+    void sampleHeap(long used) {
+        peakHeapBytes.accumulateAndGet(used, Math::max);
+    }
+
+    /**
+     * Adds the CPU time and allocations of the current thread since the given usage was read.
+     * Worker threads call it when they are done with their part of the phase
+     *
+     * @param since usage of the current thread when it started working on the phase
+     */
+    public void addThreadUsage(ThreadUsage since) {
+        ThreadUsage now = ThreadUsage.ofCurrentThread();
+        if (since.getCpuTimeNanos() >= 0 && now.getCpuTimeNanos() >= 0)
+            cpuTimeNanos.addAndGet(now.getCpuTimeNanos() - since.getCpuTimeNanos());
+        else
+            cpuTimeNanos.set(-1);
+        if (since.getAllocatedBytes() >= 0 && now.getAllocatedBytes() >= 0)
+            allocatedBytes.addAndGet(now.getAllocatedBytes() - since.getAllocatedBytes());
+        else
+            allocatedBytes.set(-1);
+    }
+
+    public void addObjectsParsed(long objects) {
+        objectsParsed.addAndGet(objects);
+    }
+
+    public void addDiffsComputed(long diffs) {
+        diffsComputed.addAndGet(diffs);
+    }
+
+    public void addFilesScanned(long files) {
+        filesScanned.addAndGet(files);
+    }
+
+    public void addBytesRead(long bytes) {
+        bytesRead.addAndGet(bytes);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getWallTimeNanos() {
+        return wallTimeNanos;
+    }
+
+    /**
+     * @return CPU time of the phase, or -1 if the JVM can not measure it
+     */
+    public long getCpuTimeNanos() {
+        return cpuTimeNanos.get();
+    }
+
+    /**
+     * @return bytes allocated by the phase, or -1 if the JVM can not measure it
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    /**
+     * @return highest heap usage of the JVM seen during the phase, with the memory of concurrent analyses
+     */
+    public long getPeakHeapBytes() {
+        return peakHeapBytes.get();
+    }
+
+    public long getObjectsParsed() {
+        return objectsParsed.get();
+    }
+
+    public long getDiffsComputed() {
+        return diffsComputed.get();
+    }
+
+    public long getFilesScanned() {
+        return filesScanned.get();
+    }
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+}
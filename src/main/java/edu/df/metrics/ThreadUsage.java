@@ -0,0 +1,74 @@
+package edu.df.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * CPU time and allocated bytes of the current thread at one point in time, read through ThreadMXBean.
+ * <p>
+ * Allocated bytes need the HotSpot extension of ThreadMXBean. A value the JVM can not measure is -1.
+ */
+public class ThreadUsage {
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME_SUPPORTED;
+    private static final boolean ALLOCATION_SUPPORTED;
+
+    static {
+        boolean cpuTime = THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported();
+        if (cpuTime && !THREAD_MX_BEAN.isThreadCpuTimeEnabled()) {
+            try {
+                THREAD_MX_BEAN.setThreadCpuTimeEnabled(true);
+            } catch (UnsupportedOperationException | SecurityException e) {
+                cpuTime = false;
+            }
+        }
+        CPU_TIME_SUPPORTED = cpuTime;
+
+        boolean allocation = false;
+        if (THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotSpotBean = (com.sun.management.ThreadMXBean) THREAD_MX_BEAN;
+            allocation = hotSpotBean.isThreadAllocatedMemorySupported();
+            if (allocation && !hotSpotBean.isThreadAllocatedMemoryEnabled()) {
+                try {
+                    hotSpotBean.setThreadAllocatedMemoryEnabled(true);
+                } catch (UnsupportedOperationException | SecurityException e) {
+                    allocation = false;
+                }
+            }
+        }
+        ALLOCATION_SUPPORTED = allocation;
+    }
+
+    private final long cpuTimeNanos;
+    private final long allocatedBytes;
+
+    private ThreadUsage(long cpuTimeNanos, long allocatedBytes) {
+        this.cpuTimeNanos = cpuTimeNanos;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * Reads the usage of the current thread
+     *
+     * @return
+     */
+    public static ThreadUsage ofCurrentThread() {
+        long cpuTime = CPU_TIME_SUPPORTED ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : -1;
+        long allocated = ALLOCATION_SUPPORTED ? ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN).getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+        return new ThreadUsage(cpuTime, allocated);
+    }
+
+    /**
+     * @return CPU time used by the thread since it started, or -1
+     */
+    public long getCpuTimeNanos() {
+        return cpuTimeNanos;
+    }
+
+    /**
+     * @return bytes allocated by the thread since it started, or -1
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+}
@@ -0,0 +1,24 @@
+package edu.df.progress;
+
+import java.io.PrintStream;
+
+/**
+ * Prints every progress update as a line, such as
+ * "Calculating line changes: 1200/5000 commits (24.0%), 310.2 commits/s, ETA 0:00:12"
+ */
+public class ConsoleProgressListener implements ProgressListener {
+    private final PrintStream out;
+
+    public ConsoleProgressListener() {
+        this(System.out);
+    }
+
+    public ConsoleProgressListener(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void onProgress(Progress progress) {
+        out.println(progress);
+    }
+}
@@ -0,0 +1,115 @@
+package edu.df.progress;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * The state of a task at one point in time: items done, items total, the current rate and the estimated time left.
+ */
+public class Progress {
+    private final String task;
+    private final String unit;
+    private final long done;
+    private final long total;
+    private final double rate;
+    private final long elapsedMillis;
+    private final long etaMillis;
+    private final boolean finished;
+
+    Progress(String task, String unit, long done, long total, double rate, long elapsedMillis, long etaMillis, boolean finished) {
+        this.task = task;
+        this.unit = unit;
+        this.done = done;
+        this.total = total;
+        this.rate = rate;
+        this.elapsedMillis = elapsedMillis;
+        this.etaMillis = etaMillis;
+        this.finished = finished;
+    }
+
+    public String getTask() {
+        return task;
+    }
+
+    /**
+     * @return what the items are, such as commits or pages
+     */
+    public String getUnit() {
+        return unit;
+    }
+
+    public long getDone() {
+        return done;
+    }
+
+    /**
+     * @return number of items of the task, or -1 if it is not known
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return items per second, recent intervals weigh more while the task runs, the average once it is finished
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return estimated milliseconds until the task is finished, or -1 if the total or the rate is not known
+     */
+    public long getEtaMillis() {
+        return etaMillis;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return percentage of the items done, or -1 if the total is not known
+     */
+    public double getPercentage() {
+        if (total < 0)
+            return -1;
+        return total == 0 ? 100 : 100.0 * done / total;
+    }
+
+    @Override
+    public String toString() {
+        DecimalFormat df = new DecimalFormat("0.0", DecimalFormatSymbols.getInstance(Locale.US));
+        StringBuilder sb = new StringBuilder(task).append(": ");
+        if (finished) {
+            sb.append(done).append(' ').append(unit).append(" in ").append(formatDuration(elapsedMillis));
+        } else {
+            sb.append(done);
+            if (total >= 0)
+                sb.append('/').append(total);
+            sb.append(' ').append(unit);
+            if (total >= 0)
+                sb.append(" (").append(df.format(getPercentage())).append("%)");
+        }
+        if (rate > 0)
+            sb.append(", ").append(df.format(rate)).append(' ').append(unit).append("/s");
+        if (!finished && etaMillis >= 0)
+            sb.append(", ETA ").append(formatDuration(etaMillis));
+        return sb.toString();
+    }
+
+    /**
+     * Formats a duration as hours:minutes:seconds
+     *
+     * @param millis
+     * @return
+     */
+    static String formatDuration(long millis) {
+        long seconds = (millis + 500) / 1000;
+        return String.format(Locale.US, "%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+}
@@ -0,0 +1,16 @@
+package edu.df.progress;
+
+/**
+ * Receives the progress of the tasks of a ProgressReporter.
+ * <p>
+ * Listeners are called from the threads doing the work, so they must be quick and thread safe. Calls for one task
+ * never overlap, and the last call of a task is the one with isFinished() set.
+ */
+public interface ProgressListener {
+    /**
+     * Called at most once per interval of the reporter for a running task, and once when the task ends
+     *
+     * @param progress
+     */
+    void onProgress(Progress progress);
+}
@@ -0,0 +1,44 @@
+package edu.df.progress;
+
+import org.eclipse.jgit.lib.ProgressMonitor;
+
+/**
+ * JGit progress monitor that turns the tasks of a JGit command into tasks of a ProgressReporter.
+ */
+class ProgressMonitorAdapter implements ProgressMonitor {
+    private final ProgressReporter reporter;
+    private ProgressTask task;
+
+    ProgressMonitorAdapter(ProgressReporter reporter) {
+        this.reporter = reporter;
+    }
+
+    @Override
+    public void start(int totalTasks) {
+    }
+
+    @Override
+    public void beginTask(String title, int totalWork) {
+        endTask();
+        task = reporter.beginTask(title, "items", totalWork == UNKNOWN ? -1 : totalWork);
+    }
+
+    @Override
+    public void update(int completed) {
+        if (task != null)
+            task.update(completed);
+    }
+
+    @Override
+    public void endTask() {
+        if (task != null) {
+            task.end();
+            task = null;
+        }
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return Thread.currentThread().isInterrupted();
+    }
+}
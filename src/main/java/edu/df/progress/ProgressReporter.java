@@ -0,0 +1,84 @@
+package edu.df.progress;
+
+import org.eclipse.jgit.lib.ProgressMonitor;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts tasks and sends their progress to the registered listeners.
+ * <p>
+ * A running task reports at most once per interval, one second by default, so tasks can be updated for every
+ * item at little cost. Without listeners nothing is reported at all. One reporter can be shared by the analysis
+ * of a repository and its report, and by JGit commands through asProgressMonitor().
+ */
+public class ProgressReporter {
+    private final CopyOnWriteArrayList<ProgressListener> listeners;
+    private volatile long intervalNanos;
+
+    /**
+     * ProgressReporter constructor
+     */
+    public ProgressReporter() {
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1);
+    }
+
+    public void addListener(ProgressListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ProgressListener listener) {
+        listeners.remove(listener);
+    }
+
+    public boolean hasListeners() {
+        return !listeners.isEmpty();
+    }
+
+    /**
+     * Sets the shortest time between two reports of a running task
+     *
+     * @param interval
+     * @param unit
+     */
+    public void setInterval(long interval, TimeUnit unit) {
+        this.intervalNanos = unit.toNanos(interval);
+    }
+
+    long getIntervalNanos() {
+        return intervalNanos;
+    }
+
+    /**
+     * Starts a task
+     *
+     * @param name  shown to the user
+     * @param unit  what the items of the task are, such as commits or pages
+     * @param total number of items, or -1 if it is not known
+     * @return
+     */
+    public ProgressTask beginTask(String name, String unit, long total) {
+        return new ProgressTask(this, name, unit, total);
+    }
+
+    /**
+     * Returns a JGit progress monitor that reports the tasks of a JGit command to the listeners
+     *
+     * @return
+     */
+    public ProgressMonitor asProgressMonitor() {
+        return new ProgressMonitorAdapter(this);
+    }
+
+    void fire(Progress progress) {
+        for (ProgressListener listener : listeners) {
+            try {
+                listener.onProgress(progress);
+            } catch (RuntimeException e) {
+                System.err.println("A progress listener failed.");
+                e.printStackTrace();
+            }
+        }
+    }
+}
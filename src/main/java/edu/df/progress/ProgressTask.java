@@ -0,0 +1,108 @@
+package edu.df.progress;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A task whose progress is sent to the listeners of a ProgressReporter.
+ * <p>
+ * update() may be called from any thread and for every item: it adds to a counter and reads the clock, the listeners
+ * are only called once an interval of the reporter has passed since the last time. The rate is a moving average
+ * of the rates of those intervals, so it follows changes in speed without jumping on every update.
+ */
+public class ProgressTask {
+    /**
+     * Weight of the last interval in the moving average of the rate
+     */
+    private static final double RATE_WEIGHT = 0.3;
+
+    private final ProgressReporter reporter;
+    private final String name;
+    private final String unit;
+    private final long startNanos;
+    private final AtomicLong done;
+    private volatile long total;
+    private volatile long nextReportNanos;
+    private long lastReportNanos;
+    private long lastReportDone;
+    private double rate;
+    private boolean finished;
+
+    ProgressTask(ProgressReporter reporter, String name, String unit, long total) {
+        this.reporter = reporter;
+        this.name = name;
+        this.unit = unit;
+        this.total = total;
+        this.done = new AtomicLong();
+        this.startNanos = System.nanoTime();
+        this.lastReportNanos = startNanos;
+        this.nextReportNanos = startNanos + reporter.getIntervalNanos();
+        this.rate = -1;
+    }
+
+    /**
+     * Adds items done
+     *
+     * @param items
+     */
+    public void update(long items) {
+        done.addAndGet(items);
+        if (!reporter.hasListeners())
+            return;
+        long now = System.nanoTime();
+        if (now - nextReportNanos < 0)
+            return;
+        synchronized (this) {
+            if (finished || now - nextReportNanos < 0)
+                return;
+            report(now, false);
+        }
+    }
+
+    /**
+     * Sets the number of items, when it is only known after the task started
+     *
+     * @param total -1 if it is not known
+     */
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    /**
+     * Ends the task, the listeners get its final state. Calls after the first one do nothing
+     */
+    public synchronized void end() {
+        if (finished)
+            return;
+        finished = true;
+        if (reporter.hasListeners())
+            report(System.nanoTime(), true);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getDone() {
+        return done.get();
+    }
+
+    private void report(long now, boolean finished) {
+        long done = this.done.get();
+        long total = this.total;
+        long elapsedNanos = now - startNanos;
+        long etaMillis = -1;
+        if (finished) {
+            rate = elapsedNanos > 0 ? done * 1e9 / elapsedNanos : -1;
+            etaMillis = 0;
+        } else {
+            double intervalRate = (done - lastReportDone) * 1e9 / Math.max(1, now - lastReportNanos);
+            rate = rate < 0 ? intervalRate : RATE_WEIGHT * intervalRate + (1 - RATE_WEIGHT) * rate;
+            if (total >= 0 && rate > 0)
+                etaMillis = (long) (Math.max(0, total - done) * 1000 / rate);
+        }
+        lastReportNanos = now;
+        lastReportDone = done;
+        nextReportNanos = now + reporter.getIntervalNanos();
+        reporter.fire(new Progress(name, unit, done, total, rate, elapsedNanos / 1000000, etaMillis, finished));
+    }
+}
@@ -0,0 +1,22 @@
+package edu.df.server;
+
+/**
+ * Receives the refreshes of the repositories of a ReportServer.
+ * <p>
+ * Listeners are called from the refresh thread of the server, so they must be quick.
+ */
+public interface RefreshListener {
+    /**
+     * Called when the refs of a repository changed and it is analyzed again
+     *
+     * @param name of the repository in the server
+     */
+    void refreshStarted(String name);
+
+    /**
+     * Called when a new version of a report is served
+     *
+     * @param version
+     */
+    void versionPublished(ReportVersion version);
+}
@@ -0,0 +1,176 @@
+package edu.df.server;
+
+import com.sun.net.httpserver.HttpServer;
+import edu.df.htmlgenerator.ReportGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the reports of a set of repositories over HTTP on the loopback interface, keeping them up to date.
+ * <p>
+ * A background thread checks the refs of every repository at a fixed interval and analyzes it again when they
+ * changed, continuing from the snapshot of the previous analysis. Requests are answered from the last published
+ * version of a report while the next one is made, see ServedRepository. Pages and data shards are files written
+ * once per version and summaries are built when a version is published, so no request depends on the size of
+ * the history. Listeners are told when a repository is analyzed again and when its new version is published.
+ */
+public class ReportServer {
+    private final File rootDir;
+    private final int port;
+    private final Map<String, ServedRepository> repositories;
+    private final CopyOnWriteArrayList<RefreshListener> listeners;
+    private long refreshIntervalMillis;
+    private int threads;
+    private HttpServer server;
+    private ScheduledExecutorService refresher;
+    private ExecutorService workers;
+
+    /**
+     * ReportServer constructor
+     *
+     * @param rootDir receives the reports, snapshots and shared assets
+     * @param port    to listen on, 0 picks a free port
+     */
+    public ReportServer(File rootDir, int port) {
+        this.rootDir = rootDir;
+        this.port = port;
+        this.repositories = Collections.synchronizedMap(new LinkedHashMap<>());
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.refreshIntervalMillis = TimeUnit.SECONDS.toMillis(10);
+        this.threads = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Adds a repository, repositories must be added before the server is started
+     *
+     * @param path of the repository
+     * @return name of the repository in the URLs of the server
+     * @throws IOException if the repository can not be opened
+     */
+    public synchronized String addRepository(String path) throws IOException {
+        if (server != null)
+            throw new IllegalStateException("Repositories must be added before the server is started");
+        String baseName = new File(path).getName();
+        if (baseName.isEmpty() || baseName.equals(".git"))
+            baseName = new File(path).getAbsoluteFile().getParentFile().getName();
+        baseName = baseName.replaceAll("[^A-Za-z0-9._-]", "_");
+        String name = baseName;
+        for (int i = 2; repositories.containsKey(name.toLowerCase(Locale.ROOT)); i++)
+            name = baseName + "-" + i;
+        repositories.put(name.toLowerCase(Locale.ROOT), new ServedRepository(name, path, new File(rootDir, "repositories/" + name), listeners));
+        return name;
+    }
+
+    public void addListener(RefreshListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(RefreshListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Sets how often the refs of the repositories are checked, ten seconds by default
+     *
+     * @param interval
+     * @param unit
+     */
+    public void setRefreshInterval(long interval, TimeUnit unit) {
+        this.refreshIntervalMillis = Math.max(1, unit.toMillis(interval));
+    }
+
+    /**
+     * Sets the number of threads that answer requests and the number that run analyses,
+     * by default the number of processors
+     *
+     * @param threads
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Starts listening and analyzing, the repositories are served once their first analysis is done
+     *
+     * @throws IOException
+     */
+    public synchronized void start() throws IOException {
+        File assetDir = new File(rootDir, "assets");
+        ReportGenerator.installAssets(assetDir);
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/", new RequestHandler(this, rootDir.toPath()));
+        server.setExecutor(Executors.newFixedThreadPool(threads));
+        server.start();
+
+        workers = Executors.newFixedThreadPool(threads);
+        refresher = Executors.newSingleThreadScheduledExecutor();
+        refresher.scheduleWithFixedDelay(() -> {
+            for (ServedRepository repository : getServedRepositories())
+                repository.refreshIfChanged(assetDir, workers);
+        }, 0, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops listening and analyzing, requests being answered get a second to finish
+     */
+    public synchronized void stop() {
+        if (server == null)
+            return;
+        server.stop(1);
+        ((ExecutorService) server.getExecutor()).shutdownNow();
+        refresher.shutdownNow();
+        workers.shutdownNow();
+        try {
+            refresher.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (ServedRepository repository : getServedRepositories())
+            repository.close();
+    }
+
+    /**
+     * @return the address of the index page of the server
+     */
+    public URI getUri() {
+        InetSocketAddress address = server.getAddress();
+        return URI.create("http://" + address.getAddress().getHostAddress() + ":" + address.getPort() + "/");
+    }
+
+    /**
+     * Returns the version of a report being served
+     *
+     * @param name of the repository, as returned by addRepository
+     * @return the version, or null if the repository is unknown or its first analysis is not done
+     */
+    public ReportVersion getCurrentVersion(String name) {
+        ServedRepository repository = getServedRepository(name);
+        return repository == null ? null : repository.getCurrent();
+    }
+
+    Collection<ServedRepository> getServedRepositories() {
+        synchronized (repositories) {
+            return Collections.unmodifiableList(new ArrayList<>(repositories.values()));
+        }
+    }
+
+    ServedRepository getServedRepository(String name) {
+        return repositories.get(name.toLowerCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,135 @@
+package edu.df.server;
+
+import edu.df.git.Branch;
+import edu.df.git.Committer;
+import edu.df.git.Repository;
+import edu.df.metrics.Json;
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * One published analysis of a served repository: the analyzed model, the report written from it and the refs
+ * it was made for.
+ * <p>
+ * A version never changes once it is published, a refresh publishes a new one. Its JSON summary is built when
+ * the version is created, so serving it costs the same whatever the size of the history.
+ */
+public class ReportVersion {
+    private final String name;
+    private final int number;
+    private final Map<String, ObjectId> refs;
+    private final File directory;
+    private final Repository repository;
+    private final long created;
+    private final byte[] summaryJson;
+
+    /**
+     * ReportVersion constructor
+     *
+     * @param name       of the served repository
+     * @param number     of the version, increasing with every refresh
+     * @param refs       ref name to commit the version was made for
+     * @param directory  the report was written to
+     * @param repository the analyzed and closed repository
+     */
+    ReportVersion(String name, int number, Map<String, ObjectId> refs, File directory, Repository repository) {
+        this.name = name;
+        this.number = number;
+        this.refs = Collections.unmodifiableMap(refs);
+        this.directory = directory;
+        this.repository = repository;
+        this.created = System.currentTimeMillis();
+        this.summaryJson = summaryJson().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getNumber() {
+        return number;
+    }
+
+    public Map<String, ObjectId> getRefs() {
+        return refs;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the analyzed repository, it is closed so full commit messages can not be read from it
+     *
+     * @return
+     */
+    public Repository getRepository() {
+        return repository;
+    }
+
+    /**
+     * @return time the version was published in milliseconds since the epoch
+     */
+    public long getCreated() {
+        return created;
+    }
+
+    public String getSummaryJson() {
+        return new String(summaryJson, StandardCharsets.UTF_8);
+    }
+
+    byte[] getSummaryJsonBytes() {
+        return summaryJson;
+    }
+
+    private String summaryJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"name\": ").append(Json.quote(name)).append(",\n");
+        json.append("  \"version\": ").append(number).append(",\n");
+        json.append("  \"created\": ").append(created).append(",\n");
+        json.append("  \"complete\": ").append(repository.isComplete()).append(",\n");
+        json.append("  \"commits\": ").append(repository.getNumberOfAllCommits()).append(",\n");
+        json.append("  \"committers\": ").append(repository.getNumberOfCommitters()).append(",\n");
+        json.append("  \"branches\": ").append(repository.getNumberOfBranches()).append(",\n");
+        json.append("  \"tags\": ").append(repository.getNumberOfTags()).append(",\n");
+        json.append("  \"files\": ").append(repository.getNumberOfFiles()).append(",\n");
+        json.append("  \"lines\": ").append(repository.getNumberOfLines()).append(",\n");
+        json.append("  \"report\": ").append(Json.quote("/repositories/" + name + "/" + number + "/html/index.html")).append(",\n");
+
+        json.append("  \"committerStatistics\": [");
+        boolean first = true;
+        for (Committer committer : repository.getCommitters().values()) {
+            json.append(first ? "\n" : ",\n");
+            first = false;
+            json.append("    {\"name\": ").append(Json.quote(committer.getName()))
+                    .append(", \"email\": ").append(Json.quote(committer.getEmail()))
+                    .append(", \"commits\": ").append(committer.getNumberOfCommits())
+                    .append(", \"linesAdded\": ").append(committer.getLinesAdded())
+                    .append(", \"linesDeleted\": ").append(committer.getLinesDeleted())
+                    .append(", \"filesChanged\": ").append(committer.getFilesChanged())
+                    .append('}');
+        }
+        json.append(first ? "],\n" : "\n  ],\n");
+
+        json.append("  \"branchStatistics\": [");
+        first = true;
+        for (Branch branch : repository.getBranches().values()) {
+            json.append(first ? "\n" : ",\n");
+            first = false;
+            json.append("    {\"name\": ").append(Json.quote(branch.getName()))
+                    .append(", \"commits\": ").append(branch.getCommits().size())
+                    .append(", \"lastCommitDate\": ").append(branch.getLastCommitDate() == null ? -1 : branch.getLastCommitDate().getTime())
+                    .append('}');
+        }
+        json.append(first ? "],\n" : "\n  ],\n");
+
+        json.append("  \"analysis\": ").append(repository.getMetrics() == null ? "null" : repository.getMetrics().toJson("  ")).append('\n');
+        json.append("}\n");
+        return json.toString();
+    }
+}
@@ -0,0 +1,233 @@
+package edu.df.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import edu.df.metrics.Json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Collection;
+
+/**
+ * Serves the reports and the JSON endpoints of a report server.
+ * <p>
+ * URLs follow the layout of the server folder: /assets/... are the shared assets and
+ * /repositories/[name]/[version]/... the files of a version of a report, which never change and can be cached.
+ * /repositories/[name]/ redirects to the current version, and so does a version that is no longer served.
+ * /api/repositories lists the repositories and /api/repositories/[name] is the summary of the current version.
+ */
+class RequestHandler implements HttpHandler {
+    private final ReportServer server;
+    private final Path rootDir;
+
+    RequestHandler(ReportServer server, Path rootDir) {
+        this.server = server;
+        this.rootDir = rootDir.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET") && !exchange.getRequestMethod().equals("HEAD")) {
+                send(exchange, 405, "text/plain", "Method not allowed".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            String path = exchange.getRequestURI().normalize().getPath();
+            if (path == null || path.contains(".."))
+                sendNotFound(exchange);
+            else if (path.equals("/"))
+                sendIndex(exchange);
+            else if (path.equals("/api/repositories"))
+                sendRepositories(exchange);
+            else if (path.startsWith("/api/repositories/"))
+                sendSummary(exchange, path.substring("/api/repositories/".length()));
+            else if (path.startsWith("/repositories/"))
+                sendReportFile(exchange, path);
+            else if (path.startsWith("/assets/"))
+                sendFile(exchange, path, "no-cache");
+            else
+                sendNotFound(exchange);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void sendIndex(HttpExchange exchange) throws IOException {
+        StringBuilder html = new StringBuilder("<!DOCTYPE html><html lang=\"eng\"><head><meta charset=\"UTF-8\">" +
+                "<title>GIT Statistics</title><link rel=\"stylesheet\" href=\"/assets/css/milligram.min.css\"></head>" +
+                "<body class=\"container\"><h1>Repositories</h1><ul>");
+        for (ServedRepository repository : server.getServedRepositories()) {
+            String name = escape(repository.getName());
+            html.append("<li><a href=\"/repositories/").append(name).append("/\">").append(name).append("</a>");
+            if (repository.getCurrent() == null)
+                html.append(" (analyzing)");
+            html.append("</li>");
+        }
+        html.append("</ul></body></html>");
+        send(exchange, 200, "text/html; charset=utf-8", html.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void sendRepositories(HttpExchange exchange) throws IOException {
+        Collection<ServedRepository> repositories = server.getServedRepositories();
+        StringBuilder json = new StringBuilder("[");
+        boolean first = true;
+        for (ServedRepository repository : repositories) {
+            ReportVersion current = repository.getCurrent();
+            json.append(first ? "\n" : ",\n");
+            first = false;
+            json.append("  {\"name\": ").append(Json.quote(repository.getName()))
+                    .append(", \"path\": ").append(Json.quote(repository.getPath()))
+                    .append(", \"version\": ").append(current == null ? -1 : current.getNumber())
+                    .append(", \"created\": ").append(current == null ? -1 : current.getCreated())
+                    .append(", \"error\": ").append(Json.quote(repository.getError()))
+                    .append('}');
+        }
+        json.append(first ? "]\n" : "\n]\n");
+        send(exchange, 200, "application/json; charset=utf-8", json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void sendSummary(HttpExchange exchange, String name) throws IOException {
+        ServedRepository repository = server.getServedRepository(name);
+        if (repository == null) {
+            sendNotFound(exchange);
+            return;
+        }
+        ReportVersion current = repository.getCurrent();
+        if (current == null) {
+            sendNotReady(exchange);
+            return;
+        }
+        send(exchange, 200, "application/json; charset=utf-8", current.getSummaryJsonBytes());
+    }
+
+    /**
+     * Sends a file of a version of a report, or redirects to the current version
+     *
+     * @param exchange
+     * @param path     /repositories/[name]/[version]/...
+     * @throws IOException
+     */
+    private void sendReportFile(HttpExchange exchange, String path) throws IOException {
+        String[] parts = path.split("/", 5);
+        ServedRepository repository = parts.length > 2 ? server.getServedRepository(parts[2]) : null;
+        if (repository == null) {
+            sendNotFound(exchange);
+            return;
+        }
+        ReportVersion current = repository.getCurrent();
+        if (current == null) {
+            sendNotReady(exchange);
+            return;
+        }
+
+        String rest = parts.length == 5 ? parts[4] : "";
+        int number = parts.length > 3 && parts[3].matches("\\d{1,9}") ? Integer.parseInt(parts[3]) : -1;
+        if (number < 0) {
+            redirect(exchange, repository.getName(), current.getNumber(), "html/index.html");
+            return;
+        }
+        if (rest.isEmpty()) {
+            redirect(exchange, repository.getName(), repository.isServed(number) ? number : current.getNumber(), "html/index.html");
+            return;
+        }
+        if (!repository.isServed(number)) {
+            redirect(exchange, repository.getName(), current.getNumber(), rest);
+            return;
+        }
+        try {
+            sendFile(exchange, path, "public, max-age=31536000, immutable");
+        } catch (NoSuchFileException e) {
+            // the version was deleted by a refresh while the request was handled
+            redirect(exchange, repository.getName(), current.getNumber(), rest);
+        }
+    }
+
+    private void redirect(HttpExchange exchange, String name, int number, String file) throws IOException {
+        exchange.getResponseHeaders().set("Location", "/repositories/" + name + "/" + number + "/" + file);
+        send(exchange, 302, "text/plain", new byte[0]);
+    }
+
+    /**
+     * Sends a file of the server folder
+     *
+     * @param exchange
+     * @param path         of the URL, relative to the server folder
+     * @param cacheControl
+     * @throws IOException
+     */
+    private void sendFile(HttpExchange exchange, String path, String cacheControl) throws IOException {
+        Path file = rootDir.resolve(path.substring(1)).normalize();
+        if (!file.startsWith(rootDir) || !Files.isRegularFile(file)) {
+            sendNotFound(exchange);
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", contentType(file.getFileName().toString()));
+        exchange.getResponseHeaders().set("Cache-Control", cacheControl);
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(Files.size(file)));
+            exchange.sendResponseHeaders(200, -1);
+            return;
+        }
+        // opened before the headers are sent, so a file deleted by a refresh fails while the request can be redirected
+        try (InputStream in = Files.newInputStream(file)) {
+            exchange.sendResponseHeaders(200, Files.size(file));
+            try (OutputStream out = exchange.getResponseBody()) {
+                byte[] buffer = new byte[8192];
+                for (int read; (read = in.read(buffer)) != -1; )
+                    out.write(buffer, 0, read);
+            }
+        }
+    }
+
+    private void sendNotFound(HttpExchange exchange) throws IOException {
+        send(exchange, 404, "text/plain", "Not found".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void sendNotReady(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Retry-After", "10");
+        send(exchange, 503, "text/plain", "The repository is being analyzed".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] content) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        if (exchange.getRequestMethod().equals("HEAD") || content.length == 0) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, content.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(content);
+        }
+    }
+
+    private static String contentType(String fileName) {
+        String extension = fileName.substring(fileName.lastIndexOf('.') + 1);
+        switch (extension) {
+            case "html":
+                return "text/html; charset=utf-8";
+            case "css":
+                return "text/css; charset=utf-8";
+            case "js":
+                return "application/javascript; charset=utf-8";
+            case "json":
+                return "application/json; charset=utf-8";
+            case "png":
+                return "image/png";
+            case "jpg":
+                return "image/jpeg";
+            case "ico":
+                return "image/x-icon";
+            default:
+                return "application/octet-stream";
+        }
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
@@ -0,0 +1,236 @@
+package edu.df.server;
+
+import edu.df.git.Repository;
+import edu.df.htmlgenerator.ReportGenerator;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * A repository kept analyzed by the report server.
+ * <p>
+ * Every refresh analyzes the repository into a new Repository model, continuing from the snapshot of the previous
+ * refresh, and writes its report to a new numbered folder. The new version is then published with a single write,
+ * so readers either see the old version or the new one, never a mix. The previous version is kept, so a page that
+ * was loaded before the refresh can still load its data, older ones are deleted. A refresh that failed is not
+ * tried again for the same refs until a back-off has passed, doubling from a minute up to an hour, so a repository
+ * that can not be analyzed does not keep the server busy. New refs are tried at the next check.
+ */
+class ServedRepository {
+    private static final long FIRST_RETRY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long LAST_RETRY_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final String name;
+    private final String path;
+    private final File directory;
+    private final Git git;
+    private final List<RefreshListener> listeners;
+    private volatile ReportVersion current;
+    private volatile String error;
+    private volatile ReportVersion previous;
+    private int lastNumber;
+    private TreeMap<String, ObjectId> failedRefs;
+    private int failures;
+    private long retryMillis;
+
+    /**
+     * ServedRepository constructor
+     *
+     * @param name      unique name of the repository in the server
+     * @param path      of the repository
+     * @param directory receives the versions of the report and the snapshot
+     * @param listeners of the server, told when the repository is refreshed
+     * @throws IOException if the repository can not be opened
+     */
+    ServedRepository(String name, String path, File directory, List<RefreshListener> listeners) throws IOException {
+        this.name = name;
+        this.path = path;
+        this.directory = directory;
+        this.listeners = listeners;
+        this.git = Git.open(new File(path));
+        File[] versions = directory.listFiles();
+        if (versions != null) {
+            for (File version : versions) {
+                if (version.getName().matches("\\d{1,9}"))
+                    lastNumber = Math.max(lastNumber, Integer.parseInt(version.getName()));
+            }
+        }
+    }
+
+    /**
+     * Analyzes the repository again if its refs changed since the current version, or if there is none,
+     * unless the same refs failed and their back-off has not passed
+     *
+     * @param assetDir shared asset folder of the reports
+     * @param executor runs the line changes and report sections
+     * @return true if a new version was published
+     */
+    boolean refreshIfChanged(File assetDir, ExecutorService executor) {
+        TreeMap<String, ObjectId> refs = null;
+        try {
+            refs = readRefs();
+            ReportVersion current = this.current;
+            if (current != null && current.getRefs().equals(refs))
+                return false;
+            if (refs.equals(failedRefs) && System.currentTimeMillis() < retryMillis)
+                return false;
+            publish(analyze(refs, assetDir, executor));
+            error = null;
+            failedRefs = null;
+            failures = 0;
+            return true;
+        } catch (IOException | RuntimeException | OutOfMemoryError e) {
+            System.err.println("The refresh of " + name + " failed, the previous version is still served.");
+            e.printStackTrace();
+            error = e.getMessage() == null ? e.getClass().getName() : e.getClass().getName() + ": " + e.getMessage();
+            if (refs != null) {
+                failures = refs.equals(failedRefs) ? failures + 1 : 1;
+                failedRefs = refs;
+                retryMillis = System.currentTimeMillis() + Math.min(LAST_RETRY_MILLIS, FIRST_RETRY_MILLIS << Math.min(failures - 1, 6));
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Reads the commit of every ref, HEAD included
+     *
+     * @return ref name to commit
+     * @throws IOException
+     */
+    private TreeMap<String, ObjectId> readRefs() throws IOException {
+        TreeMap<String, ObjectId> refs = new TreeMap<>();
+        for (Ref ref : git.getRepository().getAllRefs().values()) {
+            if (ref.getObjectId() != null)
+                refs.put(ref.getName(), ref.getObjectId().copy());
+        }
+        return refs;
+    }
+
+    private ReportVersion analyze(TreeMap<String, ObjectId> refs, File assetDir, ExecutorService executor) throws IOException {
+        int number = lastNumber + 1;
+        File versionDir = new File(directory, String.valueOf(number));
+        //noinspection ResultOfMethodCallIgnored
+        versionDir.mkdirs();
+
+        for (RefreshListener listener : listeners) {
+            try {
+                listener.refreshStarted(name);
+            } catch (RuntimeException e) {
+                System.err.println("A refresh listener failed.");
+                e.printStackTrace();
+            }
+        }
+        boolean written = false;
+        Repository repository = new Repository(path);
+        try {
+            repository.setSnapshotFile(new File(directory, "gitstatistics.snapshot"));
+            repository.setExecutor(executor);
+            repository.analyze();
+
+            ReportGenerator reportGenerator = new ReportGenerator(repository, versionDir.getPath());
+            reportGenerator.setAssetDirectory(assetDir);
+            reportGenerator.setExecutor(executor);
+            reportGenerator.generateHtmlReport();
+            written = true;
+        } finally {
+            repository.close();
+            if (!written)
+                delete(versionDir);
+        }
+        lastNumber = number;
+        return new ReportVersion(name, number, refs, versionDir, repository);
+    }
+
+    /**
+     * Makes a version the current one, and deletes the versions before the previous one
+     *
+     * @param version
+     */
+    private void publish(ReportVersion version) {
+        previous = current;
+        current = version;
+        for (RefreshListener listener : listeners) {
+            try {
+                listener.versionPublished(version);
+            } catch (RuntimeException e) {
+                System.err.println("A refresh listener failed.");
+                e.printStackTrace();
+            }
+        }
+
+        File[] versions = directory.listFiles();
+        if (versions == null)
+            return;
+        for (File versionDir : versions) {
+            if (!versionDir.isDirectory() || !versionDir.getName().matches("\\d{1,9}"))
+                continue;
+            if (versionDir.equals(version.getDirectory()) || (previous != null && versionDir.equals(previous.getDirectory())))
+                continue;
+            try {
+                delete(versionDir);
+            } catch (IOException e) {
+                // a file still being sent can not be deleted on some systems, it goes with the next refresh
+                System.err.println("Could not delete " + versionDir + ".");
+            }
+        }
+    }
+
+    private static void delete(File dir) throws IOException {
+        if (!dir.exists())
+            return;
+        try (Stream<Path> files = Files.walk(dir.toPath())) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator)
+                Files.delete(file);
+        }
+    }
+
+    /**
+     * Returns true if the version with the given number can still be served
+     *
+     * @param number
+     * @return
+     */
+    boolean isServed(int number) {
+        ReportVersion current = this.current;
+        ReportVersion previous = this.previous;
+        return (current != null && current.getNumber() == number) || (previous != null && previous.getNumber() == number);
+    }
+
+    void close() {
+        git.close();
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    /**
+     * @return the current version, or null until the first analysis is done
+     */
+    ReportVersion getCurrent() {
+        return current;
+    }
+
+    /**
+     * @return the error of the last refresh, or null if it succeeded
+     */
+    String getError() {
+        return error;
+    }
+}
@@ -1,6 +1,92 @@
+var shards = {};
+var shardCallbacks = {};
+
+// called by the shard scripts in the data folder
+function loadShard(name, data) {
+    shards[name] = data;
+    var callbacks = shardCallbacks[name] || [];
+    delete shardCallbacks[name];
+    callbacks.forEach(function (callback) {
+        callback(data);
+    });
+}
+
+// loads a shard with a script tag, which also works when the report is opened from the file system
+function fetchShard(name, callback) {
+    if (shards[name] !== undefined) {
+        callback(shards[name]);
+        return;
+    }
+    if (shardCallbacks[name]) {
+        shardCallbacks[name].push(callback);
+        return;
+    }
+    shardCallbacks[name] = [callback];
+    var script = document.createElement("script");
+    script.src = "../data/" + name + ".js";
+    document.head.appendChild(script);
+}
+
+function fetchShards(names, callback) {
+    var remaining = names.length;
+    if (remaining === 0)
+        callback();
+    names.forEach(function (name) {
+        fetchShard(name, function () {
+            if (--remaining === 0)
+                callback();
+        });
+    });
+}
+
 function showCommits(branchName) {
     document.getElementById(branchName).style.visibility = 'visible';
     document.getElementById("h" + branchName).innerHTML = "<H3>Branch: " + branchName + "</H3>";
+    showCommitsPage(branchName, 0);
+}
+
+// moves by the given number of pages, 0 shows the first page
+function showCommitsPage(branchName, step) {
+    var div = document.getElementById(branchName);
+    var pages = parseInt(div.getAttribute("data-pages"));
+    var page = step === 0 ? 0 : parseInt(div.getAttribute("data-page")) + step;
+    page = Math.max(0, Math.min(page, pages - 1));
+    div.setAttribute("data-page", page);
+    document.getElementById("p" + branchName).textContent = pages === 0 ? "" : " Page " + (page + 1) + " of " + pages + " ";
+    if (pages === 0)
+        return;
+
+    var shardSize = parseInt(div.getAttribute("data-shard-size"));
+    fetchShard("branches/" + div.getAttribute("data-branch") + "/" + page, function (indexes) {
+        var names = [];
+        indexes.forEach(function (index) {
+            var name = "commits/" + Math.floor(index / shardSize);
+            if (names.indexOf(name) < 0)
+                names.push(name);
+        });
+        fetchShards(names, function () {
+            // a later page may have been asked for while the shards were loading
+            if (parseInt(div.getAttribute("data-page")) !== page)
+                return;
+            showCommitRows(branchName, indexes.map(function (index) {
+                return shards["commits/" + Math.floor(index / shardSize)][index % shardSize];
+            }));
+        });
+    });
+}
+
+function showCommitRows(branchName, rows) {
+    var tbody = document.getElementById("c" + branchName);
+    while (tbody.rows.length > 1)
+        tbody.deleteRow(1);
+    rows.forEach(function (row) {
+        var tr = tbody.insertRow(-1);
+        tr.className = "commits";
+        tr.id = row[0];
+        row.forEach(function (cell) {
+            tr.insertCell(-1).textContent = cell;
+        });
+    });
 }
 
 function hideCommits(branchName) {
@@ -14,4 +100,4 @@ function showCommitterInfo(committerEmail) {
 
 function hideCommitterInfo(committerEmail) {
     document.getElementById(committerEmail).style.visibility = 'hidden';
-}
\ No newline at end of file
+}